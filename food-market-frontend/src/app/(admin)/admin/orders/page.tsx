@@ -10,11 +10,11 @@ import { format } from 'date-fns';
 import { vi } from 'date-fns/locale';
 import Link from 'next/link';
 import styles from '@/styles/admin/Orders.module.css';
-import { OrderDTO, OrderStatus } from '@/app/type/Order';
+import { AdminOrderSummaryDTO, OrderStatus } from '@/app/type/Order';
 import OrderStatusBadge from './components/OrderStatusBadge';
 
 type PageResponse = {
-    content: OrderDTO[];
+    content: AdminOrderSummaryDTO[];
     totalPages: number;
     totalElements: number;
     number: number;
@@ -34,7 +34,7 @@ export default function OrdersPage() {
 
     // Core Data
     const [loading, setLoading] = useState(true);
-    const [orders, setOrders] = useState<OrderDTO[]>([]);
+    const [orders, setOrders] = useState<AdminOrderSummaryDTO[]>([]);
     const [pageData, setPageData] = useState<PageResponse | null>(null);
     const [stats, setStats] = useState({ totalToday: 0, pending: 0, delivered: 0 });
 
@@ -315,7 +315,7 @@ export default function OrdersPage() {
                                     </td>
                                     <td style={{ color: '#64748b', maxWidth: '300px' }} className="truncate">
                                         {/* Logic hiển thị tóm tắt sản phẩm */}
-                                        {order.items.length} món: {order.items.map(i => i.productNameSnapshot).join(', ').slice(0, 50)}...
+                                        {order.itemCount} món: {(order.itemNamesSummary ?? '').slice(0, 50)}...
                                     </td>
                                     <td className={styles.colAmount}>
                                         {formatCurrency(order.totalAmount)}
@@ -52,6 +52,22 @@ export type OrderDTO = {
     paymentDate?: string;
 };
 
+// Dòng của danh sách đơn hàng admin (GET /api/v1/admin/orders)
+export type AdminOrderSummaryDTO = {
+    orderId: string;
+    status: OrderStatus;
+    totalAmount: number;
+    deliveryAddress: string;
+    deliveryPhone: string;
+    deliveryName: string;
+    createdAt: string;
+    paymentMethod: PaymentMethod;
+    paymentStatus: PaymentStatus;
+    itemCount: number;
+    firstThumbnail?: string;
+    itemNamesSummary?: string;
+};
+
 export type OrderFilter = {
     keyword?: string;
     dateFrom?: string;
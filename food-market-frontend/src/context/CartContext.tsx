@@ -1,8 +1,8 @@
 'use client';
 
-import React, { createContext, useContext, useState, useEffect, useCallback } from 'react';
+import React, { createContext, useContext, useState, useEffect, useCallback, useMemo } from 'react';
 import { useAuth } from './AuthContext';
-import { CartResponse, CartMap } from '@/types/cart';
+import { CartResponse, CartChangeResponse, CartMap } from '@/types/cart';
 import toast from 'react-hot-toast';
 
 interface CartContextType {
@@ -19,32 +19,49 @@ interface CartContextType {
 
 const CartContext = createContext<CartContextType | null>(null);
 
+// Ghép kết quả thêm / sửa / xoá vào giỏ đang có (backend không trả lại cả giỏ)
+const mergeCartChange = (prev: CartResponse | null, change: CartChangeResponse): CartResponse => {
+    let items = (prev?.items ?? []).filter(item => item.cartItemId !== change.removedCartItemId);
+    if (change.item) {
+        const changed = change.item;
+        items = items.some(item => item.cartItemId === changed.cartItemId)
+            ? items.map(item => (item.cartItemId === changed.cartItemId ? changed : item))
+            : [...items, changed];
+    }
+    return {
+        cartId: change.cartId,
+        items,
+        grandTotal: change.grandTotal,
+        baseGrandTotal: change.baseGrandTotal,
+    };
+};
+
 export const CartProvider = ({ children }: { children: React.ReactNode }) => {
     const { user, authedFetch } = useAuth();
     const [cartData, setCartData] = useState<CartResponse | null>(null);
-    const [cartMap, setCartMap] = useState<CartMap>({});
     const [isLoadingCart, setIsLoadingCart] = useState(false);
-    
-    // Hàm tiện ích: Xử lý dữ liệu trả về từ API
-    const processCartResponse = (data: CartResponse) => {
-        setCartData(data);
+
+    // Map: ProductId -> { cartItemId, quantity }, luôn suy ra từ cartData để 2 bên không lệch nhau
+    const cartMap = useMemo(() => {
         const newMap: CartMap = {};
-        // Tạo Map: ProductId -> { cartItemId, quantity }
-        data.items.forEach(item => {
-        newMap[item.product.id] = {
-            cartItemId: item.cartItemId,
-            quantity: item.quantity,
-            note: item.note // Vẫn lưu note vào map để dùng nếu cần
-        };
-
-    });
-        setCartMap(newMap);
+        cartData?.items.forEach(item => {
+            newMap[item.product.id] = {
+                cartItemId: item.cartItemId,
+                quantity: item.quantity,
+                note: item.note // Vẫn lưu note vào map để dùng nếu cần
+            };
+        });
+        return newMap;
+    }, [cartData]);
+
+    // Cập nhật dạng hàm: các thao tác chồng nhau (bấm thêm 2 sản phẩm liên tiếp) đều ghép vào giỏ mới nhất
+    const applyCartChange = (change: CartChangeResponse) => {
+        setCartData(prev => mergeCartChange(prev, change));
     };
 
     const fetchCart = useCallback(async () => {
         if (!user) {
             setCartData(null);
-            setCartMap({});
             return;
         }
 
@@ -53,7 +70,7 @@ export const CartProvider = ({ children }: { children: React.ReactNode }) => {
             const res = await authedFetch('/api/v1/cart'); // Backend endpoint
             if (res.ok) {
                 const data: CartResponse = await res.json();
-                processCartResponse(data);
+                setCartData(data);
             }
         } catch (error) {
             console.error('Error fetching cart:', error);
@@ -79,8 +96,8 @@ export const CartProvider = ({ children }: { children: React.ReactNode }) => {
             });
             
             if (res.ok) {
-                const updatedCart: CartResponse = await res.json();
-                processCartResponse(updatedCart); // Update state ngay lập tức
+                const change: CartChangeResponse = await res.json();
+                applyCartChange(change); // Update state ngay lập tức
                 toast.success('Đã thêm vào giỏ hàng');
                 return true;
             } else {
@@ -109,8 +126,8 @@ export const CartProvider = ({ children }: { children: React.ReactNode }) => {
             });
 
             if (res.ok) {
-                const updatedCart: CartResponse = await res.json();
-                processCartResponse(updatedCart);
+                const change: CartChangeResponse = await res.json();
+                applyCartChange(change);
                 return true;
             } else {
                 const err = await res.json();
@@ -133,8 +150,8 @@ export const CartProvider = ({ children }: { children: React.ReactNode }) => {
             });
 
             if (res.ok) {
-                const updatedCart: CartResponse = await res.json();
-                processCartResponse(updatedCart);
+                const change: CartChangeResponse = await res.json();
+                applyCartChange(change);
                 toast.success('Đã xóa sản phẩm');
                 return true;
             }
@@ -145,7 +162,6 @@ export const CartProvider = ({ children }: { children: React.ReactNode }) => {
     };
     const clearCartLocal = () => {
         setCartData(null);
-        setCartMap({});
     };
     // Tính tổng số lượng item để hiện Badge (Navbar)
     const totalItems = Object.values(cartMap).reduce((sum, item) => sum + item.quantity, 0);
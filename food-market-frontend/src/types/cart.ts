@@ -27,6 +27,15 @@ export interface CartResponse {
     baseGrandTotal: number;
 }
 
+// Kết quả thêm / sửa / xoá: chỉ dòng thay đổi + tổng tiền mới
+export interface CartChangeResponse {
+    cartId: string;
+    item: CartItem | null;
+    removedCartItemId: number | null;
+    grandTotal: number;
+    baseGrandTotal: number;
+}
+
 export type CartMap = Record<number, { 
     cartItemId: number; 
     quantity: number; 
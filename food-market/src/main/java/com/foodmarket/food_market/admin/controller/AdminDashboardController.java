@@ -3,6 +3,7 @@ package com.foodmarket.food_market.admin.controller;
 import com.foodmarket.food_market.admin.dashboard.dto.projection.OrderStatusStat;
 import com.foodmarket.food_market.admin.dashboard.dto.projection.TopProductStat;
 import com.foodmarket.food_market.admin.dashboard.dto.response.*;
+import com.foodmarket.food_market.admin.dto.ChartGranularity;
 import com.foodmarket.food_market.order.service.OrderService;
 import com.foodmarket.food_market.user.service.UserService;
 import lombok.RequiredArgsConstructor;
@@ -39,9 +40,10 @@ public class AdminDashboardController {
     @GetMapping("/revenue-chart")
     public ResponseEntity<List<ChartDataDTO>> getRevenueChart(
             @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) OffsetDateTime startDate,
-            @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) OffsetDateTime endDate
+            @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) OffsetDateTime endDate,
+            @RequestParam(required = false) ChartGranularity granularity
     ) {
-        return ResponseEntity.ok(orderService.getComparisonChart(startDate, endDate));
+        return ResponseEntity.ok(orderService.getComparisonChart(startDate, endDate, granularity));
     }
 
     @PreAuthorize("hasAnyRole('ADMIN','STAFF')")
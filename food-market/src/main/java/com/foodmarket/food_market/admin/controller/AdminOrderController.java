@@ -2,6 +2,7 @@ package com.foodmarket.food_market.admin.controller;
 
 import com.foodmarket.food_market.admin.dto.OrderStatsDTO;
 import com.foodmarket.food_market.admin.dto.TimeRange;
+import com.foodmarket.food_market.order.dto.AdminOrderSummaryDTO;
 import com.foodmarket.food_market.order.dto.OrderFilterDTO;
 import com.foodmarket.food_market.order.dto.OrderResponseDTO;
 import com.foodmarket.food_market.order.dto.UpdateOrderStatusDTO;
@@ -31,7 +32,7 @@ public class AdminOrderController {
     private final OrderService orderService;
 
     @GetMapping("")
-    public ResponseEntity<Page<OrderResponseDTO>> getAllOrders(
+    public ResponseEntity<Page<AdminOrderSummaryDTO>> getAllOrders(
             @ModelAttribute OrderFilterDTO filterDTO,
             @PageableDefault(size = 10, sort = "createdAt", direction = Sort.Direction.ASC) Pageable pageable
     ) {
@@ -0,0 +1,75 @@
+package com.foodmarket.food_market.admin.dto;
+
+import java.time.DayOfWeek;
+import java.time.LocalDate;
+import java.time.format.DateTimeFormatter;
+import java.time.temporal.ChronoUnit;
+import java.time.temporal.TemporalAdjusters;
+
+/**
+ * Độ chia cột của biểu đồ doanh thu. Việc gom nhóm được làm trong SQL (date_trunc),
+ * enum này chỉ tính mốc bắt đầu, chỉ số và nhãn của từng cột.
+ */
+public enum ChartGranularity {
+    DAY("day"),
+    WEEK("week"),       // Tuần bắt đầu từ thứ 2 (giống date_trunc của PostgreSQL)
+    MONTH("month"),
+    QUARTER("quarter"),
+    YEAR("year");
+
+    private static final DateTimeFormatter DAY_LABEL = DateTimeFormatter.ofPattern("dd/MM");
+    private static final DateTimeFormatter MONTH_LABEL = DateTimeFormatter.ofPattern("MM/yyyy");
+    private static final DateTimeFormatter YEAR_LABEL = DateTimeFormatter.ofPattern("yyyy");
+
+    private final String sqlUnit;
+
+    ChartGranularity(String sqlUnit) {
+        this.sqlUnit = sqlUnit;
+    }
+
+    public String getSqlUnit() {
+        return sqlUnit;
+    }
+
+    // Mốc đầu cột chứa ngày này
+    public LocalDate truncate(LocalDate date) {
+        return switch (this) {
+            case DAY -> date;
+            case WEEK -> date.with(TemporalAdjusters.previousOrSame(DayOfWeek.MONDAY));
+            case MONTH -> date.withDayOfMonth(1);
+            case QUARTER -> date.withDayOfMonth(1).withMonth(((date.getMonthValue() - 1) / 3) * 3 + 1);
+            case YEAR -> date.withDayOfYear(1);
+        };
+    }
+
+    // Chỉ số cột của bucketStart tính từ cột đầu tiên firstBucket (cả 2 đã truncate)
+    public int indexOf(LocalDate firstBucket, LocalDate bucketStart) {
+        return switch (this) {
+            case DAY -> (int) ChronoUnit.DAYS.between(firstBucket, bucketStart);
+            case WEEK -> (int) (ChronoUnit.DAYS.between(firstBucket, bucketStart) / 7);
+            case MONTH -> (int) ChronoUnit.MONTHS.between(firstBucket, bucketStart);
+            case QUARTER -> (int) (ChronoUnit.MONTHS.between(firstBucket, bucketStart) / 3);
+            case YEAR -> (int) ChronoUnit.YEARS.between(firstBucket, bucketStart);
+        };
+    }
+
+    // Mốc đầu cột kế tiếp
+    public LocalDate next(LocalDate bucketStart) {
+        return switch (this) {
+            case DAY -> bucketStart.plusDays(1);
+            case WEEK -> bucketStart.plusWeeks(1);
+            case MONTH -> bucketStart.plusMonths(1);
+            case QUARTER -> bucketStart.plusMonths(3);
+            case YEAR -> bucketStart.plusYears(1);
+        };
+    }
+
+    public String label(LocalDate bucketStart) {
+        return switch (this) {
+            case DAY, WEEK -> bucketStart.format(DAY_LABEL);
+            case MONTH -> bucketStart.format(MONTH_LABEL);
+            case QUARTER -> "Q" + ((bucketStart.getMonthValue() - 1) / 3 + 1) + "/" + bucketStart.getYear();
+            case YEAR -> bucketStart.format(YEAR_LABEL);
+        };
+    }
+}
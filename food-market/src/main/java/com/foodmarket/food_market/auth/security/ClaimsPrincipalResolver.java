@@ -0,0 +1,122 @@
+package com.foodmarket.food_market.auth.security;
+
+import com.foodmarket.food_market.user.dto.projection.UserCredentialsView;
+import com.foodmarket.food_market.user.model.entity.User;
+import com.foodmarket.food_market.user.model.enums.Role;
+import com.foodmarket.food_market.user.repository.UserRepository;
+import io.jsonwebtoken.Claims;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Dựng principal trực tiếp từ claims của access token đã verify, không đọc bảng users.
+ * - Token thiếu claims (token cũ) hoặc phát hành trước lần đổi quyền / mật khẩu / thông tin của user
+ *   -> trả về empty để filter nạp user từ DB như trước.
+ * - Mốc "đã thay đổi" lưu ở cột users.credentials_changed_at. Mỗi node hỏi 1 truy vấn cho mọi user
+ *   (jwt.claims-auth.revocation-poll-ms) các mốc mới và giữ trong bộ nhớ; giữa 2 lần hỏi tin claims.
+ * - Chưa hỏi xong lần đầu (vừa khởi động) thì luôn đi đường DB.
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class ClaimsPrincipalResolver {
+
+    public static final String CLAIM_USER_ID = "userId";
+    public static final String CLAIM_FULL_NAME = "fullName";
+    public static final String CLAIM_ROLE = "role";
+
+    private final UserRepository userRepository;
+
+    @Value("${jwt.claims-auth.enabled:true}")
+    private boolean enabled;
+
+    // Hỏi lùi lại 1 khoảng để không sót mốc của transaction commit muộn hơn thời điểm nó ghi
+    @Value("${jwt.claims-auth.revocation-poll-overlap-ms:60000}")
+    private long pollOverlapMs;
+
+    // Token phát hành trước (now - thời hạn access token) đã hết hạn: mốc cũ hơn không cần giữ
+    @Value("${jwt.expiration-ms}")
+    private long accessTokenLifetimeMs;
+
+    // userId -> lần đổi quyền / mật khẩu / thông tin gần nhất
+    private final Map<UUID, Instant> revokedBefore = new ConcurrentHashMap<>();
+
+    private volatile boolean ready = false;
+    private volatile Instant lastSeenChange;
+
+    public static Map<String, Object> buildClaims(User user) {
+        Map<String, Object> claims = new HashMap<>();
+        claims.put(CLAIM_USER_ID, user.getUserId());
+        claims.put(CLAIM_FULL_NAME, user.getFullName());
+        claims.put(CLAIM_ROLE, user.getRole().name());
+        return claims;
+    }
+
+    public Optional<User> resolve(Claims claims) {
+        if (!enabled || !ready) {
+            return Optional.empty();
+        }
+        String userId = claims.get(CLAIM_USER_ID, String.class);
+        String role = claims.get(CLAIM_ROLE, String.class);
+        if (userId == null || role == null || claims.getIssuedAt() == null) {
+            return Optional.empty();
+        }
+
+        UUID id = UUID.fromString(userId);
+        Instant changed = revokedBefore.get(id);
+        if (changed != null && !claims.getIssuedAt().toInstant().isAfter(changed)) {
+            return Optional.empty();
+        }
+
+        return Optional.of(User.builder()
+                .userId(id)
+                .email(claims.getSubject())
+                .fullName(claims.get(CLAIM_FULL_NAME, String.class))
+                .role(Role.valueOf(role))
+                .build());
+    }
+
+    /**
+     * Gọi trong transaction khi quyền / mật khẩu / thông tin của user thay đổi: các token đã phát hành
+     * sẽ đi đường DB ngay trên node này, và trên node khác sau lần hỏi kế tiếp.
+     */
+    public void invalidateUser(UUID userId) {
+        Instant now = Instant.now();
+        userRepository.markCredentialsChanged(userId, now.atOffset(ZoneOffset.UTC));
+        revokedBefore.merge(userId, now, (current, changed) -> changed.isAfter(current) ? changed : current);
+    }
+
+    @Scheduled(fixedDelayString = "${jwt.claims-auth.revocation-poll-ms:5000}")
+    public void pollRevocations() {
+        Instant now = Instant.now();
+        Instant since = lastSeenChange != null
+                ? lastSeenChange.minusMillis(pollOverlapMs)
+                : now.minusMillis(accessTokenLifetimeMs);
+        try {
+            for (UserCredentialsView view : userRepository.findCredentialsChangedSince(since.atOffset(ZoneOffset.UTC))) {
+                Instant changed = view.getCredentialsChangedAt().toInstant();
+                revokedBefore.merge(view.getUserId(), changed, (current, next) -> next.isAfter(current) ? next : current);
+                if (lastSeenChange == null || changed.isAfter(lastSeenChange)) {
+                    lastSeenChange = changed;
+                }
+            }
+        } catch (RuntimeException e) {
+            // Không biết chắc các thay đổi mới nhất: tạm đi đường DB cho mọi request
+            ready = false;
+            log.warn("Không đọc được danh sách user vừa thay đổi quyền, tạm xác thực qua DB", e);
+            return;
+        }
+        // Bỏ mốc mà mọi token phát hành trước nó đã hết hạn, để map không lớn dần
+        Instant expiredBefore = now.minusMillis(accessTokenLifetimeMs + pollOverlapMs);
+        revokedBefore.values().removeIf(changed -> changed.isBefore(expiredBefore));
+        ready = true;
+    }
+}
@@ -1,5 +1,6 @@
 package com.foodmarket.food_market.auth.security;
 
+import io.jsonwebtoken.Claims;
 import io.jsonwebtoken.ExpiredJwtException;
 import jakarta.servlet.FilterChain;
 import jakarta.servlet.ServletException;
@@ -24,6 +25,7 @@ public class JwtAuthenticationFilter extends OncePerRequestFilter {
 
     private final JwtService jwtService;
     private final UserDetailsService userDetailsService; 
+    private final ClaimsPrincipalResolver claimsPrincipalResolver;
 
     @Override
     protected void doFilterInternal(
@@ -34,6 +36,7 @@ public class JwtAuthenticationFilter extends OncePerRequestFilter {
 
         final String authHeader = request.getHeader("Authorization");
         final String jwt;
+        final Claims claims;
         final String userEmail;
         if (authHeader == null || !authHeader.startsWith("Bearer ")) {
             filterChain.doFilter(request, response); 
@@ -43,7 +46,9 @@ public class JwtAuthenticationFilter extends OncePerRequestFilter {
         jwt = authHeader.substring(7);
 
         try {
-            userEmail = jwtService.extractUsername(jwt);
+            // Verify + parse token đúng 1 lần cho cả request
+            claims = jwtService.extractAllClaims(jwt);
+            userEmail = claims.getSubject();
         } catch (ExpiredJwtException e) {
             response.setStatus(HttpServletResponse.SC_UNAUTHORIZED);
             response.getWriter().write("Token expired");
@@ -56,9 +61,12 @@ public class JwtAuthenticationFilter extends OncePerRequestFilter {
 
         if (userEmail != null && SecurityContextHolder.getContext().getAuthentication() == null) {
 
-            UserDetails userDetails = this.userDetailsService.loadUserByUsername(userEmail);
+            // Ưu tiên principal dựng từ claims; chỉ truy vấn DB khi claims không dùng được
+            UserDetails userDetails = claimsPrincipalResolver.resolve(claims)
+                    .<UserDetails>map(user -> user)
+                    .orElseGet(() -> this.userDetailsService.loadUserByUsername(userEmail));
 
-            if (jwtService.isTokenValid(jwt, userDetails)) {
+            if (jwtService.isTokenValid(claims, userDetails)) {
 
                 UsernamePasswordAuthenticationToken authToken = new UsernamePasswordAuthenticationToken(
                         userDetails,
@@ -1,17 +1,22 @@
 package com.foodmarket.food_market.auth.security;
 
 import io.jsonwebtoken.Claims;
+import io.jsonwebtoken.JwtParser;
 import io.jsonwebtoken.Jwts;
 import io.jsonwebtoken.io.Decoders;
 import io.jsonwebtoken.security.Keys;
+import jakarta.annotation.PostConstruct;
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.security.core.userdetails.UserDetails;
 import org.springframework.stereotype.Service;
 
 import javax.crypto.SecretKey;
-import java.util.Date;
-import java.util.HashMap;
-import java.util.Map;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.function.Function;
 
 @Service
@@ -23,6 +28,27 @@ public class JwtService {
     @Value("${jwt.expiration-ms}")
     private long JWT_EXPIRATION_MS;
 
+    // Số token đã xác thực được giữ lại (theo SHA-256 của token) để không phải verify HMAC + parse JSON lại
+    @Value("${jwt.verified-cache-size:10000}")
+    private int verifiedCacheSize;
+
+    // Khoá và parser dựng 1 lần (JwtParser bất biến, dùng chung giữa các thread được)
+    private SecretKey signInKey;
+    private JwtParser jwtParser;
+    // Đọc không khoá; token bị loại khi hết hạn (evictExpiredTokens), cache đầy thì token mới không được giữ lại
+    private final Map<String, Claims> verifiedTokens = new ConcurrentHashMap<>();
+
+    @PostConstruct
+    void init() {
+        signInKey = Keys.hmacShaKeyFor(Decoders.BASE64.decode(SECRET_KEY));
+        jwtParser = Jwts.parser().verifyWith(signInKey).build();
+    }
+
+    @Scheduled(fixedDelayString = "${jwt.verified-cache-evict-ms:60000}")
+    public void evictExpiredTokens() {
+        verifiedTokens.values().removeIf(this::isTokenExpired);
+    }
+
     public String extractUsername(String token) {
         return extractClaim(token, Claims::getSubject);
     }
@@ -54,30 +80,49 @@ public class JwtService {
     }
 
     public boolean isTokenValid(String token, UserDetails userDetails) {
-        final String username = extractUsername(token);
-        return (username.equals(userDetails.getUsername())) && !isTokenExpired(token);
+        return isTokenValid(extractAllClaims(token), userDetails);
     }
 
-    private boolean isTokenExpired(String token) {
-        return extractExpiration(token).before(new Date());
+    public boolean isTokenValid(Claims claims, UserDetails userDetails) {
+        return claims.getSubject().equals(userDetails.getUsername()) && !isTokenExpired(claims);
     }
 
-    private Date extractExpiration(String token) {
-        return extractClaim(token, Claims::getExpiration);
+    private boolean isTokenExpired(Claims claims) {
+        return claims.getExpiration().before(new Date());
     }
 
-    private Claims extractAllClaims(String token) {
-        return Jwts
-                .parser() 
-                .verifyWith(getSignInKey()) 
-                .build()
-                .parseSignedClaims(token) 
-                .getPayload(); 
+    /**
+     * Verify chữ ký + parse token, dùng lại kết quả của token đã verify trước đó nếu chưa hết hạn.
+     * Token hết hạn / sai chữ ký ném exception của jjwt như trước.
+     */
+    public Claims extractAllClaims(String token) {
+        String tokenHash = sha256(token);
+        Claims cached = verifiedTokens.get(tokenHash);
+        if (cached != null) {
+            if (!isTokenExpired(cached)) {
+                return cached;
+            }
+            // Hết hạn: bỏ khỏi cache, để parser ném ExpiredJwtException
+            verifiedTokens.remove(tokenHash);
+        }
+
+        Claims claims = jwtParser.parseSignedClaims(token).getPayload();
+        if (verifiedTokens.size() < verifiedCacheSize) {
+            verifiedTokens.put(tokenHash, claims);
+        }
+        return claims;
     }
 
-    
     private SecretKey getSignInKey() {
-        byte[] keyBytes = Decoders.BASE64.decode(SECRET_KEY);
-        return Keys.hmacShaKeyFor(keyBytes);
+        return signInKey;
+    }
+
+    private static String sha256(String token) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            return HexFormat.of().formatHex(digest.digest(token.getBytes(StandardCharsets.UTF_8)));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 không khả dụng", e);
+        }
     }
 }
\ No newline at end of file
@@ -5,6 +5,7 @@ import com.foodmarket.food_market.auth.dto.response.AuthResponseDTO;
 import com.foodmarket.food_market.auth.model.PasswordResetToken;
 import com.foodmarket.food_market.auth.model.RefreshToken;
 import com.foodmarket.food_market.auth.repository.PasswordResetTokenRepository;
+import com.foodmarket.food_market.auth.security.ClaimsPrincipalResolver;
 import com.foodmarket.food_market.auth.security.JwtService;
 import com.foodmarket.food_market.shared.service.EmailService;
 import com.foodmarket.food_market.user.model.entity.User;
@@ -18,8 +19,6 @@ import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
 import java.time.Instant;
-import java.util.HashMap;
-import java.util.Map;
 import java.util.Optional;
 
 @Service
@@ -29,6 +28,7 @@ public class AuthServiceImpl implements AuthService {
     private final UserRepository userRepository;
     private final PasswordEncoder passwordEncoder;
     private final JwtService jwtService;
+    private final ClaimsPrincipalResolver claimsPrincipalResolver;
     private final AuthenticationManager authenticationManager;
     private final RefreshTokenService refreshTokenService;
     private final EmailService emailService;
@@ -54,7 +54,7 @@ public class AuthServiceImpl implements AuthService {
 
         User savedUser = userRepository.save(newUser);
 
-        String jwtToken = jwtService.generateToken(savedUser);
+        String jwtToken = jwtService.generateToken(ClaimsPrincipalResolver.buildClaims(savedUser), savedUser);
         RefreshToken refreshToken = refreshTokenService.createRefreshToken(savedUser.getUserId());
         String emailSubject = "Chào mừng bạn đến với Food Market!";
         String emailText = "Xin chào " + savedUser.getFullName() + ",\n\n"
@@ -76,11 +76,7 @@ public class AuthServiceImpl implements AuthService {
         );
         var user = userRepository.findByEmail(request.getEmail())
                 .orElseThrow(() -> new IllegalArgumentException("Email không tồn tại.")); 
-        Map<String, Object> extraClaims = new HashMap<>();
-        extraClaims.put("userId", user.getUserId());
-        extraClaims.put("fullName", user.getFullName());
-        extraClaims.put("role", user.getRole().name());
-        String jwtToken = jwtService.generateToken(extraClaims,user);
+        String jwtToken = jwtService.generateToken(ClaimsPrincipalResolver.buildClaims(user), user);
         RefreshToken refreshToken = refreshTokenService.createRefreshToken(user.getUserId());
 
         return AuthResponseDTO.builder()
@@ -100,7 +96,7 @@ public class AuthServiceImpl implements AuthService {
 
         User user = refreshToken.getUser();
 
-        String newAccessToken = jwtService.generateToken(user);
+        String newAccessToken = jwtService.generateToken(ClaimsPrincipalResolver.buildClaims(user), user);
 
         RefreshToken newRefreshToken = refreshTokenService.createRefreshToken(user.getUserId());
 
@@ -153,6 +149,7 @@ public class AuthServiceImpl implements AuthService {
 
         user.setPasswordHash(passwordEncoder.encode(request.getNewPassword()));
         userRepository.save(user);
+        claimsPrincipalResolver.invalidateUser(user.getUserId());
 
         passwordResetTokenRepository.delete(resetToken);
         String subject = "Thông báo: Mật khẩu của bạn đã được reset";
@@ -1,5 +1,6 @@
 package com.foodmarket.food_market.cart.controller;
 
+import com.foodmarket.food_market.cart.dto.CartChangeResponseDTO;
 import com.foodmarket.food_market.cart.dto.CartItemRequestDTO;
 import com.foodmarket.food_market.cart.dto.CartItemUpdateDTO;
 import com.foodmarket.food_market.cart.dto.CartResponseDTO;
@@ -29,7 +30,7 @@ public class CartController {
 
     
     @PostMapping("/items")
-    public ResponseEntity<CartResponseDTO> addItemToMyCart(
+    public ResponseEntity<CartChangeResponseDTO> addItemToMyCart(
             Authentication authentication,
             @Valid @RequestBody CartItemRequestDTO request
     ) {
@@ -39,7 +40,7 @@ public class CartController {
 
    
     @PutMapping("/items/{cartItemId}")
-    public ResponseEntity<CartResponseDTO> updateMyCartItem(
+    public ResponseEntity<CartChangeResponseDTO> updateMyCartItem(
             Authentication authentication,
             @PathVariable Long cartItemId,
             @Valid @RequestBody CartItemUpdateDTO request
@@ -50,7 +51,7 @@ public class CartController {
 
   
     @DeleteMapping("/items/{cartItemId}")
-    public ResponseEntity<CartResponseDTO> removeMyCartItem(
+    public ResponseEntity<CartChangeResponseDTO> removeMyCartItem(
             Authentication authentication,
             @PathVariable Long cartItemId
     ) {
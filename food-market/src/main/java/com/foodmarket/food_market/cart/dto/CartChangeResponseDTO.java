@@ -0,0 +1,41 @@
+package com.foodmarket.food_market.cart.dto;
+
+import com.foodmarket.food_market.cart.dto.projection.CartTotalsView;
+import lombok.Builder;
+import lombok.Data;
+
+import java.math.BigDecimal;
+import java.util.UUID;
+
+/**
+ * Kết quả của thao tác thêm / sửa / xoá: chỉ dòng bị thay đổi và tổng tiền mới,
+ * client tự ghép vào giỏ đang hiển thị (không đọc lại cả giỏ).
+ */
+@Data
+@Builder
+public class CartChangeResponseDTO {
+    private UUID cartId;
+    // null khi dòng bị xoá
+    private CartItemResponseDTO item;
+    private Long removedCartItemId;
+    private BigDecimal grandTotal;
+    private BigDecimal baseGrandTotal;
+
+    public static CartChangeResponseDTO updated(UUID cartId, CartItemResponseDTO item, CartTotalsView totals) {
+        return CartChangeResponseDTO.builder()
+                .cartId(cartId)
+                .item(item)
+                .grandTotal(totals.getGrandTotal())
+                .baseGrandTotal(totals.getBaseGrandTotal())
+                .build();
+    }
+
+    public static CartChangeResponseDTO removed(UUID cartId, Long cartItemId, CartTotalsView totals) {
+        return CartChangeResponseDTO.builder()
+                .cartId(cartId)
+                .removedCartItemId(cartItemId)
+                .grandTotal(totals.getGrandTotal())
+                .baseGrandTotal(totals.getBaseGrandTotal())
+                .build();
+    }
+}
@@ -1,6 +1,6 @@
 package com.foodmarket.food_market.cart.dto;
 
-import com.foodmarket.food_market.product.model.Product;
+import com.foodmarket.food_market.cart.dto.projection.CartLineView;
 import lombok.Builder;
 import lombok.Data;
 
@@ -14,17 +14,14 @@ public class CartItemProductInfoDTO {
     private String slug;
     private String categorySlug;
 
-    public static CartItemProductInfoDTO fromEntity(Product product) {
-        String imageUrl = (product.getImages() != null && !product.getImages().isEmpty())
-                ? product.getImages().get(0).getImageUrl()
-                : null;
+    public static CartItemProductInfoDTO fromLine(CartLineView line) {
         return CartItemProductInfoDTO.builder()
-                .id(product.getId())
-                .name(product.getName())
-                .imageUrl(imageUrl)
-                .unit(product.getUnit())
-                .slug(product.getSlug())
-                .categorySlug(product.getCategory().getSlug())
+                .id(line.getProductId())
+                .name(line.getProductName())
+                .imageUrl(line.getImageUrl())
+                .unit(line.getUnit())
+                .slug(line.getSlug())
+                .categorySlug(line.getCategorySlug())
                 .build();
     }
-}
\ No newline at end of file
+}
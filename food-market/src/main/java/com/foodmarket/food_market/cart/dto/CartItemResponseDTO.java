@@ -1,7 +1,6 @@
 package com.foodmarket.food_market.cart.dto;
 
-import com.foodmarket.food_market.cart.model.CartItem;
-import com.foodmarket.food_market.product.model.Product;
+import com.foodmarket.food_market.cart.dto.projection.CartLineView;
 import lombok.Builder;
 import lombok.Data;
 
@@ -18,19 +17,24 @@ public class CartItemResponseDTO {
     private BigDecimal totalItemPrice; 
     private CartItemProductInfoDTO product;
     private String note;
-    public static CartItemResponseDTO fromEntity(CartItem cartItem, String note) {
-        Product product = cartItem.getProduct();
-        BigDecimal total = cartItem.getPrice().multiply(BigDecimal.valueOf(cartItem.getQuantity()));
-        BigDecimal totalBase = product.getBasePrice().multiply(BigDecimal.valueOf(cartItem.getQuantity()));
+
+    public static CartItemResponseDTO fromLine(CartLineView line, String note) {
+        return fromLine(line, line.getPrice(), line.getQuantity(), note);
+    }
+
+    // Giá / số lượng truyền vào là giá trị sau khi kiểm tra lại (có thể khác giá trị đang lưu)
+    public static CartItemResponseDTO fromLine(CartLineView line, BigDecimal price, int quantity, String note) {
+        BigDecimal total = price.multiply(BigDecimal.valueOf(quantity));
+        BigDecimal totalBase = line.getBasePrice().multiply(BigDecimal.valueOf(quantity));
         return CartItemResponseDTO.builder()
-                .cartItemId(cartItem.getId())
-                .quantity(cartItem.getQuantity())
-                .basePrice(product.getBasePrice())
-                .itemPrice(cartItem.getPrice())
+                .cartItemId(line.getCartItemId())
+                .quantity(quantity)
+                .basePrice(line.getBasePrice())
+                .itemPrice(price)
                 .totalBasePrice(totalBase)
                 .totalItemPrice(total)
-                .product(CartItemProductInfoDTO.fromEntity(product))
+                .product(CartItemProductInfoDTO.fromLine(line))
                 .note(note)
                 .build();
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,20 @@
+package com.foodmarket.food_market.cart.dto.projection;
+
+import java.math.BigDecimal;
+
+public interface CartLineView {
+    Long getCartItemId();
+    Integer getQuantity();
+    // Giá đã lưu trong giỏ
+    BigDecimal getPrice();
+    Long getProductId();
+    String getProductName();
+    String getUnit();
+    String getSlug();
+    String getCategorySlug();
+    String getImageUrl();
+    BigDecimal getBasePrice();
+    // Giá bán hiện tại của sản phẩm (như Product.getFinalPrice)
+    BigDecimal getLivePrice();
+    Integer getAvailableQuantity();
+}
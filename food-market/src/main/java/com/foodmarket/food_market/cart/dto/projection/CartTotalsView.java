@@ -0,0 +1,8 @@
+package com.foodmarket.food_market.cart.dto.projection;
+
+import java.math.BigDecimal;
+
+public interface CartTotalsView {
+    BigDecimal getGrandTotal();
+    BigDecimal getBaseGrandTotal();
+}
@@ -1,18 +1,75 @@
 package com.foodmarket.food_market.cart.repository;
 
+import com.foodmarket.food_market.cart.dto.projection.CartLineView;
+import com.foodmarket.food_market.cart.dto.projection.CartTotalsView;
 import com.foodmarket.food_market.cart.model.Cart;
 import com.foodmarket.food_market.cart.model.CartItem;
 import com.foodmarket.food_market.product.model.Product;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import java.math.BigDecimal;
+import java.util.List;
 import java.util.Optional;
 import java.util.UUID;
 
 @Repository
 public interface CartItemRepository extends JpaRepository<CartItem, Long> {
 
+    // Dòng giỏ hàng kèm thông tin sản phẩm, giá hiện tại, tồn kho (product_stock_summary) và ảnh đại diện
+    String CART_LINE_SELECT = """
+                SELECT ci.cart_item_id AS cartItemId, ci.quantity AS quantity, ci.price AS price,
+                       p.product_id AS productId, p.name AS productName, p.unit AS unit, p.slug AS slug,
+                       c.slug AS categorySlug, img.image_url AS imageUrl, p.base_price AS basePrice,
+                       CASE WHEN p.is_on_sale AND p.sale_price IS NOT NULL THEN p.sale_price ELSE p.base_price END AS livePrice,
+                       COALESCE(s.available_quantity, 0) AS availableQuantity
+                FROM cart_items ci
+                JOIN products p ON p.product_id = ci.product_id
+                JOIN categories c ON c.category_id = p.category_id
+                LEFT JOIN product_stock_summary s ON s.product_id = p.product_id
+                LEFT JOIN LATERAL (
+                    SELECT pi.image_url FROM product_images pi
+                    WHERE pi.product_id = p.product_id
+                    ORDER BY pi.display_order, pi.id
+                    LIMIT 1
+                ) img ON TRUE
+            """;
+
     Optional<CartItem> findByCartAndProduct(Cart cart, Product product);
 
     Optional<CartItem> findByIdAndCart_Id(Long id, UUID cartId);
-}
\ No newline at end of file
+
+    @Query(value = CART_LINE_SELECT + " WHERE ci.cart_id = :cartId ORDER BY ci.cart_item_id", nativeQuery = true)
+    List<CartLineView> findLinesByCartId(@Param("cartId") UUID cartId);
+
+    @Query(value = CART_LINE_SELECT + " WHERE ci.cart_item_id = :cartItemId", nativeQuery = true)
+    Optional<CartLineView> findLineById(@Param("cartItemId") Long cartItemId);
+
+    @Query(value = """
+                SELECT COALESCE(SUM(ci.price * ci.quantity), 0) AS grandTotal,
+                       COALESCE(SUM(p.base_price * ci.quantity), 0) AS baseGrandTotal
+                FROM cart_items ci
+                JOIN products p ON p.product_id = ci.product_id
+                WHERE ci.cart_id = :cartId
+            """, nativeQuery = true)
+    CartTotalsView sumTotalsByCartId(@Param("cartId") UUID cartId);
+
+    /**
+     * Ghi lại giá / số lượng đã kiểm tra, chỉ khi dòng vẫn còn lệch
+     * (request khác đã sửa trước thì không ghi đè).
+     */
+    @Modifying
+    @Query(value = """
+                UPDATE cart_items
+                SET price = :price,
+                    quantity = LEAST(quantity, :maxQuantity)
+                WHERE cart_item_id = :cartItemId
+                AND (price <> :price OR quantity > :maxQuantity)
+            """, nativeQuery = true)
+    int revalidateLine(@Param("cartItemId") Long cartItemId,
+                       @Param("price") BigDecimal price,
+                       @Param("maxQuantity") int maxQuantity);
+}
@@ -18,4 +18,7 @@ public interface CartRepository extends JpaRepository<Cart, UUID> {
     Optional<Cart> findByUserIdWithItems(UUID userId);
 
     Optional<Cart> findByUser_UserId(UUID userId);
+
+    @Query("SELECT c.id FROM Cart c WHERE c.user.userId = :userId")
+    Optional<UUID> findIdByUserId(UUID userId);
 }
\ No newline at end of file
@@ -0,0 +1,28 @@
+package com.foodmarket.food_market.cart.service;
+
+import com.foodmarket.food_market.cart.repository.CartItemRepository;
+import lombok.RequiredArgsConstructor;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.math.BigDecimal;
+import java.util.List;
+
+/**
+ * Ghi kết quả kiểm tra lại giá / tồn kho của GET /cart trong transaction riêng,
+ * chỉ chạy khi có dòng bị lệch (đa số lượt xem giỏ không ghi gì).
+ */
+@Service
+@RequiredArgsConstructor
+public class CartRevalidator {
+
+    private final CartItemRepository cartItemRepository;
+
+    public record LineFix(Long cartItemId, BigDecimal price, int maxQuantity) {
+    }
+
+    @Transactional
+    public void apply(List<LineFix> fixes) {
+        fixes.forEach(fix -> cartItemRepository.revalidateLine(fix.cartItemId(), fix.price(), fix.maxQuantity()));
+    }
+}
@@ -1,5 +1,6 @@
 package com.foodmarket.food_market.cart.service;
 
+import com.foodmarket.food_market.cart.dto.CartChangeResponseDTO;
 import com.foodmarket.food_market.cart.dto.CartItemRequestDTO;
 import com.foodmarket.food_market.cart.dto.CartItemUpdateDTO;
 import com.foodmarket.food_market.cart.dto.CartResponseDTO;
@@ -10,10 +11,10 @@ public interface CartService {
 
     CartResponseDTO getCart(UUID userId);
 
-    CartResponseDTO addItemToCart(UUID userId, CartItemRequestDTO request);
+    CartChangeResponseDTO addItemToCart(UUID userId, CartItemRequestDTO request);
 
-    CartResponseDTO updateCartItem(UUID userId, Long cartItemId, CartItemUpdateDTO request);
+    CartChangeResponseDTO updateCartItem(UUID userId, Long cartItemId, CartItemUpdateDTO request);
 
-    CartResponseDTO removeCartItem(UUID userId, Long cartItemId);
+    CartChangeResponseDTO removeCartItem(UUID userId, Long cartItemId);
 
 }
\ No newline at end of file
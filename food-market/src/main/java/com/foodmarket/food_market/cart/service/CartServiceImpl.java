@@ -1,13 +1,16 @@
 package com.foodmarket.food_market.cart.service;
 
+import com.foodmarket.food_market.cart.dto.CartChangeResponseDTO;
 import com.foodmarket.food_market.cart.dto.CartItemRequestDTO;
+import com.foodmarket.food_market.cart.dto.CartItemResponseDTO;
 import com.foodmarket.food_market.cart.dto.CartItemUpdateDTO;
 import com.foodmarket.food_market.cart.dto.CartResponseDTO;
+import com.foodmarket.food_market.cart.dto.projection.CartLineView;
 import com.foodmarket.food_market.cart.model.Cart;
 import com.foodmarket.food_market.cart.model.CartItem;
 import com.foodmarket.food_market.cart.repository.CartItemRepository;
 import com.foodmarket.food_market.cart.repository.CartRepository;
-import com.foodmarket.food_market.inventory.repository.InventoryBatchRepository;
+import com.foodmarket.food_market.inventory.service.InventoryService;
 import com.foodmarket.food_market.product.model.Product;
 import com.foodmarket.food_market.product.repository.ProductRepository;
 import com.foodmarket.food_market.user.model.entity.User;
@@ -29,56 +32,68 @@ public class CartServiceImpl implements CartService {
     private final CartItemRepository cartItemRepository;
     private final ProductRepository productRepository;
     private final UserRepository userRepository;
-    private final InventoryBatchRepository inventoryBatchRepository;
+    private final InventoryService inventoryService;
+    private final CartRevalidator cartRevalidator;
 
+    // Lượt xem giỏ (badge trên mọi trang): chỉ đọc bằng 1 truy vấn projection, giá và tồn kho được kiểm tra
+    // trong bộ nhớ; chỉ khi có dòng lệch mới ghi lại qua CartRevalidator (transaction riêng, UPDATE có điều kiện)
     @Override
-    @Transactional
     public CartResponseDTO getCart(UUID userId) {
-        Cart cart = findOrCreateCart(userId, true);
-        Map<Long, String> note = new HashMap<>(); 
-        boolean isCartChanged = false; 
-
-        for (CartItem item : cart.getItems()) {
-            Product product = item.getProduct();
-            BigDecimal currentLivePrice = product.getFinalPrice();
-            if (item.getPrice().compareTo(currentLivePrice) != 0) {
-                if (item.getPrice().compareTo(currentLivePrice) < 0) {
-                    note.put(item.getId(), "Chương trình khuyến mãi cho món '" + product.getName() +
+        Optional<UUID> cartId = cartRepository.findIdByUserId(userId);
+        if (cartId.isEmpty()) {
+            return CartResponseDTO.of(null, List.of());
+        }
+
+        Map<Long, String> note = new HashMap<>();
+        List<CartRevalidator.LineFix> fixes = new ArrayList<>();
+        List<CartItemResponseDTO> items = new ArrayList<>();
+
+        for (CartLineView line : cartItemRepository.findLinesByCartId(cartId.get())) {
+            BigDecimal price = line.getPrice();
+            int quantity = line.getQuantity();
+            boolean drifted = false;
+            BigDecimal currentLivePrice = line.getLivePrice();
+            if (price.compareTo(currentLivePrice) != 0) {
+                if (price.compareTo(currentLivePrice) < 0) {
+                    note.put(line.getCartItemId(), "Chương trình khuyến mãi cho món '" + line.getProductName() +
                             "' đã kết thúc. Giá đã cập nhật về " + currentLivePrice + "đ.");
                 } else {
-                    note.put(item.getId(), "Tin vui! Món '" + product.getName() +
+                    note.put(line.getCartItemId(), "Tin vui! Món '" + line.getProductName() +
                             "' vừa được giảm giá xuống còn " + currentLivePrice + "đ.");
                 }
-                item.setPrice(currentLivePrice);
-                isCartChanged = true;
+                price = currentLivePrice;
+                drifted = true;
             }
             // 3. logic check tồn kho
-            long stockQuantity = inventoryBatchRepository.findCurrentProductQuantity(item.getProduct().getId());
+            int stockQuantity = line.getAvailableQuantity();
             if (stockQuantity <= 0) {
-                item.setQuantity(0);
-                note.put(item.getId(), "Sản phẩm đã hết hàng");
-                isCartChanged = true;
-            } else if (stockQuantity < item.getQuantity()) {
-                item.setQuantity((int) stockQuantity);
-                note.put(item.getId(), "Kho chỉ còn " + stockQuantity + " sản phẩm. Số lượng đã được cập nhật.");
-                isCartChanged = true;
+                quantity = 0;
+                note.put(line.getCartItemId(), "Sản phẩm đã hết hàng");
+                drifted = line.getQuantity() > 0 || drifted;
+            } else if (stockQuantity < quantity) {
+                quantity = stockQuantity;
+                note.put(line.getCartItemId(), "Kho chỉ còn " + stockQuantity + " sản phẩm. Số lượng đã được cập nhật.");
+                drifted = true;
             }
+            if (drifted) {
+                fixes.add(new CartRevalidator.LineFix(line.getCartItemId(), price, Math.max(stockQuantity, 0)));
+            }
+            items.add(CartItemResponseDTO.fromLine(line, price, quantity, note.get(line.getCartItemId())));
         }
-        if (isCartChanged) {
-            cartRepository.save(cart);
+        if (!fixes.isEmpty()) {
+            cartRevalidator.apply(fixes);
         }
-        return mapCartToDTO(cart, note);
+        return CartResponseDTO.of(cartId.get(), items);
     }
 
     @Override
     @Transactional
-    public CartResponseDTO addItemToCart(UUID userId, CartItemRequestDTO request) {
-        Cart cart = findOrCreateCart(userId, false);
+    public CartChangeResponseDTO addItemToCart(UUID userId, CartItemRequestDTO request) {
+        Cart cart = findOrCreateCart(userId);
         Product product = findProductById(request.getProductId());
 
         // 1. Kiểm tra tồn kho thực tế
-        long currentStock = inventoryBatchRepository
-                .findCurrentProductQuantity(request.getProductId());
+        long currentStock = inventoryService.getStockAvailability(request.getProductId());
 
         // Tìm item cũ để tính tổng số lượng sau khi thêm
         Optional<CartItem> existingItemOpt = cartItemRepository.findByCartAndProduct(cart, product);
@@ -94,31 +109,30 @@ public class CartServiceImpl implements CartService {
         // 2. Xử lý Thêm hoặc Cập nhật
         BigDecimal priceToAdd = product.getFinalPrice();
 
+        CartItem item;
         if (existingItemOpt.isPresent()) {
-            CartItem item = existingItemOpt.get();
+            item = existingItemOpt.get();
             item.setQuantity(totalRequested);
-            cartItemRepository.save(item);
         } else {
-            CartItem newItem = new CartItem(cart, product, request.getQuantity());
-            newItem.setPrice(priceToAdd);
-            cartItemRepository.save(newItem);
+            item = new CartItem(cart, product, request.getQuantity());
+            item.setPrice(priceToAdd);
         }
+        cartItemRepository.saveAndFlush(item);
 
-        // 3. QUAN TRỌNG: Gọi lại getCart để trả về DTO đầy đủ kèm Warnings (nếu có các item khác bị thay đổi)
-        return getCart(userId);
+        // 3. Chỉ trả về dòng vừa đổi + tổng tiền mới
+        return changedResponse(cart.getId(), item.getId());
     }
 
     @Override
     @Transactional
-    public CartResponseDTO updateCartItem(UUID userId, Long cartItemId, CartItemUpdateDTO request) {
-        Cart cart = findOrCreateCart(userId, false);
+    public CartChangeResponseDTO updateCartItem(UUID userId, Long cartItemId, CartItemUpdateDTO request) {
+        Cart cart = findOrCreateCart(userId);
 
         CartItem item = cartItemRepository.findByIdAndCart_Id(cartItemId, cart.getId())
                 .orElseThrow(() -> new EntityNotFoundException("Không tìm thấy item trong giỏ hàng."));
 
         // 1. Kiểm tra tồn kho với số lượng MỚI user muốn update
-        long currentStock = inventoryBatchRepository
-                .findCurrentProductQuantity(item.getProduct().getId());
+        long currentStock = inventoryService.getStockAvailability(item.getProduct().getId());
 
         if (currentStock < request.getQuantity()) {
             throw new IllegalArgumentException(
@@ -128,30 +142,35 @@ public class CartServiceImpl implements CartService {
 
         // 2. Cập nhật số lượng VÀ giá mới nhất
         item.setQuantity(request.getQuantity());
-        cartItemRepository.save(item);
+        item.setPrice(item.getProduct().getFinalPrice());
+        cartItemRepository.saveAndFlush(item);
 
-        // 3. Gọi lại getCart để đảm bảo tính toán lại tổng tiền và warnings
-        return getCart(userId);
+        return changedResponse(cart.getId(), item.getId());
     }
 
     @Override
     @Transactional
-    public CartResponseDTO removeCartItem(UUID userId, Long cartItemId) {
-        Cart cart = findOrCreateCart(userId, false);
+    public CartChangeResponseDTO removeCartItem(UUID userId, Long cartItemId) {
+        Cart cart = findOrCreateCart(userId);
 
         CartItem item = cartItemRepository.findByIdAndCart_Id(cartItemId, cart.getId())
                 .orElseThrow(() -> new EntityNotFoundException("Không tìm thấy item trong giỏ hàng."));
 
         cartItemRepository.delete(item);
+        cartItemRepository.flush();
+
+        return CartChangeResponseDTO.removed(cart.getId(), cartItemId, cartItemRepository.sumTotalsByCartId(cart.getId()));
+    }
 
-        // Gọi lại getCart để tính lại tổng tiền sau khi xóa
-        return getCart(userId);
+    private CartChangeResponseDTO changedResponse(UUID cartId, Long cartItemId) {
+        CartLineView line = cartItemRepository.findLineById(cartItemId)
+                .orElseThrow(() -> new EntityNotFoundException("Không tìm thấy item trong giỏ hàng."));
+        return CartChangeResponseDTO.updated(cartId, CartItemResponseDTO.fromLine(line, null),
+                cartItemRepository.sumTotalsByCartId(cartId));
     }
 
-    private Cart findOrCreateCart(UUID userId, boolean fetchItems) {
-        Optional<Cart> cartOpt = fetchItems ?
-                cartRepository.findByUserIdWithItems(userId) :
-                cartRepository.findByUser_UserId(userId);
+    private Cart findOrCreateCart(UUID userId) {
+        Optional<Cart> cartOpt = cartRepository.findByUser_UserId(userId);
 
         if (cartOpt.isPresent()) {
             return cartOpt.get();
@@ -167,13 +186,6 @@ public class CartServiceImpl implements CartService {
         return cartRepository.save(newCart);
     }
 
-    private CartResponseDTO mapCartToDTO(Cart cart, Map<Long, String> noteMap) {
-        if (cart.getItems().isEmpty()) {
-            return CartResponseDTO.fromEntity(cart, Map.of());
-        }
-        return CartResponseDTO.fromEntity(cart, noteMap);
-    }
-
     private Product findProductById(Long id) {
         return productRepository.findById(id)
                 .orElseThrow(() -> new EntityNotFoundException("Không tìm thấy sản phẩm với ID: " + id));
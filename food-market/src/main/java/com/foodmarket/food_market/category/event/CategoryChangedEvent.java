@@ -0,0 +1,15 @@
+package com.foodmarket.food_market.category.event;
+
+import lombok.Getter;
+
+/**
+ * Phát ra khi danh mục được tạo, sửa hoặc xoá.
+ */
+@Getter
+public class CategoryChangedEvent {
+    private final Long categoryId;
+
+    public CategoryChangedEvent(Long categoryId) {
+        this.categoryId = categoryId;
+    }
+}
@@ -18,8 +18,15 @@ public interface CategoryRepository extends JpaRepository<Category, Long> {
     List<Category> getCategoriesByParentId(Long parentId);
     Optional<Category> findByName(String name);
     @Query(value = "SELECT * FROM categories c " +
-            "WHERE unaccent(c.name) ILIKE unaccent(concat('%', :keyword, '%')) AND c.parent_id IS NOT NULL"
+            "WHERE lower(immutable_unaccent(c.name)) LIKE concat('%', lower(immutable_unaccent(:keyword)), '%') " +
+            "AND c.parent_id IS NOT NULL " +
+            "ORDER BY similarity(lower(immutable_unaccent(c.name)), lower(immutable_unaccent(:keyword))) DESC, c.name"
             , nativeQuery = true)
     List<Category> searchByKeyword(@Param("keyword") String keyword);
+    // Tìm sản phẩm theo tên danh mục: tra id danh mục qua index trigram trước (V22)
+    @Query(value = "SELECT c.category_id FROM categories c " +
+            "WHERE lower(immutable_unaccent(c.name)) LIKE concat('%', lower(immutable_unaccent(:keyword)), '%')"
+            , nativeQuery = true)
+    List<Long> findIdsByNameContaining(@Param("keyword") String keyword);
     List<Category> findByParentIdIsNull();
 }
\ No newline at end of file
@@ -2,19 +2,20 @@ package com.foodmarket.food_market.category.service;
 
 import com.foodmarket.food_market.category.dto.CategoryResponseDTO; // <-- Cập nhật
 import com.foodmarket.food_market.category.dto.CategorySaveRequestDTO; // <-- Cập nhật
+import com.foodmarket.food_market.category.event.CategoryChangedEvent;
 import com.foodmarket.food_market.category.model.Category;
 import com.foodmarket.food_market.category.repository.CategoryRepository;
 import com.foodmarket.food_market.shared.service.ImageService;
 import com.github.slugify.Slugify;
 import jakarta.persistence.EntityNotFoundException;
 import lombok.RequiredArgsConstructor;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
 import java.io.IOException;
 import java.util.ArrayList;
 import java.util.List;
-import java.util.Map;
 import java.util.Optional;
 import java.util.stream.Collectors;
 
@@ -23,56 +24,35 @@ import java.util.stream.Collectors;
 public class CategoryServiceImpl implements CategoryService {
 
     private final CategoryRepository categoryRepository;
+    private final CategorySnapshotCache categorySnapshotCache;
     private final ImageService imageService;
+    private final ApplicationEventPublisher eventPublisher;
     private final Slugify slugify = Slugify.builder().transliterator(true).build();
 
+    // Các truy vấn đọc lấy từ ảnh chụp trong bộ nhớ (CategorySnapshotCache), không chạm DB
+
     @Override
-    @Transactional(readOnly = true)
     public List<CategoryResponseDTO> getCategoryTree() {
-        List<Category> allCategories = categoryRepository.findAllWithParent();
-
-        Map<Long, CategoryResponseDTO> dtoMap = allCategories.stream()
-                .map(CategoryResponseDTO::fromEntity)
-                .collect(Collectors.toMap(CategoryResponseDTO::getId, dto -> dto));
-
-        List<CategoryResponseDTO> rootCategories = new ArrayList<>();
-        for (CategoryResponseDTO dto : dtoMap.values()) {
-            if (dto.getParentId() == null) {
-                rootCategories.add(dto);
-            } else {
-                CategoryResponseDTO parentDto = dtoMap.get(dto.getParentId());
-                if (parentDto != null) {
-                    parentDto.getChildren().add(dto);
-                }
-            }
-        }
-        return rootCategories;
+        return categorySnapshotCache.getTree();
     }
 
     @Override
-    @Transactional(readOnly = true)
     public List<CategoryResponseDTO> getAllCategoriesFlat() {
-        return categoryRepository.findAll().stream()
-                .map(CategoryResponseDTO::fromEntity)
-                .collect(Collectors.toList());
+        return categorySnapshotCache.getAllFlat();
     }
 
     @Override
-    @Transactional(readOnly = true)
     public List<CategoryResponseDTO> getSameRootCategories(String categorySlug) {
-        Category category = categoryRepository.findBySlug(categorySlug)
+        CategoryResponseDTO category = categorySnapshotCache.findBySlug(categorySlug)
                 .orElseThrow(() -> new EntityNotFoundException("Category not found"));
-        List<Category> relatedCategories;
-        if (category.getParent() == null) {
-            relatedCategories = categoryRepository.getCategoriesByParentId(category.getId());
-            relatedCategories.add(0, category);
-        } else {
-            relatedCategories = categoryRepository.getCategoriesByParentId(category.getParent().getId());
-            relatedCategories.add(0, category.getParent());
-        }
-        return relatedCategories.stream()
-                .map(CategoryResponseDTO::fromEntity)
-                .collect(Collectors.toList());
+        CategoryResponseDTO root = category.getParentId() == null
+                ? category
+                : categorySnapshotCache.findById(category.getParentId()).orElse(category);
+
+        List<CategoryResponseDTO> relatedCategories = new ArrayList<>();
+        relatedCategories.add(root);
+        relatedCategories.addAll(categorySnapshotCache.getChildren(root.getId()));
+        return relatedCategories;
     }
 
     @Override
@@ -110,6 +90,7 @@ public class CategoryServiceImpl implements CategoryService {
             }
         }
 
+        eventPublisher.publishEvent(new CategoryChangedEvent(savedCategory.getId()));
         return CategoryResponseDTO.fromEntity(savedCategory);
     }
 
@@ -150,6 +131,7 @@ public class CategoryServiceImpl implements CategoryService {
         category.setParent(parent);
 
         Category updatedCategory = categoryRepository.save(category);
+        eventPublisher.publishEvent(new CategoryChangedEvent(id));
         return CategoryResponseDTO.fromEntity(updatedCategory);
     }
 
@@ -169,6 +151,7 @@ public class CategoryServiceImpl implements CategoryService {
         }
 
         categoryRepository.delete(category);
+        eventPublisher.publishEvent(new CategoryChangedEvent(id));
     }
 
     private Category findCategoryById(Long id) {
@@ -0,0 +1,165 @@
+package com.foodmarket.food_market.category.service;
+
+import com.foodmarket.food_market.category.dto.CategoryResponseDTO;
+import com.foodmarket.food_market.category.event.CategoryChangedEvent;
+import com.foodmarket.food_market.category.model.Category;
+import com.foodmarket.food_market.category.repository.CategoryRepository;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionPhase;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.util.*;
+
+/**
+ * Ảnh chụp bất biến của toàn bộ cây danh mục (danh mục thay đổi rất ít, nhưng được đọc ở hầu hết request storefront).
+ * - Gồm cây DTO, danh sách phẳng, slug -> id và id -> [id, mọi id con cháu] (không giới hạn số cấp).
+ * - Dựng lại toàn bộ rồi thay thế nguyên tử khi có CategoryChangedEvent (sau commit); request chỉ đọc tham chiếu hiện tại.
+ * - Sự kiện chỉ có trên node thực hiện thay đổi: node khác dựng lại khi ảnh chụp cũ hơn category.cache.max-stale-ms.
+ * - DTO trả ra dùng chung giữa các request: không được sửa.
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class CategorySnapshotCache {
+
+    private final CategoryRepository categoryRepository;
+
+    @Value("${category.cache.max-stale-ms:30000}")
+    private long maxStaleMs;
+
+    private volatile Snapshot snapshot;
+
+    private record Snapshot(
+            List<CategoryResponseDTO> tree,
+            List<CategoryResponseDTO> flat,
+            Map<Long, CategoryResponseDTO> flatById,
+            Map<String, Long> idBySlug,
+            Map<Long, List<Long>> childIds,
+            Map<Long, List<Long>> selfAndDescendantIds,
+            long builtAt
+    ) {
+    }
+
+    public List<CategoryResponseDTO> getTree() {
+        return current().tree();
+    }
+
+    public List<CategoryResponseDTO> getAllFlat() {
+        return current().flat();
+    }
+
+    public Optional<CategoryResponseDTO> findBySlug(String slug) {
+        Snapshot current = current();
+        return Optional.ofNullable(current.idBySlug().get(slug)).map(current.flatById()::get);
+    }
+
+    public Optional<CategoryResponseDTO> findById(Long id) {
+        return Optional.ofNullable(current().flatById().get(id));
+    }
+
+    public List<CategoryResponseDTO> getChildren(Long parentId) {
+        Snapshot current = current();
+        return current.childIds().getOrDefault(parentId, List.of()).stream()
+                .map(current.flatById()::get)
+                .toList();
+    }
+
+    /**
+     * Id của danh mục theo slug cùng toàn bộ danh mục con cháu; empty nếu slug không tồn tại.
+     */
+    public Optional<List<Long>> findSelfAndDescendantIds(String slug) {
+        Snapshot current = current();
+        return Optional.ofNullable(current.idBySlug().get(slug)).map(current.selfAndDescendantIds()::get);
+    }
+
+    @TransactionalEventListener(phase = TransactionPhase.AFTER_COMMIT, fallbackExecution = true)
+    public void onCategoryChanged(CategoryChangedEvent event) {
+        reload();
+    }
+
+    @Scheduled(fixedDelayString = "${category.cache.refresh-check-ms:5000}")
+    public void refreshIfNeeded() {
+        Snapshot current = snapshot;
+        if (current != null && System.currentTimeMillis() - current.builtAt() >= maxStaleMs) {
+            reload();
+        }
+    }
+
+    private Snapshot current() {
+        Snapshot current = snapshot;
+        return current != null ? current : reload();
+    }
+
+    private synchronized Snapshot reload() {
+        Snapshot rebuilt = build(categoryRepository.findAllWithParent());
+        snapshot = rebuilt;
+        log.debug("Đã dựng lại cache danh mục: {} danh mục", rebuilt.flat().size());
+        return rebuilt;
+    }
+
+    private static Snapshot build(List<Category> categories) {
+        List<CategoryResponseDTO> flat = new ArrayList<>(categories.size());
+        Map<Long, CategoryResponseDTO> flatById = new HashMap<>();
+        Map<Long, CategoryResponseDTO> treeById = new LinkedHashMap<>();
+        Map<String, Long> idBySlug = new HashMap<>();
+        Map<Long, List<Long>> childIds = new HashMap<>();
+
+        for (Category category : categories) {
+            CategoryResponseDTO dto = CategoryResponseDTO.fromEntity(category);
+            flat.add(dto);
+            flatById.put(dto.getId(), dto);
+            treeById.put(dto.getId(), CategoryResponseDTO.fromEntity(category));
+            idBySlug.put(dto.getSlug(), dto.getId());
+            if (dto.getParentId() != null) {
+                childIds.computeIfAbsent(dto.getParentId(), key -> new ArrayList<>()).add(dto.getId());
+            }
+        }
+
+        List<CategoryResponseDTO> roots = new ArrayList<>();
+        for (CategoryResponseDTO dto : treeById.values()) {
+            CategoryResponseDTO parent = dto.getParentId() != null ? treeById.get(dto.getParentId()) : null;
+            if (dto.getParentId() == null) {
+                roots.add(dto);
+            } else if (parent != null) {
+                parent.getChildren().add(dto);
+            }
+        }
+        treeById.values().forEach(dto -> dto.setChildren(List.copyOf(dto.getChildren())));
+
+        Map<Long, List<Long>> selfAndDescendantIds = new HashMap<>();
+        for (Long id : flatById.keySet()) {
+            selfAndDescendantIds.put(id, List.copyOf(collectSubtree(id, childIds)));
+        }
+        Map<Long, List<Long>> frozenChildIds = new HashMap<>();
+        childIds.forEach((id, children) -> frozenChildIds.put(id, List.copyOf(children)));
+
+        return new Snapshot(
+                List.copyOf(roots),
+                List.copyOf(flat),
+                Map.copyOf(flatById),
+                Map.copyOf(idBySlug),
+                Map.copyOf(frozenChildIds),
+                Map.copyOf(selfAndDescendantIds),
+                System.currentTimeMillis());
+    }
+
+    // Duyệt theo chiều rộng, có tập visited để dữ liệu lỗi (chu trình cha-con) không gây lặp vô hạn
+    static List<Long> collectSubtree(Long rootId, Map<Long, List<Long>> childIds) {
+        List<Long> result = new ArrayList<>();
+        Set<Long> visited = new HashSet<>();
+        Deque<Long> pending = new ArrayDeque<>();
+        pending.add(rootId);
+        while (!pending.isEmpty()) {
+            Long id = pending.poll();
+            if (visited.add(id)) {
+                result.add(id);
+                pending.addAll(childIds.getOrDefault(id, List.of()));
+            }
+        }
+        return result;
+    }
+}
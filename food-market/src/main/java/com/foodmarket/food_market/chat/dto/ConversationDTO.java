@@ -49,6 +49,8 @@ public class ConversationDTO {
                 .title(conversation.getTitle())
                 .lastMessageAt(conversation.getLastMessageAt())
                 .createdAt(conversation.getCreatedAt())
+                .lastMessagePreview(conversation.getLastMessagePreview() != null ? conversation.getLastMessagePreview() : "")
+                .unreadCount(conversation.getUnreadCustomerCount())
                 .build();
     }
 }
\ No newline at end of file
@@ -0,0 +1,6 @@
+package com.foodmarket.food_market.chat.dto.projection;
+
+public interface ConversationCounterView {
+    Integer getUnreadCustomerCount();
+    String getLastMessagePreview();
+}
@@ -41,6 +41,13 @@ public class Conversation {
     @Column(name = "last_message_at")
     private OffsetDateTime lastMessageAt;
 
+    // Chỉ được cập nhật bằng câu UPDATE nguyên tử trong ConversationRepository
+    @Column(name = "unread_customer_count", insertable = false, updatable = false)
+    private int unreadCustomerCount;
+
+    @Column(name = "last_message_preview", insertable = false, updatable = false)
+    private String lastMessagePreview;
+
     
     @CreationTimestamp
     @Column(name = "created_at", updatable = false)
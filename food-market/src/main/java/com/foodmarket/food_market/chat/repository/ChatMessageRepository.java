@@ -1,37 +1,49 @@
 package com.foodmarket.food_market.chat.repository;
 
 import com.foodmarket.food_market.chat.model.ChatMessage;
-import com.foodmarket.food_market.chat.model.enums.SenderType;
+import jakarta.persistence.QueryHint;
+import org.hibernate.jpa.HibernateHints;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
-import java.util.List;
-import java.util.Optional;
 import java.util.UUID;
 
 @Repository
 public interface ChatMessageRepository extends JpaRepository<ChatMessage, Long> {
+
+    // Chỉ để hiển thị: entity read-only, Hibernate không giữ snapshot để dirty-check
+    @QueryHints(@QueryHint(name = HibernateHints.HINT_READ_ONLY, value = "true"))
     Page<ChatMessage> findByConversation_Id(UUID conversationId, Pageable pageable);
-    long countByConversation_IdAndIsReadFalseAndSenderType(UUID conversationId, SenderType senderType);
-    @Query("SELECT m.conversation.id, COUNT(m) FROM ChatMessage m " +
-            "WHERE m.conversation.id IN :conversationIds " +
-            "AND m.isRead = false " +
-            "AND m.senderType = :senderType " +
-            "GROUP BY m.conversation.id")
-    List<Object[]> countUnreadBatch(@Param("conversationIds") List<UUID> conversationIds,
-                                    @Param("senderType") SenderType senderType);
 
-    @Query(value = "SELECT DISTINCT ON (m.conversation_id) m.conversation_id, m.content " +
-            "FROM chat_messages m " +
-            "WHERE m.conversation_id IN :conversationIds " +
-            "ORDER BY m.conversation_id, m.sent_at DESC",
+    /**
+     * Khách mở hội thoại: đánh dấu đã đọc mọi tin của nhân viên / hệ thống trong 1 câu lệnh.
+     */
+    @Modifying
+    @Query(value = "UPDATE chat_messages SET is_read = TRUE " +
+            "WHERE conversation_id = :conversationId AND sender_type <> 'CUSTOMER' AND is_read = FALSE",
             nativeQuery = true)
-    List<Object[]> findLatestContentBatch(@Param("conversationIds") List<UUID> conversationIds);
+    int markStaffMessagesRead(@Param("conversationId") UUID conversationId);
 
-    @Query("SELECT m FROM ChatMessage m WHERE m.conversation.id = :conversationId ORDER BY m.sentAt DESC LIMIT 1")
-    Optional<ChatMessage> findFirstByConversation_IdOrderBySentAtDesc(@Param("conversationId") UUID conversationId);
-}
\ No newline at end of file
+    /**
+     * Nhân viên mở hội thoại: đánh dấu đã đọc tin của khách và trừ đúng số tin vừa đánh dấu
+     * khỏi conversations.unread_customer_count (cùng 1 câu lệnh, không lệch khi khách gửi xen giữa).
+     */
+    @Modifying
+    @Query(value = """
+                WITH marked AS (
+                    UPDATE chat_messages SET is_read = TRUE
+                    WHERE conversation_id = :conversationId AND sender_type = 'CUSTOMER' AND is_read = FALSE
+                    RETURNING id
+                )
+                UPDATE conversations
+                SET unread_customer_count = GREATEST(unread_customer_count - (SELECT COUNT(*) FROM marked), 0)
+                WHERE id = :conversationId
+            """, nativeQuery = true)
+    int markCustomerMessagesRead(@Param("conversationId") UUID conversationId);
+}
@@ -1,10 +1,12 @@
 package com.foodmarket.food_market.chat.repository;
 
+import com.foodmarket.food_market.chat.dto.projection.ConversationCounterView;
 import com.foodmarket.food_market.chat.model.Conversation;
 import com.foodmarket.food_market.chat.model.enums.ConversationStatus;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
@@ -20,26 +22,52 @@ public interface ConversationRepository extends JpaRepository<Conversation, UUID
 
     long countByStaffIdAndStatus(UUID staffId, ConversationStatus status);
 
-    @Query("SELECT c FROM Conversation c JOIN c.customer u " +
+    // JOIN FETCH customer: dựng DTO cả trang không phát sinh truy vấn theo từng dòng
+    @Query(value = "SELECT c FROM Conversation c JOIN FETCH c.customer u " +
             "WHERE (:status IS NULL OR c.status = :status) " +
             "AND (:keyword IS NULL OR :keyword = '' OR " +
             "LOWER(u.fullName) LIKE LOWER(CONCAT('%', :keyword, '%')) OR " +
-            "LOWER(u.email) LIKE LOWER(CONCAT('%', :keyword, '%')))")
+            "LOWER(u.email) LIKE LOWER(CONCAT('%', :keyword, '%')))",
+            countQuery = "SELECT COUNT(c) FROM Conversation c JOIN c.customer u " +
+                    "WHERE (:status IS NULL OR c.status = :status) " +
+                    "AND (:keyword IS NULL OR :keyword = '' OR " +
+                    "LOWER(u.fullName) LIKE LOWER(CONCAT('%', :keyword, '%')) OR " +
+                    "LOWER(u.email) LIKE LOWER(CONCAT('%', :keyword, '%')))")
     Page<Conversation> searchByStatusAndKeyword(
             @Param("status") ConversationStatus status,
             @Param("keyword") String keyword,
             Pageable pageable
     );
 
-    @Query("SELECT c FROM Conversation c JOIN c.customer u " +
+    @Query(value = "SELECT c FROM Conversation c JOIN FETCH c.customer u " +
             "WHERE c.staffId = :staffId " +
             "AND c.status = 'ACTIVE' " +
             "AND (:keyword IS NULL OR :keyword = '' OR " +
             "LOWER(u.fullName) LIKE LOWER(CONCAT('%', :keyword, '%')) OR " +
-            "LOWER(u.email) LIKE LOWER(CONCAT('%', :keyword, '%')))")
+            "LOWER(u.email) LIKE LOWER(CONCAT('%', :keyword, '%')))",
+            countQuery = "SELECT COUNT(c) FROM Conversation c JOIN c.customer u " +
+                    "WHERE c.staffId = :staffId " +
+                    "AND c.status = 'ACTIVE' " +
+                    "AND (:keyword IS NULL OR :keyword = '' OR " +
+                    "LOWER(u.fullName) LIKE LOWER(CONCAT('%', :keyword, '%')) OR " +
+                    "LOWER(u.email) LIKE LOWER(CONCAT('%', :keyword, '%')))")
     Page<Conversation> searchMyConversations(
             @Param("staffId") UUID staffId,
             @Param("keyword") String keyword,
             Pageable pageable
     );
+
+    // Tin mới của khách: +1 chưa đọc và cập nhật preview trong cùng 1 câu lệnh (khoá dòng, không mất lượt đếm)
+    @Modifying(flushAutomatically = true)
+    @Query(value = "UPDATE conversations SET unread_customer_count = unread_customer_count + 1, " +
+            "last_message_preview = :preview WHERE id = :id", nativeQuery = true)
+    int recordCustomerMessage(@Param("id") UUID conversationId, @Param("preview") String preview);
+
+    @Modifying(flushAutomatically = true)
+    @Query(value = "UPDATE conversations SET last_message_preview = :preview WHERE id = :id", nativeQuery = true)
+    int recordStaffMessage(@Param("id") UUID conversationId, @Param("preview") String preview);
+
+    @Query("SELECT c.unreadCustomerCount AS unreadCustomerCount, c.lastMessagePreview AS lastMessagePreview " +
+            "FROM Conversation c WHERE c.id = :id")
+    Optional<ConversationCounterView> findCountersById(@Param("id") UUID conversationId);
 }
\ No newline at end of file
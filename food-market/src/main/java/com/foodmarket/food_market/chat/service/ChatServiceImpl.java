@@ -10,7 +10,8 @@ import com.foodmarket.food_market.chat.repository.ChatMessageRepository;
 import com.foodmarket.food_market.chat.repository.ConversationRepository;
 import com.foodmarket.food_market.user.model.entity.User;
 import com.foodmarket.food_market.user.repository.UserRepository;
-import com.pusher.rest.Pusher;
+import com.foodmarket.food_market.user.service.StaffDirectory;
+import com.foodmarket.food_market.shared.realtime.RealtimePublisher;
 import jakarta.persistence.EntityNotFoundException;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
@@ -31,8 +32,9 @@ public class ChatServiceImpl implements ChatService {
     private final ConversationRepository conversationRepository;
     private final ChatMessageRepository chatMessageRepository;
     private final UserRepository userRepository;
+    private final StaffDirectory staffDirectory;
     private final ObjectMapper objectMapper;
-    private final Pusher pusher;
+    private final RealtimePublisher realtimePublisher;
 
     // Channel names constants
     private static final String CHANNEL_ADMIN_FEED = "admin-chat-feed";
@@ -45,7 +47,8 @@ public class ChatServiceImpl implements ChatService {
         // 1. Tìm hoặc tạo Conversation
         Conversation conversation = conversationRepository.findByCustomer_UserId(customer.getUserId())
                 .orElseGet(() -> Conversation.builder()
-                        .customer(customer)
+                        // Principal có thể dựng từ JWT claims (không phải entity được quản lý)
+                        .customer(userRepository.getReferenceById(customer.getUserId()))
                         .status(ConversationStatus.WAITING)
                         .build());
 
@@ -65,8 +68,9 @@ public class ChatServiceImpl implements ChatService {
                 .isRead(false)
                 .build();
         chatMessageRepository.save(message);
+        conversationRepository.recordCustomerMessage(conversation.getId(), content);
 
-        // 4. Bắn Pusher
+        // 4. Bắn Pusher (sau commit, bất đồng bộ)
         triggerPusherEvents(conversation, message);
     }
 
@@ -76,12 +80,9 @@ public class ChatServiceImpl implements ChatService {
         Conversation conversation = conversationRepository.findByCustomer_UserId(customerId)
                 .orElseThrow(() -> new EntityNotFoundException("Lỗi khi tải cuộc trò chuyện"));
 
+        // Đánh dấu đã đọc bằng 1 câu UPDATE trước, sau đó trang tin nhắn chỉ đọc (không dirty-check / flush)
+        chatMessageRepository.markStaffMessagesRead(conversation.getId());
         Page<ChatMessage> chatMessagePage = chatMessageRepository.findByConversation_Id(conversation.getId(), pageable);
-        for (ChatMessage chatMessage : chatMessagePage.getContent()) {
-            if (!chatMessage.getSenderType().equals(SenderType.CUSTOMER)) {
-                chatMessage.setRead(true);
-            }
-        }
         return chatMessagePage.map(ChatMessageDTO::fromEntity);
     }
 
@@ -102,12 +103,8 @@ public class ChatServiceImpl implements ChatService {
     @Override
     @Transactional
     public Page<ChatMessageDTO> getMessagesAdmin(UUID conversationId, Pageable pageable) {
+        chatMessageRepository.markCustomerMessagesRead(conversationId);
         Page<ChatMessage> chatMessagePage = chatMessageRepository.findByConversation_Id(conversationId, pageable);
-        for (ChatMessage chatMessage : chatMessagePage.getContent()) {
-            if (chatMessage.getSenderType().equals(SenderType.CUSTOMER)) {
-                chatMessage.setRead(true);
-            }
-        }
         return chatMessagePage.map(ChatMessageDTO::fromEntity);
     }
 
@@ -138,6 +135,7 @@ public class ChatServiceImpl implements ChatService {
                 .isRead(false)
                 .build();
         chatMessageRepository.save(message);
+        conversationRepository.recordStaffMessage(conversationId, content);
 
         triggerPusherEvents(conversation, message);
     }
@@ -189,30 +187,15 @@ public class ChatServiceImpl implements ChatService {
         if (page.isEmpty()) {
             return Page.empty();
         }
-        List<UUID> ids = page.getContent().stream().map(Conversation::getId).toList();
-        // 1. Batch Query Unread Counts (Map<ConversationId, Long>)
-        List<Object[]> unreadResults = chatMessageRepository.countUnreadBatch(ids, SenderType.CUSTOMER);
-        Map<UUID, Long> unreadMap = unreadResults.stream()
-                .collect(Collectors.toMap(
-                        row -> (UUID) row[0],
-                        row -> (Long) row[1]
-                ));
-        // 2. Batch Query Last Messages (Map<ConversationId, String>)
-        List<Object[]> lastMsgResults = chatMessageRepository.findLatestContentBatch(ids);
-        Map<UUID, String> lastMsgMap = lastMsgResults.stream()
-                .collect(Collectors.toMap(
-                        row -> (UUID) row[0],
-                        row -> (String) row[1]
-                ));
-        // 3. Map to DTO
+        // Tên nhân viên của cả trang: lấy từ cache, id chưa có được nạp bằng 1 truy vấn
+        Set<UUID> staffIds = page.getContent().stream()
+                .map(Conversation::getStaffId)
+                .filter(Objects::nonNull)
+                .collect(Collectors.toSet());
+        Map<UUID, String> staffNames = staffDirectory.getFullNames(staffIds);
         return page.map(conv -> {
             ConversationDTO dto = ConversationDTO.fromEntity(conv);
-            dto.setUnreadCount(unreadMap.getOrDefault(conv.getId(), 0L).intValue());
-            dto.setLastMessagePreview(lastMsgMap.getOrDefault(conv.getId(), ""));
-            if (conv.getStaffId() != null) {
-                String staffName = userRepository.getReferenceById(conv.getStaffId()).getFullName();
-                dto.setStaffName(staffName);
-            } else dto.setStaffName(null);
+            dto.setStaffName(conv.getStaffId() != null ? staffNames.get(conv.getStaffId()) : null);
             return dto;
         });
     }
@@ -223,9 +206,9 @@ public class ChatServiceImpl implements ChatService {
             @SuppressWarnings("unchecked")
             Map<String, Object> payload = objectMapper.convertValue(dto, Map.class);
             String userChannel = "user-" + conversation.getCustomer().getUserId();
-            pusher.trigger(userChannel, EVENT_NEW_MESSAGE, payload);
+            realtimePublisher.publish(userChannel, EVENT_NEW_MESSAGE, payload);
             String chatChannel = "chat-" + conversation.getId();
-            pusher.trigger(chatChannel, EVENT_NEW_MESSAGE, payload);
+            realtimePublisher.publish(chatChannel, EVENT_NEW_MESSAGE, payload);
             pushConversationUpdate(conversation);
         } catch (Exception e) {
             log.error("Pusher error: ", e);
@@ -235,19 +218,16 @@ public class ChatServiceImpl implements ChatService {
     private void pushConversationUpdate(Conversation conversation) {
         try {
             ConversationDTO dto = ConversationDTO.fromEntity(conversation);
-            //Lấy last msg realtime cho pusher
-            String lastestMessage = chatMessageRepository.findFirstByConversation_IdOrderBySentAtDesc(conversation.getId())
-                    .map(ChatMessage::getContent)
-                    .orElse("Hình ảnh/File"); 
-            dto.setLastMessagePreview(lastestMessage);
-            // Tính lại unread realtime
-            long unread = chatMessageRepository.countByConversation_IdAndIsReadFalseAndSenderType(
-                    conversation.getId(), SenderType.CUSTOMER);
-            dto.setUnreadCount((int) unread);
-
-            @SuppressWarnings("unchecked")
-            Map<String, Object> payload = objectMapper.convertValue(dto, Map.class);
-            pusher.trigger(CHANNEL_ADMIN_FEED, EVENT_SESSION_UPDATED, payload);
+            UUID conversationId = conversation.getId();
+            // Last msg + unread đọc ngay trên luồng request (thấy cả thay đổi của transaction hiện tại),
+            // luồng gửi realtime không truy vấn DB; các cập nhật liên tiếp của cùng hội thoại chỉ gửi bản mới nhất
+            conversationRepository.findCountersById(conversationId).ifPresent(counters -> {
+                dto.setLastMessagePreview(Optional.ofNullable(counters.getLastMessagePreview()).orElse("Hình ảnh/File"));
+                dto.setUnreadCount(counters.getUnreadCustomerCount());
+            });
+            Object payload = objectMapper.convertValue(dto, Map.class);
+            realtimePublisher.publishCoalesced(CHANNEL_ADMIN_FEED, EVENT_SESSION_UPDATED,
+                    EVENT_SESSION_UPDATED + ":" + conversationId, () -> payload);
         } catch (Exception e) {
             log.error("Pusher dashboard update error: ", e);
         }
@@ -0,0 +1,6 @@
+package com.foodmarket.food_market.inventory.dto.projection;
+
+public interface BatchQuantityView {
+    Long getBatchId();
+    Integer getCurrentQuantity();
+}
@@ -0,0 +1,9 @@
+package com.foodmarket.food_market.inventory.dto.projection;
+
+import java.time.LocalDate;
+
+public interface LedgerBatchView {
+    Long getBatchId();
+    LocalDate getExpirationDate();
+    Integer getAvailableQuantity();
+}
@@ -0,0 +1,7 @@
+package com.foodmarket.food_market.inventory.dto.projection;
+
+public interface OrderRestoreLineView {
+    Long getBatchId();
+    Long getProductId();
+    Integer getQuantity();
+}
@@ -0,0 +1,15 @@
+package com.foodmarket.food_market.inventory.event;
+
+import lombok.Getter;
+
+/**
+ * Phát ra khi tồn kho của một sản phẩm thay đổi (nhập, điều chỉnh, huỷ lô, trừ/hoàn kho theo đơn).
+ */
+@Getter
+public class StockChangedEvent {
+    private final Long productId;
+
+    public StockChangedEvent(Long productId) {
+        this.productId = productId;
+    }
+}
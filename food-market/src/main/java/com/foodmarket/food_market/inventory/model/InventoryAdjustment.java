@@ -15,7 +15,8 @@ import java.time.OffsetDateTime;
 public class InventoryAdjustment {
 
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "inventory_adjustment_seq")
+    @SequenceGenerator(name = "inventory_adjustment_seq", sequenceName = "inventory_adjustments_adjustment_id_seq", allocationSize = 50)
     @Column(name = "adjustment_id")
     private Long adjustmentId;
 
@@ -33,6 +34,13 @@ public class InventoryAdjustment {
     @Column(name = "reason", nullable = false)
     private String reason;
 
+    /**
+     * false = số lượng điều chỉnh chưa được cộng vào inventory_batches.current_quantity
+     * (chế độ LEDGER, sẽ được InventoryLedgerFlusher ghi xuống theo lô).
+     */
+    @Column(name = "batch_applied", nullable = false)
+    private boolean batchApplied = true;
+
     @CreationTimestamp
     @Column(name = "created_at", nullable = false, updatable = false)
     private OffsetDateTime createdAt;
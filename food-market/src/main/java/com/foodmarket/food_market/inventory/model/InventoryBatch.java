@@ -16,7 +16,8 @@ import java.util.List;
 public class InventoryBatch {
 
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "inventory_batch_seq")
+    @SequenceGenerator(name = "inventory_batch_seq", sequenceName = "inventory_batches_batch_id_seq", allocationSize = 50)
     @Column(name = "batch_id")
     private Long batchId;
 
@@ -0,0 +1,43 @@
+package com.foodmarket.food_market.inventory.model;
+
+import jakarta.persistence.*;
+import lombok.AccessLevel;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import org.hibernate.annotations.Immutable;
+
+import java.time.LocalDate;
+import java.time.OffsetDateTime;
+
+/**
+ * Tồn kho tổng hợp theo sản phẩm, chỉ đọc từ JPA.
+ * Bảng được ghi bằng native query trong ProductStockSummaryService.
+ */
+@Entity
+@Table(name = "product_stock_summary")
+@Immutable
+@Getter
+@NoArgsConstructor(access = AccessLevel.PROTECTED)
+public class ProductStockSummary {
+
+    @Id
+    @Column(name = "product_id")
+    private Long productId;
+
+    // Tồn còn hạn, dùng cho storefront / giỏ hàng
+    @Column(name = "available_quantity", nullable = false)
+    private int availableQuantity;
+
+    // Tồn của mọi lô còn hàng, dùng cho trang admin
+    @Column(name = "total_quantity", nullable = false)
+    private int totalQuantity;
+
+    @Column(name = "soonest_expiration_date")
+    private LocalDate soonestExpirationDate;
+
+    @Column(name = "low_stock", nullable = false)
+    private boolean lowStock;
+
+    @Column(name = "updated_at", nullable = false)
+    private OffsetDateTime updatedAt;
+}
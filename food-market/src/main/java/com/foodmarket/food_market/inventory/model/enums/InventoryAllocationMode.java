@@ -0,0 +1,13 @@
+package com.foodmarket.food_market.inventory.model.enums;
+
+/**
+ * Cách trừ kho khi đặt hàng (cấu hình qua inventory.allocation.mode).
+ */
+public enum InventoryAllocationMode {
+    // Đọc lô từ DB và ghi lại từng lô trong transaction đặt hàng
+    DATABASE,
+    // Khoá lô bằng SELECT ... FOR UPDATE SKIP LOCKED và trừ bằng UPDATE có điều kiện (an toàn khi chạy nhiều node)
+    SKIP_LOCKED,
+    // Giữ chỗ trên sổ kho trong bộ nhớ, số lượng lô được ghi xuống DB theo lô (write-behind)
+    LEDGER
+}
@@ -1,12 +1,18 @@
 package com.foodmarket.food_market.inventory.repository;
 
+import com.foodmarket.food_market.inventory.dto.projection.OrderRestoreLineView;
 import com.foodmarket.food_market.inventory.model.InventoryAdjustment;
 import com.foodmarket.food_market.inventory.model.InventoryBatch;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 
+import java.util.Collection;
 import java.util.List;
+import java.util.UUID;
 
 public interface InventoryAdjustmentRepository extends JpaRepository<InventoryAdjustment, Long> {
 
@@ -14,4 +20,58 @@ public interface InventoryAdjustmentRepository extends JpaRepository<InventoryAd
 
     Page<InventoryAdjustment> findByInventoryBatchOrderByCreatedAtDesc(InventoryBatch batch, Pageable pageable);
 
-}
\ No newline at end of file
+    /**
+     * Cộng dồn các điều chỉnh chưa áp dụng vào inventory_batches trong 1 câu lệnh
+     * (đánh dấu + cập nhật lô là nguyên tử, không mất điều chỉnh nào commit xen giữa).
+     *
+     * @return Số lô đã được cập nhật.
+     */
+    @Modifying
+    @Query(value = """
+                WITH applied AS (
+                    UPDATE inventory_adjustments
+                    SET batch_applied = TRUE
+                    WHERE adjustment_id IN (SELECT adjustment_id
+                                            FROM inventory_adjustments
+                                            WHERE batch_applied = FALSE
+                                            ORDER BY adjustment_id
+                                            LIMIT :limit
+                                            FOR UPDATE SKIP LOCKED)
+                    RETURNING batch_id, adjustment_quantity
+                )
+                UPDATE inventory_batches b
+                SET current_quantity = b.current_quantity + t.delta
+                FROM (SELECT batch_id, SUM(adjustment_quantity) AS delta
+                      FROM applied
+                      GROUP BY batch_id) t
+                WHERE b.batch_id = t.batch_id
+            """, nativeQuery = true)
+    int applyPendingAdjustments(@Param("limit") int limit);
+
+    // Số lượng cần trả lại theo lô cho một nhóm đơn bị huỷ
+    @Query(value = """
+                SELECT oi.inventory_batch_id AS batchId, b.product_id AS productId, SUM(oi.quantity) AS quantity
+                FROM order_items oi
+                JOIN inventory_batches b ON b.batch_id = oi.inventory_batch_id
+                WHERE oi.order_id IN (:orderIds)
+                GROUP BY oi.inventory_batch_id, b.product_id
+                ORDER BY oi.inventory_batch_id
+            """, nativeQuery = true)
+    List<OrderRestoreLineView> findOrderRestoreLines(@Param("orderIds") Collection<UUID> orderIds);
+
+    // Ghi điều chỉnh trả kho cho từng dòng của các đơn bị huỷ (giống restoreStock, nhưng 1 câu lệnh)
+    @Modifying
+    @Query(value = """
+                INSERT INTO inventory_adjustments (batch_id, adjusted_by_user_id, adjustment_quantity, reason, batch_applied)
+                SELECT oi.inventory_batch_id, o.user_id, oi.quantity,
+                       'Cập nhật lại do đơn hàng bị huỷ, mã đơn: ' || o.order_id, :batchApplied
+                FROM order_items oi
+                JOIN orders o ON o.order_id = oi.order_id
+                WHERE oi.order_id IN (:orderIds)
+            """, nativeQuery = true)
+    int insertOrderRestoreAdjustments(@Param("orderIds") Collection<UUID> orderIds,
+                                      @Param("batchApplied") boolean batchApplied);
+
+    @Query(value = "SELECT EXISTS (SELECT 1 FROM inventory_adjustments WHERE batch_applied = FALSE)", nativeQuery = true)
+    boolean existsPendingAdjustments();
+}
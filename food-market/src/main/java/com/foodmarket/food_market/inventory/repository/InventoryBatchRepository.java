@@ -1,23 +1,115 @@
 package com.foodmarket.food_market.inventory.repository;
 
+import com.foodmarket.food_market.inventory.dto.projection.BatchQuantityView;
+import com.foodmarket.food_market.inventory.dto.projection.LedgerBatchView;
 import com.foodmarket.food_market.inventory.model.InventoryBatch;
+import jakarta.persistence.LockModeType;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.JpaSpecificationExecutor;
+import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
+
+import java.util.Collection;
 import java.util.List;
+import java.util.Optional;
+import java.util.UUID;
 
 public interface InventoryBatchRepository extends JpaRepository<InventoryBatch, Long>, JpaSpecificationExecutor<InventoryBatch> {
 
-
+    // Chế độ DATABASE: khoá các lô được đọc tới hết transaction đặt hàng, để 2 đơn đồng thời không cùng
+    // đọc một số lượng rồi ghi đè lên nhau (bán quá tồn). Thứ tự khoá cố định theo ORDER BY.
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
     @Query("""
                 SELECT ib FROM InventoryBatch ib
                 WHERE ib.productId = :productId
                 AND ib.currentQuantity > 0
-                ORDER BY ib.expirationDate ASC
+                ORDER BY ib.expirationDate ASC, ib.batchId ASC
             """)
     List<InventoryBatch> findStillHasProductByProductIdOrderByExpirationDateAsc(@Param("productId") Long productId);
 
-    @Query("SELECT COALESCE(SUM(b.currentQuantity), 0)  FROM InventoryBatch b WHERE b.productId = :productId AND b.expirationDate > CURRENT_DATE")
-    int findCurrentProductQuantity(@Param("productId") Long productId);
-}
\ No newline at end of file
+    // Bản nhiều sản phẩm, dùng khi đặt hàng cả giỏ trong 1 truy vấn
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query("""
+                SELECT ib FROM InventoryBatch ib
+                WHERE ib.productId IN :productIds
+                AND ib.currentQuantity > 0
+                ORDER BY ib.productId ASC, ib.expirationDate ASC, ib.batchId ASC
+            """)
+    List<InventoryBatch> findStillHasProductByProductIdInOrderByExpirationDateAsc(@Param("productIds") Collection<Long> productIds);
+
+    // Nạp sổ kho (LEDGER): số lượng thực = current_quantity + các điều chỉnh chưa được ghi xuống lô
+    @Query(value = """
+                SELECT b.batch_id AS batchId,
+                       b.expiration_date AS expirationDate,
+                       b.current_quantity + COALESCE((SELECT SUM(a.adjustment_quantity)
+                                                      FROM inventory_adjustments a
+                                                      WHERE a.batch_id = b.batch_id
+                                                      AND a.batch_applied = FALSE), 0) AS availableQuantity
+                FROM inventory_batches b
+                WHERE b.product_id = :productId
+                ORDER BY b.expiration_date ASC, b.batch_id ASC
+            """, nativeQuery = true)
+    List<LedgerBatchView> findLedgerBatchesByProductId(@Param("productId") Long productId);
+
+    // Chế độ SKIP_LOCKED: khoá 1 lô còn hàng kế tiếp theo FEFO, bỏ qua lô đang bị đơn khác giữ khoá.
+    // Lô đã bị chính transaction này lấy hết có current_quantity = 0 nên không bị trả lại.
+    @Query(value = """
+                SELECT b.batch_id AS batchId, b.current_quantity AS currentQuantity
+                FROM inventory_batches b
+                WHERE b.product_id = :productId
+                AND b.current_quantity > 0
+                ORDER BY b.expiration_date ASC, b.batch_id ASC
+                LIMIT 1
+                FOR UPDATE SKIP LOCKED
+            """, nativeQuery = true)
+    Optional<BatchQuantityView> lockNextAvailableBatchSkipLocked(@Param("productId") Long productId);
+
+    // Khoá dòng lô trước khi đọc-sửa-ghi, để không ghi đè lên lượt trừ kho đồng thời (decrementIfAvailable)
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query("SELECT ib FROM InventoryBatch ib WHERE ib.batchId = :batchId")
+    Optional<InventoryBatch> findByIdForUpdate(@Param("batchId") Long batchId);
+
+    @Query(value = "SELECT COALESCE(SUM(current_quantity), 0) FROM inventory_batches WHERE product_id = :productId AND current_quantity > 0", nativeQuery = true)
+    int sumAvailableQuantity(@Param("productId") Long productId);
+
+    // Khoá trước các lô của nhóm đơn theo đúng khoá (product_id, expiration_date, batch_id) mà lượt trừ kho
+    // DATABASE dùng, vì UPDATE ... FROM bên dưới khoá dòng theo thứ tự của query plan và có thể deadlock.
+    // Lọc bằng IN (semi-join) để mỗi lô chỉ xuất hiện 1 lần dù nhiều dòng order_items trỏ tới.
+    @Query(value = """
+                SELECT b.batch_id
+                FROM inventory_batches b
+                WHERE b.batch_id IN (SELECT oi.inventory_batch_id FROM order_items oi WHERE oi.order_id IN (:orderIds))
+                ORDER BY b.product_id ASC, b.expiration_date ASC, b.batch_id ASC
+                FOR UPDATE
+            """, nativeQuery = true)
+    List<Long> lockBatchesForOrders(@Param("orderIds") Collection<UUID> orderIds);
+
+    // Cộng lại số lượng của các đơn bị huỷ vào đúng lô đã trừ (gọi sau lockBatchesForOrders)
+    @Modifying
+    @Query(value = """
+                UPDATE inventory_batches b
+                SET current_quantity = b.current_quantity + r.quantity
+                FROM (SELECT inventory_batch_id, SUM(quantity) AS quantity
+                      FROM order_items
+                      WHERE order_id IN (:orderIds)
+                      GROUP BY inventory_batch_id) r
+                WHERE b.batch_id = r.inventory_batch_id
+            """, nativeQuery = true)
+    int restoreForOrders(@Param("orderIds") Collection<UUID> orderIds);
+
+    /**
+     * Trừ kho có điều kiện, không bao giờ làm số lượng âm.
+     *
+     * @return 1 nếu trừ thành công, 0 nếu lô không đủ hàng.
+     */
+    @Modifying
+    @Query(value = """
+                UPDATE inventory_batches
+                SET current_quantity = current_quantity - :quantity
+                WHERE batch_id = :batchId
+                AND current_quantity >= :quantity
+            """, nativeQuery = true)
+    int decrementIfAvailable(@Param("batchId") Long batchId, @Param("quantity") int quantity);
+}
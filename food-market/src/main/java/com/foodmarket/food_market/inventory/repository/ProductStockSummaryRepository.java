@@ -0,0 +1,86 @@
+package com.foodmarket.food_market.inventory.repository;
+
+import com.foodmarket.food_market.inventory.model.ProductStockSummary;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+
+import java.util.Collection;
+import java.util.List;
+
+public interface ProductStockSummaryRepository extends JpaRepository<ProductStockSummary, Long> {
+
+    long countByLowStockTrue();
+
+    // Khoá dòng tổng hợp theo thứ tự product_id, tạo dòng rỗng cho sản phẩm chưa có (sản phẩm mới) ngay tại vị trí đó.
+    // Tạo và khoá trong cùng 1 lượt theo thứ tự: nếu tạo hết rồi mới khoá, transaction đang giữ dòng mới tạo của
+    // sản phẩm sau có thể chờ dòng của sản phẩm trước mà transaction khác đang giữ (deadlock).
+    @Modifying
+    @Query(value = """
+                INSERT INTO product_stock_summary (product_id)
+                SELECT p.product_id FROM products p
+                WHERE p.product_id IN (:productIds)
+                ORDER BY p.product_id
+                ON CONFLICT (product_id) DO UPDATE SET product_id = EXCLUDED.product_id
+            """, nativeQuery = true)
+    int lockOrCreate(@Param("productIds") Collection<Long> productIds);
+
+    /**
+     * Tính lại tổng hợp từ các lô (cộng cả điều chỉnh chưa ghi xuống lô của chế độ LEDGER).
+     *
+     * @return số dòng có giá trị thay đổi.
+     */
+    @Modifying
+    @Query(value = """
+                UPDATE product_stock_summary s
+                SET available_quantity      = agg.available_quantity,
+                    total_quantity          = agg.total_quantity,
+                    soonest_expiration_date = agg.soonest_expiration_date,
+                    low_stock               = agg.total_quantity <= :lowStockThreshold,
+                    updated_at              = NOW()
+                FROM (
+                    SELECT p.product_id,
+                           COALESCE(SUM(b.qty) FILTER (WHERE b.qty > 0 AND b.expiration_date > CURRENT_DATE), 0) AS available_quantity,
+                           COALESCE(SUM(b.qty) FILTER (WHERE b.qty > 0), 0) AS total_quantity,
+                           MIN(b.expiration_date) FILTER (WHERE b.qty > 0) AS soonest_expiration_date
+                    FROM products p
+                    LEFT JOIN LATERAL (
+                        SELECT ib.expiration_date,
+                               ib.current_quantity + COALESCE((SELECT SUM(a.adjustment_quantity)
+                                                               FROM inventory_adjustments a
+                                                               WHERE a.batch_id = ib.batch_id
+                                                               AND a.batch_applied = FALSE), 0) AS qty
+                        FROM inventory_batches ib
+                        WHERE ib.product_id = p.product_id
+                    ) b ON TRUE
+                    WHERE p.product_id IN (:productIds)
+                    GROUP BY p.product_id
+                ) agg
+                WHERE s.product_id = agg.product_id
+                AND (s.available_quantity, s.total_quantity, s.soonest_expiration_date, s.low_stock)
+                    IS DISTINCT FROM
+                    (agg.available_quantity, agg.total_quantity, agg.soonest_expiration_date, agg.total_quantity <= :lowStockThreshold)
+            """, nativeQuery = true)
+    int recompute(@Param("productIds") Collection<Long> productIds, @Param("lowStockThreshold") int lowStockThreshold);
+
+    /**
+     * Cộng chênh lệch tồn vào dòng tổng hợp (trừ kho khi đặt hàng), không quét lại các lô.
+     *
+     * @return 0 nếu sản phẩm chưa có dòng tổng hợp.
+     */
+    @Modifying
+    @Query(value = """
+                UPDATE product_stock_summary
+                SET available_quantity = GREATEST(available_quantity + :delta, 0),
+                    total_quantity     = GREATEST(total_quantity + :delta, 0),
+                    low_stock          = GREATEST(total_quantity + :delta, 0) <= :lowStockThreshold,
+                    updated_at         = NOW()
+                WHERE product_id = :productId
+            """, nativeQuery = true)
+    int addDelta(@Param("productId") Long productId, @Param("delta") int delta, @Param("lowStockThreshold") int lowStockThreshold);
+
+    // Duyệt sản phẩm theo keyset cho đối soát hằng đêm
+    @Query(value = "SELECT product_id FROM products WHERE product_id > :afterId ORDER BY product_id LIMIT :limit", nativeQuery = true)
+    List<Long> findProductIdsAfter(@Param("afterId") long afterId, @Param("limit") int limit);
+}
@@ -0,0 +1,262 @@
+package com.foodmarket.food_market.inventory.service;
+
+import com.foodmarket.food_market.inventory.dto.projection.LedgerBatchView;
+import com.foodmarket.food_market.inventory.repository.InventoryBatchRepository;
+import lombok.RequiredArgsConstructor;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Sổ kho trong bộ nhớ cho chế độ {@code LEDGER}.
+ * <p>
+ * Mỗi sản phẩm giữ danh sách lô theo thứ tự FEFO (hết hạn trước, xuất trước), số lượng mỗi lô là một
+ * {@link AtomicInteger} nên việc giữ chỗ chỉ cần CAS, không khoá, không đọc/ghi DB.
+ * Sản phẩm được nạp từ DB ở lần dùng đầu tiên (số lượng = current_quantity + điều chỉnh chưa flush),
+ * nên sau khi khởi động lại sổ kho tự phục hồi đúng trạng thái đã commit.
+ * <p>
+ * Quy ước: mọi thao tác giữ chỗ sẽ tự trả lại nếu transaction rollback; mọi thao tác cộng kho chỉ
+ * được áp dụng sau khi transaction commit. Chỉ dùng được khi chạy 1 node ứng dụng.
+ */
+@Component
+@RequiredArgsConstructor
+public class InventoryLedger {
+
+    private final InventoryBatchRepository inventoryBatchRepository;
+
+    private final ConcurrentHashMap<Long, ProductLedger> products = new ConcurrentHashMap<>();
+
+    public record BatchReservation(Long batchId, int quantity) {
+    }
+
+    /**
+     * Phải gọi trước khi ghi bất kỳ điều chỉnh nào của sản phẩm trong transaction hiện tại,
+     * để lần nạp từ DB không tính trùng điều chỉnh chưa commit của chính transaction này.
+     */
+    public void ensureLoaded(Long productId) {
+        ledgerOf(productId);
+    }
+
+    public int available(Long productId) {
+        return ledgerOf(productId).available();
+    }
+
+    /**
+     * Giữ chỗ {@code quantity} theo FEFO.
+     *
+     * @return Danh sách lô đã giữ chỗ, hoặc danh sách rỗng nếu không đủ hàng (không giữ chỗ gì cả).
+     */
+    public List<BatchReservation> reserve(Long productId, int quantity) {
+        ProductLedger ledger = ledgerOf(productId);
+        List<BatchReservation> reservations = new ArrayList<>();
+        int remaining = quantity;
+
+        for (BatchSlot slot : ledger.slots) {
+            if (remaining == 0) {
+                break;
+            }
+            int taken = slot.takeUpTo(remaining);
+            if (taken > 0) {
+                reservations.add(new BatchReservation(slot.batchId, taken));
+                remaining -= taken;
+            }
+        }
+
+        if (remaining > 0) {
+            // Không đủ hàng: trả lại phần đã lấy
+            reservations.forEach(r -> ledger.slot(r.batchId()).quantity.addAndGet(r.quantity()));
+            return List.of();
+        }
+
+        releaseOnRollback(ledger, reservations);
+        return reservations;
+    }
+
+    /**
+     * Trừ đúng {@code quantity} khỏi một lô (điều chỉnh âm của admin).
+     *
+     * @return false nếu lô không đủ số lượng.
+     */
+    public boolean takeExact(Long productId, Long batchId, int quantity) {
+        ProductLedger ledger = ledgerOf(productId);
+        BatchSlot slot = ledger.slot(batchId);
+        if (slot == null || !slot.takeExact(quantity)) {
+            return false;
+        }
+        releaseOnRollback(ledger, List.of(new BatchReservation(batchId, quantity)));
+        return true;
+    }
+
+    /**
+     * Lấy hết số lượng còn lại của một lô (huỷ lô).
+     *
+     * @return Số lượng đã lấy.
+     */
+    public int drain(Long productId, Long batchId) {
+        ProductLedger ledger = ledgerOf(productId);
+        BatchSlot slot = ledger.slot(batchId);
+        if (slot == null) {
+            return 0;
+        }
+        int taken = slot.quantity.getAndSet(0);
+        if (taken > 0) {
+            releaseOnRollback(ledger, List.of(new BatchReservation(batchId, taken)));
+        }
+        return taken;
+    }
+
+    /**
+     * Cộng lại số lượng vào lô sau khi transaction commit (hoàn kho, điều chỉnh dương).
+     */
+    public void addAfterCommit(Long productId, Long batchId, int quantity) {
+        ProductLedger ledger = ledgerOf(productId);
+        runAfterCommit(() -> {
+            BatchSlot slot = ledger.slot(batchId);
+            if (slot != null) {
+                slot.quantity.addAndGet(quantity);
+            }
+        });
+    }
+
+    /**
+     * Thêm lô mới nhập vào sổ kho sau khi commit. Nếu sản phẩm chưa được nạp thì bỏ qua,
+     * lần nạp sau sẽ đọc lô này từ DB.
+     */
+    public void registerBatchAfterCommit(Long productId, Long batchId, LocalDate expirationDate, int quantity) {
+        runAfterCommit(() -> {
+            ProductLedger ledger = products.get(productId);
+            if (ledger != null) {
+                ledger.addSlot(new BatchSlot(batchId, expirationDate, quantity));
+            }
+        });
+    }
+
+    private ProductLedger ledgerOf(Long productId) {
+        return products.computeIfAbsent(productId, this::load);
+    }
+
+    private ProductLedger load(Long productId) {
+        List<LedgerBatchView> rows = inventoryBatchRepository.findLedgerBatchesByProductId(productId);
+        BatchSlot[] slots = rows.stream()
+                .map(row -> new BatchSlot(row.getBatchId(), row.getExpirationDate(), row.getAvailableQuantity()))
+                .toArray(BatchSlot[]::new);
+        return new ProductLedger(slots);
+    }
+
+    private void releaseOnRollback(ProductLedger ledger, List<BatchReservation> reservations) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCompletion(int status) {
+                if (status != STATUS_COMMITTED) {
+                    reservations.forEach(r -> {
+                        BatchSlot slot = ledger.slot(r.batchId());
+                        if (slot != null) {
+                            slot.quantity.addAndGet(r.quantity());
+                        }
+                    });
+                }
+            }
+        });
+    }
+
+    private void runAfterCommit(Runnable action) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            action.run();
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                action.run();
+            }
+        });
+    }
+
+    private static final class ProductLedger {
+        // Copy-on-write: chỉ thay mảng khi có lô mới, đọc không cần khoá
+        private volatile BatchSlot[] slots;
+
+        private ProductLedger(BatchSlot[] slots) {
+            this.slots = slots;
+        }
+
+        private int available() {
+            int total = 0;
+            for (BatchSlot slot : slots) {
+                total += Math.max(slot.quantity.get(), 0);
+            }
+            return total;
+        }
+
+        private BatchSlot slot(Long batchId) {
+            for (BatchSlot slot : slots) {
+                if (slot.batchId.equals(batchId)) {
+                    return slot;
+                }
+            }
+            return null;
+        }
+
+        private synchronized void addSlot(BatchSlot newSlot) {
+            if (slot(newSlot.batchId) != null) {
+                return;
+            }
+            BatchSlot[] next = Arrays.copyOf(slots, slots.length + 1);
+            next[slots.length] = newSlot;
+            Arrays.sort(next, FEFO_ORDER);
+            slots = next;
+        }
+    }
+
+    private static final Comparator<BatchSlot> FEFO_ORDER = Comparator
+            .comparing((BatchSlot s) -> s.expirationDate)
+            .thenComparing(s -> s.batchId);
+
+    private static final class BatchSlot {
+        private final Long batchId;
+        private final LocalDate expirationDate;
+        private final AtomicInteger quantity;
+
+        private BatchSlot(Long batchId, LocalDate expirationDate, int quantity) {
+            this.batchId = batchId;
+            this.expirationDate = expirationDate;
+            this.quantity = new AtomicInteger(quantity);
+        }
+
+        private int takeUpTo(int wanted) {
+            while (true) {
+                int current = quantity.get();
+                if (current <= 0) {
+                    return 0;
+                }
+                int taken = Math.min(current, wanted);
+                if (quantity.compareAndSet(current, current - taken)) {
+                    return taken;
+                }
+            }
+        }
+
+        private boolean takeExact(int wanted) {
+            while (true) {
+                int current = quantity.get();
+                if (current < wanted) {
+                    return false;
+                }
+                if (quantity.compareAndSet(current, current - wanted)) {
+                    return true;
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,59 @@
+package com.foodmarket.food_market.inventory.service;
+
+import com.foodmarket.food_market.inventory.model.enums.InventoryAllocationMode;
+import com.foodmarket.food_market.inventory.repository.InventoryAdjustmentRepository;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+/**
+ * Ghi các điều chỉnh chưa áp dụng (chế độ LEDGER) xuống inventory_batches theo lô:
+ * nhiều đơn hàng trên cùng 1 lô chỉ tốn 1 câu UPDATE mỗi chu kỳ.
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class InventoryLedgerFlusher {
+
+    private final InventoryAdjustmentRepository inventoryAdjustmentRepository;
+
+    @Value("${inventory.allocation.mode:DATABASE}")
+    private InventoryAllocationMode allocationMode;
+
+    @Value("${inventory.ledger.flush-batch-size:5000}")
+    private int flushBatchSize;
+
+    @Scheduled(fixedDelayString = "${inventory.ledger.flush-interval-ms:1000}")
+    @Transactional
+    public void flush() {
+        if (allocationMode != InventoryAllocationMode.LEDGER) {
+            return;
+        }
+        int updatedBatches = inventoryAdjustmentRepository.applyPendingAdjustments(flushBatchSize);
+        if (updatedBatches > 0) {
+            log.debug("Đã ghi tồn kho xuống {} lô hàng", updatedBatches);
+        }
+    }
+
+    /**
+     * Khi khởi động: ghi nốt các điều chỉnh còn tồn từ lần chạy trước
+     * (kể cả khi đã chuyển về chế độ DATABASE, để current_quantity luôn đúng).
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    @Transactional
+    public void recoverOnStartup() {
+        int rounds = 0;
+        while (inventoryAdjustmentRepository.existsPendingAdjustments()) {
+            inventoryAdjustmentRepository.applyPendingAdjustments(flushBatchSize);
+            rounds++;
+        }
+        if (rounds > 0) {
+            log.info("Đã phục hồi các điều chỉnh tồn kho chưa ghi xuống lô ({} lượt)", rounds);
+        }
+    }
+}
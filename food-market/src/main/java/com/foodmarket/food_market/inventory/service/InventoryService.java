@@ -5,7 +5,9 @@ import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
 
 import java.time.LocalDate;
+import java.util.Collection;
 import java.util.List;
+import java.util.Map;
 import java.util.UUID;
 
 public interface InventoryService {
@@ -28,6 +30,14 @@ public interface InventoryService {
      * Phân bổ kho cho Đơn hàng (Logic FEFO).
      */
     List<AllocatedBatchDTO> allocateForOrder(Long productId, int quantityToAllocate, UUID userId,UUID orderId);
+
+    /**
+     * Phân bổ kho cho cả đơn hàng (nhiều sản phẩm) trong 1 lần.
+     *
+     * @param quantitiesByProduct Map productId -> số lượng cần lấy.
+     * @return Map productId -> danh sách lô đã trừ.
+     */
+    Map<Long, List<AllocatedBatchDTO>> allocateForOrder(Map<Long, Integer> quantitiesByProduct, UUID userId, UUID orderId);
     /**
     Điều chỉnh kho.
      */
@@ -41,6 +51,14 @@ public interface InventoryService {
      * @return Tổng số lượng có sẵn (từ tất cả các lô).
      */
     int getStockAvailability(Long productId);
+
+    /**
+     * Tồn kho của nhiều sản phẩm trong 1 lần truy vấn (tránh N+1 ở trang danh sách).
+     *
+     * @param productIds Danh sách mã sản phẩm.
+     * @return Map productId -> tổng tồn kho còn hạn. Sản phẩm không có lô nào sẽ không có trong map.
+     */
+    Map<Long, Integer> getStockAvailability(Collection<Long> productIds);
     /**
      * Lấy thông tin tồn kho và HSD (Hạn sử dụng) cho ProductService.
      * Dùng để tính giá động.
@@ -50,5 +68,15 @@ public interface InventoryService {
      */
     ProductStockInfoDTO getProductStockInfo(Long productId);
 
+    /**
+     * Bản bulk của {@link #getProductStockInfo(Long)} cho trang danh sách admin.
+     */
+    Map<Long, ProductStockInfoDTO> getProductStockInfo(Collection<Long> productIds);
+
     void restoreStock(Long batchId, int quantityToRestore, UUID userId, UUID orderId);
+
+    /**
+     * Trả lại kho cho cả nhóm đơn bị huỷ bằng vài câu lệnh set-based (thay vì gọi restoreStock cho từng dòng).
+     */
+    void restoreStockForOrders(Collection<UUID> orderIds);
 }
\ No newline at end of file
@@ -1,16 +1,24 @@
 package com.foodmarket.food_market.inventory.service;
 
 import com.foodmarket.food_market.inventory.dto.*;
+import com.foodmarket.food_market.inventory.dto.projection.BatchQuantityView;
+import com.foodmarket.food_market.inventory.dto.projection.OrderRestoreLineView;
+import com.foodmarket.food_market.inventory.event.StockChangedEvent;
 import com.foodmarket.food_market.inventory.exception.InsufficientStockException;
 import com.foodmarket.food_market.inventory.model.InventoryAdjustment;
 import com.foodmarket.food_market.inventory.model.InventoryBatch;
+import com.foodmarket.food_market.inventory.model.ProductStockSummary;
+import com.foodmarket.food_market.inventory.model.enums.InventoryAllocationMode;
 import com.foodmarket.food_market.inventory.repository.InventoryAdjustmentRepository;
 import com.foodmarket.food_market.inventory.repository.InventoryBatchRepository;
+import com.foodmarket.food_market.inventory.repository.ProductStockSummaryRepository;
 import com.foodmarket.food_market.product.repository.ProductRepository;
 import com.foodmarket.food_market.product.service.ProductServiceImpl;
 import com.foodmarket.food_market.user.repository.UserRepository;
 import jakarta.persistence.EntityNotFoundException;
 import lombok.RequiredArgsConstructor;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Pageable;
@@ -19,10 +27,17 @@ import org.springframework.data.jpa.domain.Specification;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
-import java.time.LocalDate;
 import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.TreeSet;
 import java.util.UUID;
+import java.util.stream.Collectors;
 
 @Service
 @RequiredArgsConstructor 
@@ -32,6 +47,19 @@ public class InventoryServiceImpl implements InventoryService {
     private final InventoryAdjustmentRepository inventoryAdjustmentRepository;
     private final ProductRepository productRepository;
     private final UserRepository userRepository;
+    private final ApplicationEventPublisher eventPublisher;
+    private final InventoryLedger inventoryLedger;
+    private final ProductStockSummaryService productStockSummaryService;
+    private final ProductStockSummaryRepository productStockSummaryRepository;
+
+    @Value("${inventory.allocation.mode:DATABASE}")
+    private InventoryAllocationMode allocationMode;
+
+    @Value("${inventory.allocation.skip-locked.max-retries:5}")
+    private int skipLockedMaxRetries;
+
+    @Value("${inventory.allocation.skip-locked.retry-delay-ms:20}")
+    private long skipLockedRetryDelayMs;
 
     @Override
     @Transactional(readOnly = true)
@@ -99,8 +127,12 @@ public class InventoryServiceImpl implements InventoryService {
     @Override
     @Transactional
     public void destroyBatch(Long batchId, String reason, String userId) {
-        InventoryBatch batch = inventoryBatchRepository.findById(batchId)
-                .orElseThrow(() -> new EntityNotFoundException("InventoryBatch not found with ID: " + batchId));
+        InventoryBatch batch = findBatchForWrite(batchId);
+
+        if (allocationMode == InventoryAllocationMode.LEDGER) {
+            destroyBatchInLedger(batch, reason, userId);
+            return;
+        }
 
         if (batch.getCurrentQuantity() <= 0) {
             throw new IllegalStateException("Batch already has zero quantity: " + batchId);
@@ -115,6 +147,8 @@ public class InventoryServiceImpl implements InventoryService {
 
         batch.setCurrentQuantity(0);
         inventoryBatchRepository.save(batch);
+        productStockSummaryService.markChanged(batch.getProductId());
+        eventPublisher.publishEvent(new StockChangedEvent(batch.getProductId()));
     }
 
    
@@ -135,6 +169,12 @@ public class InventoryServiceImpl implements InventoryService {
         adjustment.setReason("Nhập hàng mới");
         adjustment.setAdjustedBy(userRepository.getReferenceById(currentAdminId));
         inventoryAdjustmentRepository.save(adjustment);
+        if (allocationMode == InventoryAllocationMode.LEDGER) {
+            inventoryLedger.registerBatchAfterCommit(newBatch.getProductId(), newBatch.getBatchId(),
+                    newBatch.getExpirationDate(), newBatch.getCurrentQuantity());
+        }
+        productStockSummaryService.markChanged(newBatch.getProductId());
+        eventPublisher.publishEvent(new StockChangedEvent(newBatch.getProductId()));
         String productName = productRepository.findNameById(newBatch.getProductId());
         return InventoryBatchDTO.fromEntity(newBatch, productName);
     }
@@ -160,6 +200,12 @@ public class InventoryServiceImpl implements InventoryService {
         if (quantityToAllocate <= 0) {
             throw new IllegalArgumentException("Số lượng sản phẩm muốn lấy phải lớn hơn 0");
         }
+        if (allocationMode == InventoryAllocationMode.LEDGER) {
+            return allocateFromLedger(productId, quantityToAllocate, userId, orderId);
+        }
+        if (allocationMode == InventoryAllocationMode.SKIP_LOCKED) {
+            return allocateWithSkipLocked(productId, quantityToAllocate, userId, orderId);
+        }
 
         List<InventoryBatch> batches = inventoryBatchRepository
                 .findStillHasProductByProductIdOrderByExpirationDateAsc(productId);
@@ -193,17 +239,95 @@ public class InventoryServiceImpl implements InventoryService {
             remainingQuantityToAllocate -= quantityToTake;
         }
         if (remainingQuantityToAllocate > 0) {
-            throw new InsufficientStockException("Failed to allocate full quantity. Race condition likely. Product ID: " + productId);
+            // Các lô đã bị khoá FOR UPDATE và tổng tồn đã kiểm tra ở trên: không thể xảy ra
+            throw new IllegalStateException("Trừ kho thiếu " + remainingQuantityToAllocate + " cho sản phẩm " + productId);
         }
+        productStockSummaryService.addDelta(productId, -quantityToAllocate);
+        eventPublisher.publishEvent(new StockChangedEvent(productId));
 
         return allocations;
     }
+    @Override
+    @Transactional
+    public Map<Long, List<AllocatedBatchDTO>> allocateForOrder(Map<Long, Integer> quantitiesByProduct, UUID userId, UUID orderId) {
+        // Luôn xử lý theo thứ tự productId để các đơn đồng thời khoá/ghi lô theo cùng một thứ tự
+        Map<Long, Integer> sortedQuantities = new TreeMap<>(quantitiesByProduct);
+        sortedQuantities.values().forEach(quantity -> {
+            if (quantity == null || quantity <= 0) {
+                throw new IllegalArgumentException("Số lượng sản phẩm muốn lấy phải lớn hơn 0");
+            }
+        });
+
+        Map<Long, List<AllocatedBatchDTO>> allocationsByProduct = new LinkedHashMap<>();
+        if (allocationMode != InventoryAllocationMode.DATABASE) {
+            // LEDGER / SKIP_LOCKED vốn xử lý theo từng sản phẩm
+            sortedQuantities.forEach((productId, quantity) ->
+                    allocationsByProduct.put(productId, allocateForOrder(productId, quantity, userId, orderId)));
+            return allocationsByProduct;
+        }
+
+        Map<Long, List<InventoryBatch>> batchesByProduct = inventoryBatchRepository
+                .findStillHasProductByProductIdInOrderByExpirationDateAsc(sortedQuantities.keySet()).stream()
+                .collect(Collectors.groupingBy(InventoryBatch::getProductId));
+
+        // Kiểm tra đủ hàng cho mọi sản phẩm trước khi ghi bất cứ thứ gì
+        sortedQuantities.forEach((productId, quantity) -> {
+            int totalAvailable = batchesByProduct.getOrDefault(productId, List.of()).stream()
+                    .mapToInt(InventoryBatch::getCurrentQuantity).sum();
+            if (totalAvailable < quantity) {
+                String productName = productRepository.findNameById(productId);
+                throw new InsufficientStockException(productName, quantity, totalAvailable);
+            }
+        });
+
+        String reason = "Trừ kho cho đơn hàng mã: " + orderId.toString();
+        List<InventoryAdjustment> adjustments = new ArrayList<>();
+        List<InventoryBatch> touchedBatches = new ArrayList<>();
+
+        sortedQuantities.forEach((productId, quantity) -> {
+            List<AllocatedBatchDTO> allocations = new ArrayList<>();
+            int remaining = quantity;
+            for (InventoryBatch batch : batchesByProduct.get(productId)) {
+                if (remaining <= 0) {
+                    break;
+                }
+                int quantityToTake = Math.min(batch.getCurrentQuantity(), remaining);
+                batch.setCurrentQuantity(batch.getCurrentQuantity() - quantityToTake);
+                touchedBatches.add(batch);
+
+                InventoryAdjustment adjustment = new InventoryAdjustment();
+                adjustment.setInventoryBatch(batch);
+                adjustment.setAdjustmentQuantity(-quantityToTake);
+                adjustment.setReason(reason);
+                adjustment.setAdjustedBy(userRepository.getReferenceById(userId));
+                adjustments.add(adjustment);
+
+                allocations.add(new AllocatedBatchDTO(batch, quantityToTake));
+                remaining -= quantityToTake;
+            }
+            allocationsByProduct.put(productId, allocations);
+        });
+
+        // Ghi 1 lần, Hibernate gom thành JDBC batch (hibernate.jdbc.batch_size)
+        inventoryAdjustmentRepository.saveAll(adjustments);
+        inventoryBatchRepository.saveAll(touchedBatches);
+        Map<Long, Integer> deltas = new TreeMap<>();
+        sortedQuantities.forEach((productId, quantity) -> deltas.put(productId, -quantity));
+        productStockSummaryService.addDeltas(deltas);
+        sortedQuantities.keySet().forEach(productId -> eventPublisher.publishEvent(new StockChangedEvent(productId)));
+        return allocationsByProduct;
+    }
+
     @Override
     @Transactional
     public void adjustStock(AdjustStockRequestDTO requestDTO) {
         
-        InventoryBatch batch = inventoryBatchRepository.findById(requestDTO.getBatchId())
-                .orElseThrow(() -> new EntityNotFoundException("InventoryBatch not found with ID: " + requestDTO.getBatchId()));
+        InventoryBatch batch = findBatchForWrite(requestDTO.getBatchId());
+
+        if (allocationMode == InventoryAllocationMode.LEDGER) {
+            adjustStockInLedger(batch, requestDTO);
+            return;
+        }
 
         int newQuantity = batch.getCurrentQuantity() + requestDTO.getAdjustmentQuantity();
 
@@ -219,6 +343,8 @@ public class InventoryServiceImpl implements InventoryService {
 
         batch.setCurrentQuantity(newQuantity);
         inventoryBatchRepository.save(batch);
+        productStockSummaryService.markChanged(batch.getProductId());
+        eventPublisher.publishEvent(new StockChangedEvent(batch.getProductId()));
     }
 
     
@@ -226,7 +352,22 @@ public class InventoryServiceImpl implements InventoryService {
     @Override
     @Transactional(readOnly = true)
     public int getStockAvailability(Long productId) {
-        return inventoryBatchRepository.findCurrentProductQuantity(productId);
+        return productStockSummaryRepository.findById(productId)
+                .map(ProductStockSummary::getAvailableQuantity)
+                .orElse(0);
+    }
+
+    @Override
+    @Transactional(readOnly = true)
+    public Map<Long, Integer> getStockAvailability(Collection<Long> productIds) {
+        if (productIds == null || productIds.isEmpty()) {
+            return Map.of();
+        }
+        return productStockSummaryRepository.findAllById(productIds).stream()
+                .collect(Collectors.toMap(
+                        ProductStockSummary::getProductId,
+                        ProductStockSummary::getAvailableQuantity
+                ));
     }
 
 
@@ -234,23 +375,38 @@ public class InventoryServiceImpl implements InventoryService {
     @Override
     @Transactional(readOnly = true)
     public ProductStockInfoDTO getProductStockInfo(Long productId) {
-        List<InventoryBatch> batches = inventoryBatchRepository
-                .findStillHasProductByProductIdOrderByExpirationDateAsc(productId);
+        return productStockSummaryRepository.findById(productId)
+                .map(summary -> new ProductStockInfoDTO(summary.getTotalQuantity(), summary.getSoonestExpirationDate()))
+                .orElseGet(() -> new ProductStockInfoDTO(0, null));
+    }
 
-        if (batches.isEmpty()) {
-            return new ProductStockInfoDTO(0, null);
+    @Override
+    @Transactional(readOnly = true)
+    public Map<Long, ProductStockInfoDTO> getProductStockInfo(Collection<Long> productIds) {
+        if (productIds == null || productIds.isEmpty()) {
+            return Map.of();
         }
-        int totalStock = batches.stream().mapToInt(InventoryBatch::getCurrentQuantity).sum();
-        LocalDate soonestDate = batches.getFirst().getExpirationDate();
-
-        return new ProductStockInfoDTO(totalStock, soonestDate);
+        return productStockSummaryRepository.findAllById(productIds).stream()
+                .collect(Collectors.toMap(
+                        ProductStockSummary::getProductId,
+                        summary -> new ProductStockInfoDTO(summary.getTotalQuantity(), summary.getSoonestExpirationDate())
+                ));
     }
 
     @Override
     @Transactional
     public void restoreStock(Long batchId, int quantityToRestore, UUID userId, UUID orderId) {
-        InventoryBatch batch = inventoryBatchRepository.findById(batchId)
-                .orElseThrow(() -> new EntityNotFoundException("Batch not found"));
+        InventoryBatch batch = findBatchForWrite(batchId);
+
+        if (allocationMode == InventoryAllocationMode.LEDGER) {
+            inventoryLedger.ensureLoaded(batch.getProductId());
+            savePendingAdjustment(batch, quantityToRestore,
+                    "Cập nhật lại do đơn hàng bị huỷ, mã đơn: " + orderId.toString(), userId);
+            inventoryLedger.addAfterCommit(batch.getProductId(), batchId, quantityToRestore);
+            productStockSummaryService.markChanged(batch.getProductId());
+            eventPublisher.publishEvent(new StockChangedEvent(batch.getProductId()));
+            return;
+        }
 
         batch.setCurrentQuantity(batch.getCurrentQuantity() + quantityToRestore);
         inventoryBatchRepository.save(batch);
@@ -261,5 +417,165 @@ public class InventoryServiceImpl implements InventoryService {
         adjustment.setAdjustmentQuantity(quantityToRestore);
         adjustment.setAdjustedBy(userRepository.getReferenceById(userId));
         inventoryAdjustmentRepository.save(adjustment);
+        productStockSummaryService.markChanged(batch.getProductId());
+        eventPublisher.publishEvent(new StockChangedEvent(batch.getProductId()));
+    }
+
+    @Override
+    @Transactional
+    public void restoreStockForOrders(Collection<UUID> orderIds) {
+        if (orderIds.isEmpty()) {
+            return;
+        }
+        List<OrderRestoreLineView> lines = inventoryAdjustmentRepository.findOrderRestoreLines(orderIds);
+        if (lines.isEmpty()) {
+            return;
+        }
+
+        boolean ledgerMode = allocationMode == InventoryAllocationMode.LEDGER;
+        if (ledgerMode) {
+            // Nạp sổ kho trước khi ghi điều chỉnh chờ, để lúc nạp không tính trùng phần sắp cộng sau commit
+            lines.forEach(line -> inventoryLedger.ensureLoaded(line.getProductId()));
+        } else {
+            inventoryBatchRepository.lockBatchesForOrders(orderIds);
+            inventoryBatchRepository.restoreForOrders(orderIds);
+        }
+        inventoryAdjustmentRepository.insertOrderRestoreAdjustments(orderIds, !ledgerMode);
+        if (ledgerMode) {
+            lines.forEach(line -> inventoryLedger.addAfterCommit(line.getProductId(), line.getBatchId(), line.getQuantity()));
+        }
+
+        Set<Long> productIds = lines.stream()
+                .map(OrderRestoreLineView::getProductId)
+                .collect(Collectors.toCollection(TreeSet::new));
+        productStockSummaryService.markChanged(productIds);
+        productIds.forEach(productId -> eventPublisher.publishEvent(new StockChangedEvent(productId)));
+    }
+
+    // ==================================================================
+    // --- Chế độ SKIP_LOCKED: khoá lô trên DB, trừ bằng UPDATE có điều kiện ---
+    // ==================================================================
+
+    private List<AllocatedBatchDTO> allocateWithSkipLocked(Long productId, int quantityToAllocate, UUID userId, UUID orderId) {
+        Map<Long, Integer> takenByBatch = new LinkedHashMap<>();
+        int remaining = quantityToAllocate;
+        int attempts = 0;
+
+        // Khoá từng lô theo FEFO và dừng ngay khi đủ số lượng, không giữ khoá các lô đơn này không cần.
+        // Không bao giờ chờ khoá khi đang giữ lô khác (tránh deadlock): lô bị khoá hết thì thử lại vài lần rồi báo lỗi.
+        while (remaining > 0) {
+            Optional<BatchQuantityView> next = inventoryBatchRepository.lockNextAvailableBatchSkipLocked(productId);
+            if (next.isPresent()) {
+                BatchQuantityView batch = next.get();
+                int quantityToTake = Math.min(batch.getCurrentQuantity(), remaining);
+                if (inventoryBatchRepository.decrementIfAvailable(batch.getBatchId(), quantityToTake) != 1) {
+                    throw new IllegalStateException("Không trừ được lô đã khoá: " + batch.getBatchId());
+                }
+                takenByBatch.merge(batch.getBatchId(), quantityToTake, Integer::sum);
+                remaining -= quantityToTake;
+                continue;
+            }
+
+            // Còn lại là các lô đơn khác đang giữ khoá: nếu tổng của chúng không đủ thì hết hàng thật
+            int lockedAvailable = inventoryBatchRepository.sumAvailableQuantity(productId);
+            if (lockedAvailable < remaining) {
+                String productName = productRepository.findNameById(productId);
+                throw new InsufficientStockException(productName, quantityToAllocate,
+                        lockedAvailable + (quantityToAllocate - remaining));
+            }
+            if (attempts++ >= skipLockedMaxRetries) {
+                String productName = productRepository.findNameById(productId);
+                throw new InsufficientStockException("Sản phẩm " + productName
+                        + " đang có nhiều đơn đặt cùng lúc, vui lòng thử lại sau giây lát");
+            }
+            try {
+                Thread.sleep(skipLockedRetryDelayMs);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IllegalStateException("Bị ngắt khi chờ khoá lô hàng", e);
+            }
+        }
+
+        List<AllocatedBatchDTO> allocations = new ArrayList<>();
+        takenByBatch.forEach((batchId, quantity) -> {
+            InventoryBatch batch = inventoryBatchRepository.getReferenceById(batchId);
+            saveAdjustment(batch, -quantity, "Trừ kho cho đơn hàng mã: " + orderId.toString(), userId, true);
+            allocations.add(new AllocatedBatchDTO(batch, quantity));
+        });
+        productStockSummaryService.addDelta(productId, -quantityToAllocate);
+        eventPublisher.publishEvent(new StockChangedEvent(productId));
+        return allocations;
+    }
+
+    // ==================================================================
+    // --- Chế độ LEDGER: trừ/cộng trên sổ kho trong bộ nhớ, lô được ghi xuống sau ---
+    // ==================================================================
+
+    private List<AllocatedBatchDTO> allocateFromLedger(Long productId, int quantityToAllocate, UUID userId, UUID orderId) {
+        List<InventoryLedger.BatchReservation> reservations = inventoryLedger.reserve(productId, quantityToAllocate);
+        if (reservations.isEmpty()) {
+            String productName = productRepository.findNameById(productId);
+            throw new InsufficientStockException(productName, quantityToAllocate, inventoryLedger.available(productId));
+        }
+
+        List<AllocatedBatchDTO> allocations = new ArrayList<>();
+        for (InventoryLedger.BatchReservation reservation : reservations) {
+            InventoryBatch batch = inventoryBatchRepository.getReferenceById(reservation.batchId());
+            savePendingAdjustment(batch, -reservation.quantity(),
+                    "Trừ kho cho đơn hàng mã: " + orderId.toString(), userId);
+            allocations.add(new AllocatedBatchDTO(batch, reservation.quantity()));
+        }
+        productStockSummaryService.addDelta(productId, -quantityToAllocate);
+        eventPublisher.publishEvent(new StockChangedEvent(productId));
+        return allocations;
+    }
+
+    private void adjustStockInLedger(InventoryBatch batch, AdjustStockRequestDTO requestDTO) {
+        int delta = requestDTO.getAdjustmentQuantity();
+        inventoryLedger.ensureLoaded(batch.getProductId());
+        if (delta < 0 && !inventoryLedger.takeExact(batch.getProductId(), batch.getBatchId(), -delta)) {
+            throw new IllegalArgumentException("Adjustment results in negative stock for batch ID: " + batch.getBatchId());
+        }
+
+        savePendingAdjustment(batch, delta, requestDTO.getReason(), requestDTO.getAdjustedByUserId());
+        if (delta > 0) {
+            inventoryLedger.addAfterCommit(batch.getProductId(), batch.getBatchId(), delta);
+        }
+        productStockSummaryService.markChanged(batch.getProductId());
+        eventPublisher.publishEvent(new StockChangedEvent(batch.getProductId()));
+    }
+
+    private void destroyBatchInLedger(InventoryBatch batch, String reason, String userId) {
+        int destroyed = inventoryLedger.drain(batch.getProductId(), batch.getBatchId());
+        if (destroyed <= 0) {
+            throw new IllegalStateException("Batch already has zero quantity: " + batch.getBatchId());
+        }
+
+        savePendingAdjustment(batch, -destroyed, "DESTROY: " + reason, UUID.fromString(userId));
+        productStockSummaryService.markChanged(batch.getProductId());
+        eventPublisher.publishEvent(new StockChangedEvent(batch.getProductId()));
+    }
+
+    // Các thao tác đọc-sửa-ghi current_quantity phải khoá dòng trước (LEDGER thì mọi thay đổi đi qua sổ kho)
+    private InventoryBatch findBatchForWrite(Long batchId) {
+        Optional<InventoryBatch> batch = allocationMode == InventoryAllocationMode.LEDGER
+                ? inventoryBatchRepository.findById(batchId)
+                : inventoryBatchRepository.findByIdForUpdate(batchId);
+        return batch.orElseThrow(() -> new EntityNotFoundException("InventoryBatch not found with ID: " + batchId));
+    }
+
+    // Điều chỉnh chưa cộng vào lô, InventoryLedgerFlusher sẽ ghi xuống sau
+    private void savePendingAdjustment(InventoryBatch batch, int quantity, String reason, UUID userId) {
+        saveAdjustment(batch, quantity, reason, userId, false);
+    }
+
+    private void saveAdjustment(InventoryBatch batch, int quantity, String reason, UUID userId, boolean batchApplied) {
+        InventoryAdjustment adjustment = new InventoryAdjustment();
+        adjustment.setInventoryBatch(batch);
+        adjustment.setAdjustmentQuantity(quantity);
+        adjustment.setReason(reason);
+        adjustment.setAdjustedBy(userRepository.getReferenceById(userId));
+        adjustment.setBatchApplied(batchApplied);
+        inventoryAdjustmentRepository.save(adjustment);
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,41 @@
+package com.foodmarket.food_market.inventory.service;
+
+import com.foodmarket.food_market.inventory.repository.ProductStockSummaryRepository;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.util.List;
+
+/**
+ * Đối soát product_stock_summary với inventory_batches mỗi đêm.
+ * Chạy đúng 0h để tồn còn hạn loại bỏ các lô vừa hết hạn (available_quantity lọc expiration_date > CURRENT_DATE),
+ * đồng thời sửa phần mà trừ kho theo delta không tính lại; mỗi nhóm sản phẩm là 1 transaction ngắn.
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class ProductStockSummaryReconciler {
+
+    private final ProductStockSummaryRepository productStockSummaryRepository;
+    private final ProductStockSummaryService productStockSummaryService;
+
+    @Value("${inventory.stock-summary.reconcile-chunk-size:500}")
+    private int chunkSize;
+
+    @Scheduled(cron = "${inventory.stock-summary.reconcile-cron:0 0 0 * * *}")
+    public void reconcile() {
+        long afterId = 0;
+        int products = 0;
+        int corrected = 0;
+        List<Long> productIds;
+        while (!(productIds = productStockSummaryRepository.findProductIdsAfter(afterId, chunkSize)).isEmpty()) {
+            corrected += productStockSummaryService.refresh(productIds);
+            products += productIds.size();
+            afterId = productIds.getLast();
+        }
+        log.info("Đã đối soát tồn kho tổng hợp của {} sản phẩm, {} sản phẩm được cập nhật", products, corrected);
+    }
+}
@@ -0,0 +1,134 @@
+package com.foodmarket.food_market.inventory.service;
+
+import com.foodmarket.food_market.inventory.repository.ProductStockSummaryRepository;
+import lombok.RequiredArgsConstructor;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.*;
+
+/**
+ * Duy trì bảng product_stock_summary.
+ * - Trừ kho khi đặt hàng gọi {@link #addDelta}: ngay trước commit chỉ cộng dồn chênh lệch vào dòng tổng hợp
+ *   (1 câu UPDATE, giữ khoá dòng trong thời gian ngắn nhất), không quét lại các lô; nhờ vậy các đơn đồng thời
+ *   của cùng 1 sản phẩm không phải xếp hàng chờ nhau ở dòng tổng hợp.
+ * - Các nghiệp vụ kho khác gọi {@link #markChanged}: ngay trước commit, mọi sản phẩm bị chạm được tính lại
+ *   chính xác từ các lô (khoá dòng tổng hợp theo thứ tự product_id rồi mới tính).
+ * Phần chênh lệch không tính lại (hạn dùng gần nhất, lô hết hạn) được ProductStockSummaryReconciler sửa.
+ */
+@Service
+@RequiredArgsConstructor
+public class ProductStockSummaryService {
+
+    private static final Object PENDING_KEY = new Object();
+
+    private final ProductStockSummaryRepository productStockSummaryRepository;
+
+    @Value("${inventory.low-stock-threshold:10}")
+    private int lowStockThreshold;
+
+    // Thay đổi chờ ghi của transaction hiện tại (theo thứ tự product_id)
+    private static final class Pending {
+        private final Set<Long> recompute = new TreeSet<>();
+        private final Map<Long, Integer> deltas = new TreeMap<>();
+    }
+
+    public void markChanged(Long productId) {
+        markChanged(List.of(productId));
+    }
+
+    public void markChanged(Collection<Long> productIds) {
+        if (productIds.isEmpty()) {
+            return;
+        }
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            refresh(productIds);
+            return;
+        }
+        pending().recompute.addAll(productIds);
+    }
+
+    /**
+     * Ghi nhận số lượng tồn thay đổi (âm khi trừ kho) của sản phẩm, cộng vào tổng hợp ngay trước commit.
+     */
+    public void addDelta(Long productId, int delta) {
+        addDeltas(Map.of(productId, delta));
+    }
+
+    public void addDeltas(Map<Long, Integer> deltasByProduct) {
+        if (deltasByProduct.isEmpty()) {
+            return;
+        }
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            applyDeltas(new TreeMap<>(deltasByProduct));
+            return;
+        }
+        Map<Long, Integer> deltas = pending().deltas;
+        deltasByProduct.forEach((productId, delta) -> deltas.merge(productId, delta, Integer::sum));
+    }
+
+    private Pending pending() {
+        Pending pending = (Pending) TransactionSynchronizationManager.getResource(PENDING_KEY);
+        if (pending != null) {
+            return pending;
+        }
+        Pending created = new Pending();
+        TransactionSynchronizationManager.bindResource(PENDING_KEY, created);
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void beforeCommit(boolean readOnly) {
+                flushPending(created);
+            }
+
+            @Override
+            public void afterCompletion(int status) {
+                TransactionSynchronizationManager.unbindResourceIfPossible(PENDING_KEY);
+            }
+        });
+        return created;
+    }
+
+    private void flushPending(Pending pending) {
+        if (!pending.recompute.isEmpty()) {
+            // Đằng nào cũng tính lại: gộp luôn các sản phẩm có chênh lệch để khoá theo 1 thứ tự duy nhất
+            Set<Long> productIds = new TreeSet<>(pending.recompute);
+            productIds.addAll(pending.deltas.keySet());
+            refresh(productIds);
+            return;
+        }
+        applyDeltas(pending.deltas);
+    }
+
+    private void applyDeltas(Map<Long, Integer> sortedDeltas) {
+        sortedDeltas.forEach((productId, delta) -> {
+            // Sản phẩm chưa có dòng tổng hợp: tạo và tính đầy đủ ngay, để vẫn khoá các dòng theo thứ tự product_id
+            if (delta != 0 && productStockSummaryRepository.addDelta(productId, delta, lowStockThreshold) == 0) {
+                refresh(List.of(productId));
+            }
+        });
+    }
+
+    @Transactional(readOnly = true)
+    public long countLowStockProducts() {
+        return productStockSummaryRepository.countByLowStockTrue();
+    }
+
+    /**
+     * Tính lại ngay tổng hợp của các sản phẩm, trong transaction hiện tại.
+     *
+     * @return số sản phẩm có số liệu thay đổi.
+     */
+    @Transactional
+    public int refresh(Collection<Long> productIds) {
+        if (productIds.isEmpty()) {
+            return 0;
+        }
+        // Đẩy các thay đổi lô / điều chỉnh đang chờ trong persistence context xuống trước khi tính
+        productStockSummaryRepository.flush();
+        productStockSummaryRepository.lockOrCreate(productIds);
+        return productStockSummaryRepository.recompute(productIds, lowStockThreshold);
+    }
+}
@@ -5,7 +5,7 @@ import com.foodmarket.food_market.notification.service.NotificationService;
 import com.foodmarket.food_market.order.model.Order;
 import com.foodmarket.food_market.order.model.enums.OrderStatus;
 import com.foodmarket.food_market.order.event.OrderStatusChangedEvent;
-import com.pusher.rest.Pusher;
+import com.foodmarket.food_market.shared.realtime.RealtimePublisher;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.scheduling.annotation.Async;
@@ -24,7 +24,7 @@ import java.util.Map;
 public class NotificationEventListener {
 
     private final NotificationService notificationService;
-    private final Pusher pusher;
+    private final RealtimePublisher realtimePublisher;
    
     @Async
     @Transactional(propagation = Propagation.REQUIRES_NEW)
@@ -55,7 +55,7 @@ public class NotificationEventListener {
                     pushData.put("message", message);
                     pushData.put("link", "/user/purchase/" + order.getId());
 
-                    pusher.trigger(channelName, "notification-event", pushData);
+                    realtimePublisher.publish(channelName, "notification-event", pushData);
                 } catch (Exception ex) {
                     log.error("Lỗi gửi Pusher: " + ex.getMessage());
                 }
@@ -0,0 +1,32 @@
+package com.foodmarket.food_market.order.dto;
+
+import com.foodmarket.food_market.order.model.enums.OrderStatus;
+import com.foodmarket.food_market.order.model.enums.PaymentMethod;
+import com.foodmarket.food_market.order.model.enums.PaymentStatus;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+
+import java.math.BigDecimal;
+import java.time.OffsetDateTime;
+import java.util.UUID;
+
+/**
+ * Dòng của danh sách đơn hàng admin. Được dựng trực tiếp từ SQL (không nạp Order/OrderItem),
+ * chi tiết đầy đủ xem qua getAdminOrderDetails.
+ */
+@Data
+@AllArgsConstructor
+public class AdminOrderSummaryDTO {
+    private UUID orderId;
+    private OrderStatus status;
+    private BigDecimal totalAmount;
+    private String deliveryAddress;
+    private String deliveryPhone;
+    private String deliveryName;
+    private OffsetDateTime createdAt;
+    private PaymentMethod paymentMethod;
+    private PaymentStatus paymentStatus;
+    private Long itemCount;
+    private String firstThumbnail;
+    private String itemNamesSummary; // Tên các sản phẩm, ngăn cách bởi dấu phẩy
+}
@@ -0,0 +1,9 @@
+package com.foodmarket.food_market.order.dto.projection;
+
+import java.time.OffsetDateTime;
+import java.util.UUID;
+
+public interface OrderDeadlineView {
+    UUID getOrderId();
+    OffsetDateTime getCreatedAt();
+}
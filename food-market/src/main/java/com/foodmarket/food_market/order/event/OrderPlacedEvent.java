@@ -0,0 +1,23 @@
+package com.foodmarket.food_market.order.event;
+
+import com.foodmarket.food_market.order.model.enums.PaymentMethod;
+import lombok.Getter;
+
+import java.time.OffsetDateTime;
+import java.util.UUID;
+
+/**
+ * Phát ra khi đặt hàng thành công (listener chạy sau commit).
+ */
+@Getter
+public class OrderPlacedEvent {
+    private final UUID orderId;
+    private final PaymentMethod paymentMethod;
+    private final OffsetDateTime createdAt;
+
+    public OrderPlacedEvent(UUID orderId, PaymentMethod paymentMethod, OffsetDateTime createdAt) {
+        this.orderId = orderId;
+        this.paymentMethod = paymentMethod;
+        this.createdAt = createdAt;
+    }
+}
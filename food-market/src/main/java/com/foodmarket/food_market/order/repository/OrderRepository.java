@@ -4,6 +4,7 @@ import com.foodmarket.food_market.admin.dashboard.dto.projection.DailyRevenueSta
 import com.foodmarket.food_market.admin.dashboard.dto.projection.HourlyRevenueStat;
 import com.foodmarket.food_market.admin.dashboard.dto.projection.OrderStatusStat;
 import com.foodmarket.food_market.admin.dashboard.dto.projection.TopProductStat;
+import com.foodmarket.food_market.order.dto.projection.OrderDeadlineView;
 import com.foodmarket.food_market.order.model.Order;
 import com.foodmarket.food_market.order.model.enums.OrderStatus;
 import com.foodmarket.food_market.order.model.enums.PaymentMethod;
@@ -12,80 +13,167 @@ import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.JpaSpecificationExecutor;
+import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
 import java.math.BigDecimal;
 import java.time.OffsetDateTime;
+import java.util.Collection;
 import java.util.List;
+import java.util.Optional;
 import java.util.Set;
 import java.util.UUID;
 
 @Repository
-public interface OrderRepository extends JpaRepository<Order, UUID>, JpaSpecificationExecutor<Order> {
+public interface OrderRepository extends JpaRepository<Order, UUID>, JpaSpecificationExecutor<Order>, OrderRepositoryCustom {
     Page<Order> findByUser_UserIdOrderByCreatedAtDesc(UUID userId,Pageable pageable);
 
+    // ==================================================================
+    // --- Dashboard: đọc từ bảng tổng hợp order_revenue_rollup (theo giờ) ---
+    // Khoảng [start, end) là nửa mở và phải là giờ trọn vẹn, xem OrderRevenueRollupService.bucketFrom/bucketTo
+    // ==================================================================
+
     // Tính tổng tiền trong một khoảng thời gian
-    @Query("SELECT COALESCE(SUM(o.totalAmount), 0) FROM Order o " +
-            "WHERE o.createdAt BETWEEN :start AND :end " +
-            "AND o.status IN :statusList")
+    @Query(value = """
+            SELECT COALESCE(SUM(r.revenue), 0) FROM order_revenue_rollup r
+            WHERE r.bucket_start >= :start
+              AND r.bucket_start < :end
+              AND r.status IN :statusList
+            """, nativeQuery = true)
     BigDecimal sumRevenueBetween(@Param("start") OffsetDateTime start,
                                  @Param("end") OffsetDateTime end,
-                                 @Param("statusList") Set<OrderStatus> statusList);
+                                 @Param("statusList") Set<String> statusList);
 
     // Tính tổng doanh thu không lọc theo ngày (ALL)
-    @Query("SELECT COALESCE(SUM(o.totalAmount), 0) FROM Order o " +
-            "WHERE o.status IN :statusList")
-    BigDecimal sumTotalRevenue(@Param("statusList") Set<OrderStatus> statusList);
+    @Query(value = "SELECT COALESCE(SUM(r.revenue), 0) FROM order_revenue_rollup r WHERE r.status IN :statusList",
+            nativeQuery = true)
+    BigDecimal sumTotalRevenue(@Param("statusList") Set<String> statusList);
 
     //  Tổng số đơn
-    @Query("SELECT COUNT(o) FROM Order o WHERE o.createdAt BETWEEN :start AND :end")
+    @Query(value = """
+            SELECT COALESCE(SUM(r.order_count), 0) FROM order_revenue_rollup r
+            WHERE r.bucket_start >= :start
+              AND r.bucket_start < :end
+            """, nativeQuery = true)
     long countOrdersBetween(@Param("start") OffsetDateTime start,
                             @Param("end") OffsetDateTime end);
 
 
-    // doanh thu
+    // Doanh thu theo ngày / tuần / tháng / quý / năm, gom ngay trong SQL (unit là tham số của date_trunc)
     @Query(value = """
-            SELECT CAST(o.created_at AS DATE) as date, COALESCE(SUM(o.total_amount), 0) as totalRevenue 
-            FROM orders o 
-            WHERE o.created_at >= :startDate    
-              AND o.created_at <= :endDate       
-              AND o.status IN :statusList 
-            GROUP BY CAST(o.created_at AS DATE)
-            ORDER BY CAST(o.created_at AS DATE) ASC
+            SELECT CAST(date_trunc(CAST(:unit AS TEXT), r.bucket_start) AS DATE) as date,
+                   COALESCE(SUM(r.revenue), 0) as totalRevenue
+            FROM order_revenue_rollup r
+            WHERE r.bucket_start >= :startDate
+              AND r.bucket_start < :endDate
+              AND r.status IN :statusList
+            GROUP BY 1
+            ORDER BY 1 ASC
             """, nativeQuery = true)
-    List<DailyRevenueStat> getDailyRevenueStats(@Param("startDate") OffsetDateTime startDate,
-                                                @Param("endDate") OffsetDateTime endDate,
-                                                @Param("statusList") Set<String> statusList);
+    List<DailyRevenueStat> getRevenueStatsByBucket(@Param("unit") String unit,
+                                                   @Param("startDate") OffsetDateTime startDate,
+                                                   @Param("endDate") OffsetDateTime endDate,
+                                                   @Param("statusList") Set<String> statusList);
 
     @Query(value = """
-            SELECT EXTRACT(HOUR FROM created_at) as hour, COALESCE(SUM(o.total_amount), 0) as totalRevenue 
-            FROM orders o 
-            WHERE o.created_at >= :startDate    
-              AND o.created_at <= :endDate       
-              AND o.status IN :statusList 
-            GROUP BY EXTRACT(HOUR FROM created_at)
+            SELECT EXTRACT(HOUR FROM r.bucket_start) as hour, COALESCE(SUM(r.revenue), 0) as totalRevenue
+            FROM order_revenue_rollup r
+            WHERE r.bucket_start >= :startDate
+              AND r.bucket_start < :endDate
+              AND r.status IN :statusList
+            GROUP BY EXTRACT(HOUR FROM r.bucket_start)
             ORDER BY hour ASC
             """, nativeQuery = true)
     List<HourlyRevenueStat> getHourlyRevenueStats(@Param("startDate") OffsetDateTime startDate,
                                                   @Param("endDate") OffsetDateTime endDate,
                                                   @Param("statusList") Set<String> statusList);
 
-    @Query("SELECT o.status AS status, COUNT(o) AS count " +
-            "FROM Order o GROUP BY o.status")
+    @Query(value = """
+            SELECT r.status AS status, SUM(r.order_count) AS count
+            FROM order_revenue_rollup r
+            GROUP BY r.status
+            HAVING SUM(r.order_count) > 0
+            """, nativeQuery = true)
     List<OrderStatusStat> countOrdersByStatus();
 
     // Đếm orders theo status trong khoảng thời gian
-    @Query("SELECT o.status AS status, COUNT(o) AS count " +
-            "FROM Order o " +
-            "WHERE o.createdAt BETWEEN :start AND :end " +
-            "GROUP BY o.status")
+    @Query(value = """
+            SELECT r.status AS status, SUM(r.order_count) AS count
+            FROM order_revenue_rollup r
+            WHERE r.bucket_start >= :start
+              AND r.bucket_start < :end
+            GROUP BY r.status
+            HAVING SUM(r.order_count) > 0
+            """, nativeQuery = true)
     List<OrderStatusStat> countOrdersByStatusBetween(
             @Param("start") OffsetDateTime start,
             @Param("end") OffsetDateTime end
     );
 
+    /**
+     * Cộng (sign = 1) hoặc trừ (sign = -1) một đơn hàng vào ô (giờ tạo đơn, status) của bảng tổng hợp.
+     * Giờ tạo đơn và tổng tiền được đọc từ chính bảng orders.
+     */
+    @Modifying
+    @Query(value = """
+            INSERT INTO order_revenue_rollup (bucket_start, status, order_count, revenue)
+            SELECT date_trunc('hour', o.created_at), :status, :sign, :sign * o.total_amount
+            FROM orders o
+            WHERE o.order_id = :orderId
+            ON CONFLICT (bucket_start, status) DO UPDATE
+            SET order_count = order_revenue_rollup.order_count + EXCLUDED.order_count,
+                revenue     = order_revenue_rollup.revenue + EXCLUDED.revenue
+            """, nativeQuery = true)
+    int applyRevenueRollupDelta(@Param("orderId") UUID orderId,
+                                @Param("status") String status,
+                                @Param("sign") int sign);
+
+    // Bản nhiều đơn của applyRevenueRollupDelta, gom theo giờ tạo đơn
+    @Modifying
+    @Query(value = """
+            INSERT INTO order_revenue_rollup (bucket_start, status, order_count, revenue)
+            SELECT date_trunc('hour', o.created_at), :status, :sign * COUNT(*), :sign * SUM(o.total_amount)
+            FROM orders o
+            WHERE o.order_id IN (:orderIds)
+            GROUP BY date_trunc('hour', o.created_at)
+            ON CONFLICT (bucket_start, status) DO UPDATE
+            SET order_count = order_revenue_rollup.order_count + EXCLUDED.order_count,
+                revenue     = order_revenue_rollup.revenue + EXCLUDED.revenue
+            """, nativeQuery = true)
+    int applyRevenueRollupDeltaForOrders(@Param("orderIds") Collection<UUID> orderIds,
+                                         @Param("status") String status,
+                                         @Param("sign") int sign);
+
+    // Chặn cập nhật tăng dần trong lúc dựng lại bảng tổng hợp
+    @Modifying
+    @Query(value = "LOCK TABLE order_revenue_rollup IN EXCLUSIVE MODE", nativeQuery = true)
+    void lockRevenueRollup();
+
+    // Dựng lại theo từng khoảng [from, to) (đã làm tròn giờ), mỗi khoảng 1 transaction ngắn
+    @Modifying
+    @Query(value = "DELETE FROM order_revenue_rollup WHERE bucket_start >= :from AND bucket_start < :to", nativeQuery = true)
+    int clearRevenueRollup(@Param("from") OffsetDateTime from, @Param("to") OffsetDateTime to);
+
+    @Modifying
+    @Query(value = """
+            INSERT INTO order_revenue_rollup (bucket_start, status, order_count, revenue)
+            SELECT date_trunc('hour', o.created_at), o.status, COUNT(*), COALESCE(SUM(o.total_amount), 0)
+            FROM orders o
+            WHERE o.created_at >= :from AND o.created_at < :to
+            GROUP BY date_trunc('hour', o.created_at), o.status
+            """, nativeQuery = true)
+    int rebuildRevenueRollup(@Param("from") OffsetDateTime from, @Param("to") OffsetDateTime to);
+
+    @Query("SELECT MIN(o.createdAt) FROM Order o")
+    Optional<OffsetDateTime> findEarliestCreatedAt();
+
+    // Xoá ô tổng hợp trước đơn cũ nhất (đơn đã bị xoá)
+    @Modifying
+    @Query(value = "DELETE FROM order_revenue_rollup WHERE bucket_start < :before", nativeQuery = true)
+    int clearRevenueRollupBefore(@Param("before") OffsetDateTime before);
+
 
     // Lấy top đơn cũ nhất đang chờ xử lý
     @Query("SELECT o FROM Order o WHERE o.status IN :urgentStatuses ORDER BY o.createdAt ASC")
@@ -112,16 +200,59 @@ public interface OrderRepository extends JpaRepository<Order, UUID>, JpaSpecific
                                                 @Param("statusList") Set<OrderStatus> statusList,
                                                 Pageable pageable);
     Page<Order> findByUser_UserIdAndStatus(UUID userId, OrderStatus status, Pageable pageable);
+
+    // Bước 2 của phân trang: nạp items (kèm lô hàng, sản phẩm và danh mục mà DTO đọc slug) cho các đơn
+    // trong trang bằng 1 truy vấn
+    @Query("SELECT DISTINCT o FROM Order o " +
+            "LEFT JOIN FETCH o.items i " +
+            "LEFT JOIN FETCH i.inventoryBatch " +
+            "LEFT JOIN FETCH i.product p " +
+            "LEFT JOIN FETCH p.category " +
+            "WHERE o.id IN :orderIds")
+    List<Order> findAllWithItemsByIdIn(@Param("orderIds") Collection<UUID> orderIds);
     boolean existsByIdAndUser_UserIdAndStatus(UUID orderId, UUID userId, OrderStatus status);
-    //Tìm các order quá hạn thanh toán online
-    @Query("SELECT o FROM Order o WHERE o.status = :status " +
+    // Các đơn đang chờ thanh toán online (dựng lại hàng đợi hết hạn khi khởi động)
+    @Query("SELECT o.id AS orderId, o.createdAt AS createdAt FROM Order o " +
+            "WHERE o.status = :status " +
             "AND o.paymentMethod = :method " +
-            "AND o.paymentStatus <> :paidStatus " +
-            "AND o.createdAt < :threshold")
-    List<Order> findExpiredOrders(
+            "AND o.paymentStatus <> :paidStatus")
+    List<OrderDeadlineView> findAwaitingPaymentDeadlines(
             @Param("status") OrderStatus status,
             @Param("method") PaymentMethod method,
-            @Param("paidStatus") PaymentStatus paidStatus,
-            @Param("threshold") OffsetDateTime threshold
+            @Param("paidStatus") PaymentStatus paidStatus
     );
+    // Trong các đơn đã cho, đơn vẫn còn chờ thanh toán online (đơn chưa huỷ được do lệch đồng hồ giữa các node)
+    @Query("SELECT o.id AS orderId, o.createdAt AS createdAt FROM Order o " +
+            "WHERE o.id IN :orderIds " +
+            "AND o.status = :status " +
+            "AND o.paymentMethod = :method " +
+            "AND o.paymentStatus <> :paidStatus")
+    List<OrderDeadlineView> findAwaitingPaymentDeadlinesByIdIn(
+            @Param("orderIds") Collection<UUID> orderIds,
+            @Param("status") OrderStatus status,
+            @Param("method") PaymentMethod method,
+            @Param("paidStatus") PaymentStatus paidStatus
+    );
+
+    /**
+     * Huỷ các đơn VNPAY quá hạn thanh toán. Điều kiện nằm trong câu UPDATE nên đơn vừa được thanh toán
+     * (hoặc đã bị huỷ bởi node khác) sẽ không bị huỷ.
+     *
+     * @return id các đơn thực sự được huỷ.
+     */
+    @Query(value = """
+            UPDATE orders
+            SET status = 'CANCELLED',
+                payment_status = 'CANCELLED',
+                note = COALESCE(note, '') || ' [' || :reason || ']'
+            WHERE order_id IN (:orderIds)
+              AND status = 'PENDING'
+              AND payment_method = 'VNPAY'
+              AND payment_status <> 'PAID'
+              AND created_at <= :createdBefore
+            RETURNING order_id
+            """, nativeQuery = true)
+    List<UUID> cancelExpiredOnlineOrders(@Param("orderIds") Collection<UUID> orderIds,
+                                         @Param("createdBefore") OffsetDateTime createdBefore,
+                                         @Param("reason") String reason);
 }
\ No newline at end of file
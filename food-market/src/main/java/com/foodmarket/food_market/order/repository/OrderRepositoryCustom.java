@@ -0,0 +1,16 @@
+package com.foodmarket.food_market.order.repository;
+
+import com.foodmarket.food_market.order.dto.AdminOrderSummaryDTO;
+import com.foodmarket.food_market.order.model.Order;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.domain.Specification;
+
+public interface OrderRepositoryCustom {
+
+    /**
+     * Danh sách đơn hàng cho admin dạng projection: số món, ảnh đầu tiên và tóm tắt tên sản phẩm
+     * được tính bằng subquery trong SQL.
+     */
+    Page<AdminOrderSummaryDTO> findAdminOrderSummaries(Specification<Order> spec, Pageable pageable);
+}
@@ -0,0 +1,93 @@
+package com.foodmarket.food_market.order.repository;
+
+import com.foodmarket.food_market.order.dto.AdminOrderSummaryDTO;
+import com.foodmarket.food_market.order.model.Order;
+import com.foodmarket.food_market.order.model.OrderItem;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.PersistenceContext;
+import jakarta.persistence.criteria.CriteriaQuery;
+import jakarta.persistence.criteria.Predicate;
+import jakarta.persistence.criteria.Root;
+import jakarta.persistence.criteria.Subquery;
+import org.hibernate.Session;
+import org.hibernate.query.criteria.HibernateCriteriaBuilder;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageImpl;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.domain.Specification;
+import org.springframework.data.jpa.repository.query.QueryUtils;
+
+import java.util.List;
+
+public class OrderRepositoryCustomImpl implements OrderRepositoryCustom {
+
+    @PersistenceContext
+    private EntityManager entityManager;
+
+    @Override
+    public Page<AdminOrderSummaryDTO> findAdminOrderSummaries(Specification<Order> spec, Pageable pageable) {
+        HibernateCriteriaBuilder cb = entityManager.unwrap(Session.class).getCriteriaBuilder();
+
+        CriteriaQuery<AdminOrderSummaryDTO> query = cb.createQuery(AdminOrderSummaryDTO.class);
+        Root<Order> root = query.from(Order.class);
+
+        // Số món
+        Subquery<Long> itemCount = query.subquery(Long.class);
+        Root<OrderItem> countItem = itemCount.from(OrderItem.class);
+        itemCount.select(cb.count(countItem)).where(cb.equal(countItem.get("order"), root));
+
+        // Ảnh của món đầu tiên (order_item_id nhỏ nhất)
+        Subquery<Long> firstItemId = query.subquery(Long.class);
+        Root<OrderItem> minItem = firstItemId.from(OrderItem.class);
+        firstItemId.select(cb.min(minItem.get("id"))).where(cb.equal(minItem.get("order"), root));
+
+        Subquery<String> firstThumbnail = query.subquery(String.class);
+        Root<OrderItem> thumbItem = firstThumbnail.from(OrderItem.class);
+        firstThumbnail.select(thumbItem.get("productThumbnailSnapshot"))
+                .where(cb.equal(thumbItem.get("id"), firstItemId));
+
+        // Tên các món, theo thứ tự thêm vào đơn
+        Subquery<String> itemNames = query.subquery(String.class);
+        Root<OrderItem> nameItem = itemNames.from(OrderItem.class);
+        itemNames.select(cb.listagg(cb.asc(nameItem.get("id")), nameItem.get("productNameSnapshot"), ", "))
+                .where(cb.equal(nameItem.get("order"), root));
+
+        query.select(cb.construct(AdminOrderSummaryDTO.class,
+                root.get("id"),
+                root.get("status"),
+                root.get("totalAmount"),
+                root.get("deliveryAddressSnapshot"),
+                root.get("deliveryPhoneSnapshot"),
+                root.get("deliveryRecipientNameSnapshot"),
+                root.get("createdAt"),
+                root.get("paymentMethod"),
+                root.get("paymentStatus"),
+                itemCount,
+                firstThumbnail,
+                itemNames
+        ));
+        Predicate predicate = spec.toPredicate(root, query, cb);
+        if (predicate != null) {
+            query.where(predicate);
+        }
+        query.orderBy(QueryUtils.toOrders(pageable.getSort(), root, cb));
+
+        List<AdminOrderSummaryDTO> content = entityManager.createQuery(query)
+                .setFirstResult((int) pageable.getOffset())
+                .setMaxResults(pageable.getPageSize())
+                .getResultList();
+
+        return new PageImpl<>(content, pageable, count(spec, cb));
+    }
+
+    private long count(Specification<Order> spec, HibernateCriteriaBuilder cb) {
+        CriteriaQuery<Long> countQuery = cb.createQuery(Long.class);
+        Root<Order> root = countQuery.from(Order.class);
+        countQuery.select(cb.count(root));
+        Predicate predicate = spec.toPredicate(root, countQuery, cb);
+        if (predicate != null) {
+            countQuery.where(predicate);
+        }
+        return entityManager.createQuery(countQuery).getSingleResult();
+    }
+}
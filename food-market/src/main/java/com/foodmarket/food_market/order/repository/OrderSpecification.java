@@ -8,6 +8,8 @@ import com.foodmarket.food_market.user.model.entity.User;
 import jakarta.persistence.criteria.Join;
 import jakarta.persistence.criteria.JoinType;
 import jakarta.persistence.criteria.Predicate;
+import jakarta.persistence.criteria.Root;
+import jakarta.persistence.criteria.Subquery;
 import org.springframework.data.jpa.domain.Specification;
 import org.springframework.util.StringUtils;
 
@@ -77,19 +79,21 @@ public class OrderSpecification {
     }
 
     /**
-     * Lọc đơn hàng có chứa các sản phẩm nhất định (Cần JOIN bảng OrderItem)
+     * Lọc đơn hàng có chứa các sản phẩm nhất định.
+     * Dùng EXISTS thay vì JOIN để không nhân bản dòng (không cần DISTINCT).
      */
     private static Specification<Order> containsProducts(List<Long> productIds) {
         return (root, query, cb) -> {
             if (productIds == null || productIds.isEmpty()) {
                 return null;
             }
-            // Join Order -> OrderItems
-            Join<Order, OrderItem> itemsJoin = root.join("items", JoinType.INNER);
+            Subquery<Long> matchingItem = query.subquery(Long.class);
+            Root<OrderItem> item = matchingItem.from(OrderItem.class);
+            matchingItem.select(item.get("id"))
+                    .where(cb.equal(item.get("order"), root),
+                            item.get("product").get("id").in(productIds));
 
-            query.distinct(true);
-
-            return itemsJoin.get("product").get("id").in(productIds);
+            return cb.exists(matchingItem);
         };
     }
 
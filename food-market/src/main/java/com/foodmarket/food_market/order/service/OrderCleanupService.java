@@ -1,48 +1,188 @@
 package com.foodmarket.food_market.order.service;
 
-import com.foodmarket.food_market.order.model.Order;
+import com.foodmarket.food_market.order.dto.projection.OrderDeadlineView;
+import com.foodmarket.food_market.order.event.OrderPlacedEvent;
 import com.foodmarket.food_market.order.model.enums.OrderStatus;
 import com.foodmarket.food_market.order.model.enums.PaymentMethod;
 import com.foodmarket.food_market.order.model.enums.PaymentStatus;
 import com.foodmarket.food_market.order.repository.OrderRepository;
+import jakarta.annotation.PreDestroy;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
 import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Service;
-import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.event.TransactionPhase;
+import org.springframework.transaction.event.TransactionalEventListener;
 
 import java.time.OffsetDateTime;
+import java.util.ArrayList;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.DelayQueue;
+import java.util.concurrent.Delayed;
+import java.util.concurrent.TimeUnit;
 
+/**
+ * Huỷ đơn VNPAY đúng lúc hết hạn thanh toán thay vì quét toàn bảng orders mỗi 5 phút.
+ * - Mỗi đơn chờ thanh toán có 1 hạn (created_at + order.payment-timeout-minutes) trong DelayQueue;
+ *   hàng đợi được dựng lại từ DB khi khởi động và nhận đơn mới qua OrderPlacedEvent (sau commit).
+ * - 1 virtual thread lấy các đơn đã tới hạn, huỷ theo nhóm (order.expiry.chunk-size) trong transaction ngắn.
+ * - Câu UPDATE có điều kiện nên nhiều node cùng xử lý 1 đơn, hoặc đơn vừa được thanh toán, đều an toàn.
+ * - Đơn chưa tới hạn theo đồng hồ node này (created_at do node khác ghi, lệch đồng hồ) được xếp lại vào hàng đợi.
+ * - Lỗi bất kỳ (kể cả Error) khi huỷ 1 nhóm chỉ làm nhóm đó được thử lại, luồng huỷ không dừng.
+ * - Quét dự phòng thưa (order.expiry.sweep-interval-ms) bắt các đơn lọt hàng đợi (node khác đặt rồi tắt...).
+ */
 @Service
 @RequiredArgsConstructor
 @Slf4j
 public class OrderCleanupService {
 
+    private static final String EXPIRY_REASON = "Hệ thống: hết hạn thanh toán online, huỷ đơn và trả về kho";
+
     private final OrderRepository orderRepository;
     private final OrderService orderService;
 
-   
-    @Scheduled(fixedRate = 300000)
-    @Transactional
-    public void cancelUnpaidOrders() {
-        log.info("Bắt đầu quét đơn hàng treo...");
-        OffsetDateTime timeoutThreshold = OffsetDateTime.now().minusMinutes(15);
-        List<Order> expiredOrders = orderRepository.findExpiredOrders(
-                OrderStatus.PENDING,
-                PaymentMethod.VNPAY,
-                PaymentStatus.PAID,
-                timeoutThreshold
-        );
-
-        for (Order order : expiredOrders) {
+    @Value("${order.payment-timeout-minutes:15}")
+    private long paymentTimeoutMinutes;
+
+    @Value("${order.expiry.chunk-size:100}")
+    private int chunkSize;
+
+    @Value("${order.expiry.retry-delay-ms:30000}")
+    private long retryDelayMs;
+
+    private final DelayQueue<Expiry> queue = new DelayQueue<>();
+    // Đơn đang nằm trong hàng đợi, tránh xếp trùng khi dựng lại / quét dự phòng
+    private final Set<UUID> scheduled = ConcurrentHashMap.newKeySet();
+
+    private volatile boolean running = true;
+    private Thread worker;
+
+    private record Expiry(UUID orderId, long deadlineMillis) implements Delayed {
+
+        @Override
+        public long getDelay(TimeUnit unit) {
+            return unit.convert(deadlineMillis - System.currentTimeMillis(), TimeUnit.MILLISECONDS);
+        }
+
+        @Override
+        public int compareTo(Delayed other) {
+            return Long.compare(deadlineMillis, ((Expiry) other).deadlineMillis);
+        }
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void start() {
+        rescheduleAwaitingOrders();
+        worker = Thread.ofVirtual().name("order-expiry").start(this::expiryLoop);
+    }
+
+    @PreDestroy
+    void stop() {
+        running = false;
+        if (worker != null) {
+            worker.interrupt();
+        }
+    }
+
+    @TransactionalEventListener(phase = TransactionPhase.AFTER_COMMIT, fallbackExecution = true)
+    public void onOrderPlaced(OrderPlacedEvent event) {
+        if (event.getPaymentMethod() != PaymentMethod.VNPAY) {
+            return;
+        }
+        OffsetDateTime createdAt = event.getCreatedAt() != null ? event.getCreatedAt() : OffsetDateTime.now();
+        schedule(event.getOrderId(), createdAt);
+    }
+
+    @Scheduled(initialDelayString = "${order.expiry.sweep-interval-ms:600000}",
+            fixedDelayString = "${order.expiry.sweep-interval-ms:600000}")
+    public void sweep() {
+        int added = rescheduleAwaitingOrders();
+        if (added > 0) {
+            log.info("Quét dự phòng: xếp thêm {} đơn chờ thanh toán vào hàng đợi hết hạn", added);
+        }
+    }
+
+    private int rescheduleAwaitingOrders() {
+        List<OrderDeadlineView> awaiting = orderRepository.findAwaitingPaymentDeadlines(
+                OrderStatus.PENDING, PaymentMethod.VNPAY, PaymentStatus.PAID);
+        int added = 0;
+        for (OrderDeadlineView view : awaiting) {
+            if (schedule(view.getOrderId(), view.getCreatedAt())) {
+                added++;
+            }
+        }
+        return added;
+    }
+
+    private boolean schedule(UUID orderId, OffsetDateTime createdAt) {
+        if (!scheduled.add(orderId)) {
+            return false;
+        }
+        long deadline = createdAt.plusMinutes(paymentTimeoutMinutes).toInstant().toEpochMilli();
+        queue.put(new Expiry(orderId, deadline));
+        return true;
+    }
+
+    private void expiryLoop() {
+        while (running) {
+            List<Expiry> due = new ArrayList<>(chunkSize);
             try {
-                log.info("Tự động huỷ đơn hàng treo: {}", order.getId());
-                orderService.systemCancelOrder(order.getId(), "Hệ thống: hết hạn thanh toán online, huỷ đơn và trả về kho");
+                due.add(queue.take());
+                queue.drainTo(due, chunkSize - 1);
+            } catch (InterruptedException e) {
+                return;
+            }
+            try {
+                cancelDue(due);
+            } catch (Throwable e) {
+                // Lỗi khi xếp lại hàng đợi: luồng huỷ vẫn chạy tiếp, quét dự phòng sẽ xếp lại các đơn này
+                log.error("Lỗi không mong đợi trong luồng huỷ đơn hết hạn", e);
+                due.forEach(expiry -> scheduled.remove(expiry.orderId()));
+            }
+        }
+    }
 
-            } catch (Exception e) {
-                log.error("Lỗi khi huỷ đơn hàng {}", order.getId(), e);
+    private void cancelDue(List<Expiry> due) {
+        List<UUID> orderIds = due.stream().map(Expiry::orderId).toList();
+        try {
+            OffsetDateTime createdBefore = OffsetDateTime.now().minusMinutes(paymentTimeoutMinutes);
+            List<UUID> cancelled = orderService.systemCancelExpiredOrders(orderIds, createdBefore, EXPIRY_REASON);
+            if (!cancelled.isEmpty()) {
+                log.info("Tự động huỷ {} đơn hàng hết hạn thanh toán: {}", cancelled.size(), cancelled);
             }
+            Set<UUID> skipped = new HashSet<>(orderIds);
+            cancelled.forEach(skipped::remove);
+            requeueStillAwaiting(skipped);
+        } catch (Throwable e) {
+            log.error("Lỗi khi huỷ {} đơn hàng hết hạn, thử lại sau {} ms", orderIds.size(), retryDelayMs, e);
+            long retryAt = System.currentTimeMillis() + retryDelayMs;
+            due.forEach(expiry -> queue.put(new Expiry(expiry.orderId(), retryAt)));
+        }
+    }
+
+    /**
+     * Đơn không bị huỷ: đã thanh toán / đã huỷ trước đó thì bỏ khỏi hàng đợi; còn chờ thanh toán (chưa quá hạn theo
+     * đồng hồ node này) thì xếp lại theo hạn từ created_at, muộn nhất sau retry-delay-ms để không quay vòng liên tục.
+     */
+    private void requeueStillAwaiting(Set<UUID> skipped) {
+        if (skipped.isEmpty()) {
+            return;
+        }
+        List<OrderDeadlineView> stillAwaiting = orderRepository.findAwaitingPaymentDeadlinesByIdIn(
+                skipped, OrderStatus.PENDING, PaymentMethod.VNPAY, PaymentStatus.PAID);
+        long earliestRetry = System.currentTimeMillis() + retryDelayMs;
+        for (OrderDeadlineView view : stillAwaiting) {
+            long deadline = view.getCreatedAt().plusMinutes(paymentTimeoutMinutes).toInstant().toEpochMilli();
+            queue.put(new Expiry(view.getOrderId(), Math.max(deadline, earliestRetry)));
+            skipped.remove(view.getOrderId());
         }
+        skipped.forEach(scheduled::remove);
     }
-}
\ No newline at end of file
+}
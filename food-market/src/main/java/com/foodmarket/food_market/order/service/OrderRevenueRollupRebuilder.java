@@ -0,0 +1,46 @@
+package com.foodmarket.food_market.order.service;
+
+import com.foodmarket.food_market.order.repository.OrderRepository;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.time.OffsetDateTime;
+import java.util.Optional;
+
+import static com.foodmarket.food_market.order.service.OrderRevenueRollupService.bucketFrom;
+
+/**
+ * Dựng lại order_revenue_rollup từ orders mỗi đêm (sửa sai lệch nếu có).
+ * Đi lần lượt từng khoảng thời gian, mỗi khoảng là 1 transaction ngắn, thay vì khoá bảng tổng hợp
+ * trong lúc quét cả bảng orders.
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class OrderRevenueRollupRebuilder {
+
+    private final OrderRepository orderRepository;
+    private final OrderRevenueRollupService orderRevenueRollupService;
+
+    @Value("${dashboard.rollup.rebuild-chunk-hours:24}")
+    private int chunkHours;
+
+    @Scheduled(cron = "${dashboard.rollup.rebuild-cron:0 0 3 * * *}")
+    public void rebuild() {
+        Optional<OffsetDateTime> earliest = orderRepository.findEarliestCreatedAt();
+        // Mốc kết thúc lấy qua giờ hiện tại: đơn tạo sau mốc này đã được cập nhật tăng dần
+        OffsetDateTime end = bucketFrom(OffsetDateTime.now()).plusHours(1);
+        OffsetDateTime start = earliest.map(OrderRevenueRollupService::bucketFrom).orElse(end);
+
+        int buckets = 0;
+        for (OffsetDateTime from = start; from.isBefore(end); from = from.plusHours(chunkHours)) {
+            OffsetDateTime to = from.plusHours(chunkHours).isBefore(end) ? from.plusHours(chunkHours) : end;
+            buckets += orderRevenueRollupService.rebuildRange(from, to);
+        }
+        orderRevenueRollupService.clearBefore(start);
+        log.info("Đã dựng lại bảng tổng hợp doanh thu: {} ô (giờ, trạng thái)", buckets);
+    }
+}
@@ -0,0 +1,80 @@
+package com.foodmarket.food_market.order.service;
+
+import com.foodmarket.food_market.order.model.enums.OrderStatus;
+import com.foodmarket.food_market.order.repository.OrderRepository;
+import lombok.RequiredArgsConstructor;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.OffsetDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.Collection;
+import java.util.UUID;
+
+/**
+ * Duy trì bảng order_revenue_rollup (số đơn + doanh thu theo giờ tạo đơn và trạng thái).
+ * Các hàm record* chạy trong transaction của nghiệp vụ đơn hàng nên luôn khớp với bảng orders.
+ */
+@Service
+@RequiredArgsConstructor
+public class OrderRevenueRollupService {
+
+    private final OrderRepository orderRepository;
+
+    // Gọi sau khi đơn đã có tổng tiền cuối cùng
+    @Transactional
+    public void recordPlaced(UUID orderId, OrderStatus status) {
+        orderRepository.applyRevenueRollupDelta(orderId, status.name(), 1);
+    }
+
+    @Transactional
+    public void recordStatusChange(UUID orderId, OrderStatus oldStatus, OrderStatus newStatus) {
+        if (oldStatus == newStatus) {
+            return;
+        }
+        orderRepository.applyRevenueRollupDelta(orderId, oldStatus.name(), -1);
+        orderRepository.applyRevenueRollupDelta(orderId, newStatus.name(), 1);
+    }
+
+    @Transactional
+    public void recordStatusChange(Collection<UUID> orderIds, OrderStatus oldStatus, OrderStatus newStatus) {
+        if (oldStatus == newStatus || orderIds.isEmpty()) {
+            return;
+        }
+        orderRepository.applyRevenueRollupDeltaForOrders(orderIds, oldStatus.name(), -1);
+        orderRepository.applyRevenueRollupDeltaForOrders(orderIds, newStatus.name(), 1);
+    }
+
+    /**
+     * Bảng tổng hợp chỉ chia theo giờ, nên mọi khoảng thời gian của dashboard được quy về giờ trọn vẹn:
+     * start làm tròn xuống, end làm tròn lên (end đúng đầu giờ được coi là mốc loại trừ), truy vấn dùng [bucketFrom, bucketTo).
+     * Khoảng theo ngày (00:00 -> 23:59:59.999) vì vậy cho kết quả trùng với lọc trực tiếp theo created_at.
+     */
+    public static OffsetDateTime bucketFrom(OffsetDateTime start) {
+        return start.truncatedTo(ChronoUnit.HOURS);
+    }
+
+    public static OffsetDateTime bucketTo(OffsetDateTime end) {
+        OffsetDateTime hour = end.truncatedTo(ChronoUnit.HOURS);
+        return hour.equals(end) ? hour : hour.plusHours(1);
+    }
+
+    /**
+     * Dựng lại các ô tổng hợp trong [from, to) (đã làm tròn giờ) từ orders.
+     * Khoá bảng tổng hợp để cập nhật tăng dần của đơn khác không chen vào giữa lúc xoá và tính lại;
+     * khoảng nhỏ (dashboard.rollup.rebuild-chunk-hours) nên các giao dịch đặt hàng / đổi trạng thái chỉ phải chờ ngắn.
+     *
+     * @return số ô (giờ, trạng thái) được ghi.
+     */
+    @Transactional
+    public int rebuildRange(OffsetDateTime from, OffsetDateTime to) {
+        orderRepository.lockRevenueRollup();
+        orderRepository.clearRevenueRollup(from, to);
+        return orderRepository.rebuildRevenueRollup(from, to);
+    }
+
+    @Transactional
+    public int clearBefore(OffsetDateTime before) {
+        return orderRepository.clearRevenueRollupBefore(before);
+    }
+}
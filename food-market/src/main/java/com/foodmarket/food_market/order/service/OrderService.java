@@ -6,8 +6,10 @@ import com.foodmarket.food_market.admin.dashboard.dto.projection.TopProductStat;
 import com.foodmarket.food_market.admin.dashboard.dto.response.ChartDataDTO;
 import com.foodmarket.food_market.admin.dashboard.dto.response.DashboardSummaryDTO;
 import com.foodmarket.food_market.admin.dashboard.dto.response.TopProductResponseDTO;
+import com.foodmarket.food_market.admin.dto.ChartGranularity;
 import com.foodmarket.food_market.admin.dto.OrderStatsDTO;
 import com.foodmarket.food_market.admin.dto.TimeRange;
+import com.foodmarket.food_market.order.dto.AdminOrderSummaryDTO;
 import com.foodmarket.food_market.order.dto.CheckoutRequestDTO;
 import com.foodmarket.food_market.order.dto.OrderFilterDTO;
 import com.foodmarket.food_market.order.dto.OrderResponseDTO;
@@ -21,6 +23,7 @@ import org.springframework.transaction.annotation.Transactional;
 import java.math.BigDecimal;
 import java.time.LocalDateTime;
 import java.time.OffsetDateTime;
+import java.util.Collection;
 import java.util.List;
 import java.util.UUID;
 
@@ -37,11 +40,21 @@ public interface OrderService {
 
     void cancelOrder(UUID userId, UUID orderId, String reason);
     void systemCancelOrder(UUID orderId, String reason);
-    Page<OrderResponseDTO> getAllOrders(OrderFilterDTO filterDTO, Pageable pageable);
+
+    /**
+     * Huỷ 1 nhóm đơn VNPAY quá hạn thanh toán trong 1 transaction, trả kho bằng câu lệnh set-based.
+     *
+     * @return id các đơn thực sự được huỷ (đơn đã thanh toán / đã huỷ được bỏ qua).
+     */
+    List<UUID> systemCancelExpiredOrders(Collection<UUID> orderIds, OffsetDateTime createdBefore, String reason);
+    Page<AdminOrderSummaryDTO> getAllOrders(OrderFilterDTO filterDTO, Pageable pageable);
 
     DashboardSummaryDTO getDashboardSummary(OffsetDateTime start, OffsetDateTime end);
 
-    List<ChartDataDTO> getComparisonChart(OffsetDateTime start, OffsetDateTime end);
+    /**
+     * @param granularity Độ chia cột (null = theo giờ nếu trong 1 ngày, ngược lại theo ngày).
+     */
+    List<ChartDataDTO> getComparisonChart(OffsetDateTime start, OffsetDateTime end, ChartGranularity granularity);
 
     List<OrderStatusStat> countOrdersByStatus();
     List<OrderResponseDTO> findUrgentOrders(Pageable pageable);
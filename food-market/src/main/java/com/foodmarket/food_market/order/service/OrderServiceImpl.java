@@ -7,6 +7,7 @@ import com.foodmarket.food_market.admin.dashboard.dto.projection.TopProductStat;
 import com.foodmarket.food_market.admin.dashboard.dto.response.ChartDataDTO;
 import com.foodmarket.food_market.admin.dashboard.dto.response.DashboardSummaryDTO;
 import com.foodmarket.food_market.admin.dashboard.dto.response.TopProductResponseDTO;
+import com.foodmarket.food_market.admin.dto.ChartGranularity;
 import com.foodmarket.food_market.admin.dto.OrderStatsDTO;
 import com.foodmarket.food_market.admin.dto.TimeRange;
 import com.foodmarket.food_market.cart.model.Cart;
@@ -14,9 +15,11 @@ import com.foodmarket.food_market.cart.model.CartItem;
 import com.foodmarket.food_market.cart.repository.CartRepository;
 import com.foodmarket.food_market.inventory.dto.AllocatedBatchDTO;
 import com.foodmarket.food_market.inventory.service.InventoryService;
+import com.foodmarket.food_market.order.dto.AdminOrderSummaryDTO;
 import com.foodmarket.food_market.order.dto.CheckoutRequestDTO;
 import com.foodmarket.food_market.order.dto.OrderFilterDTO;
 import com.foodmarket.food_market.order.dto.OrderResponseDTO;
+import com.foodmarket.food_market.order.event.OrderPlacedEvent;
 import com.foodmarket.food_market.order.event.OrderStatusChangedEvent;
 import com.foodmarket.food_market.order.model.Order;
 import com.foodmarket.food_market.order.model.OrderItem;
@@ -26,6 +29,7 @@ import com.foodmarket.food_market.order.repository.OrderSpecification;
 import com.foodmarket.food_market.order.model.enums.OrderStatus;
 import com.foodmarket.food_market.order.repository.OrderItemRepository;
 import com.foodmarket.food_market.order.repository.OrderRepository;
+import com.foodmarket.food_market.product.dto.projection.ProductThumbnailRow;
 import com.foodmarket.food_market.product.model.Product;
 import com.foodmarket.food_market.product.repository.ProductRepository;
 import com.foodmarket.food_market.review.repository.ReviewRepository;
@@ -51,10 +55,13 @@ import java.time.LocalDate;
 import java.time.LocalDateTime;
 import java.time.LocalTime;
 import java.time.OffsetDateTime;
-import java.time.format.DateTimeFormatter;
 import java.time.temporal.ChronoUnit;
 import java.util.*;
 import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import static com.foodmarket.food_market.order.service.OrderRevenueRollupService.bucketFrom;
+import static com.foodmarket.food_market.order.service.OrderRevenueRollupService.bucketTo;
 
 @Service
 @RequiredArgsConstructor
@@ -69,6 +76,11 @@ public class OrderServiceImpl implements OrderService {
     private final InventoryService inventoryService;
     private final ApplicationEventPublisher eventPublisher;
     private final ProductRepository productRepository;
+    private final OrderRevenueRollupService orderRevenueRollupService;
+
+    private static final String[] HOUR_LABELS = IntStream.range(0, 24)
+            .mapToObj(hour -> String.format("%02d:00", hour))
+            .toArray(String[]::new);
 
     @Override
     @Transactional
@@ -130,6 +142,8 @@ public class OrderServiceImpl implements OrderService {
         newOrder.setPaymentStatus(PaymentStatus.PENDING);
         Order savedOrder = orderRepository.save(newOrder);
 
+        // Kiểm tra giá trước, rồi trừ kho cho cả giỏ hàng trong 1 lần gọi
+        Map<Long, Integer> quantitiesByProduct = new LinkedHashMap<>();
         for (CartItem cartItem : cart.getItems()) {
             Product product = cartItem.getProduct();
 
@@ -141,25 +155,34 @@ public class OrderServiceImpl implements OrderService {
                 // NÉM LỖI ĐỂ UI BẮT
                 throw new IllegalArgumentException("Giá của sản phẩm '" + product.getName() + "' đã thay đổi. Vui lòng tải lại giỏ hàng.");
             }
+            quantitiesByProduct.merge(product.getId(), cartItem.getQuantity(), Integer::sum);
+        }
+
+        // Gọi Inventory để trừ kho
+        Map<Long, List<AllocatedBatchDTO>> allocationsByProduct = inventoryService.allocateForOrder(
+                quantitiesByProduct,
+                userId,
+                savedOrder.getId()
+        );
+        Map<Long, String> thumbnailUrlByProductId = findThumbnailUrls(quantitiesByProduct.keySet());
+        Set<Long> itemizedProductIds = new HashSet<>();
 
+        for (CartItem cartItem : cart.getItems()) {
+            Product product = cartItem.getProduct();
+            if (!itemizedProductIds.add(product.getId())) {
+                continue;
+            }
             // === LOGIC CHÍNH: LẤY GIÁ TỪ CART ===
-            int quantityNeeded = cartItem.getQuantity();
-            // Gọi Inventory để trừ kho
-            List<AllocatedBatchDTO> allocations = inventoryService.allocateForOrder(
-                    product.getId(),
-                    quantityNeeded,
-                    userId,
-                    savedOrder.getId()
-            );
+            BigDecimal priceInCart = cartItem.getPrice();
 
-            for (AllocatedBatchDTO alloc : allocations) {
+            for (AllocatedBatchDTO alloc : allocationsByProduct.get(product.getId())) {
                 OrderItem newOrderItem = new OrderItem();
                 newOrderItem.setProduct(product);
                 newOrderItem.setInventoryBatch(alloc.batch());
                 newOrderItem.setQuantity(alloc.quantityAllocated());
                 newOrderItem.setProductIdSnapshot(product.getId());
                 newOrderItem.setProductNameSnapshot(product.getName());
-                newOrderItem.setProductThumbnailSnapshot(product.getImages().getFirst().getImageUrl());
+                newOrderItem.setProductThumbnailSnapshot(thumbnailUrlByProductId.get(product.getId()));
                 newOrderItem.setPriceAtPurchase(priceInCart);
                 newOrderItem.setBasePriceAtPurchase(product.getBasePrice());
                 newOrderItems.add(newOrderItem);
@@ -181,6 +204,10 @@ public class OrderServiceImpl implements OrderService {
         cart.getItems().clear();
         cartRepository.save(cart);
 
+        // Ghi vào bảng tổng hợp doanh thu ở cuối transaction để giữ khoá dòng tổng hợp ngắn nhất
+        orderRevenueRollupService.recordPlaced(savedOrder.getId(), savedOrder.getStatus());
+        eventPublisher.publishEvent(new OrderPlacedEvent(savedOrder.getId(), savedOrder.getPaymentMethod(), savedOrder.getCreatedAt()));
+
         return OrderResponseDTO.fromEntity(savedOrder, new HashSet<>());
     }
 
@@ -193,11 +220,16 @@ public class OrderServiceImpl implements OrderService {
         } else {
             orderPage = orderRepository.findByUser_UserIdOrderByCreatedAtDesc(userId, pageable);
         }
-        return orderPage.map(order -> {
-            List<Long> reviewedProductIds = reviewRepository.findReviewedProductIdsByOrderId(order.getId());
-            Set<Long> reviewedSet = new HashSet<>(reviewedProductIds);
-            return OrderResponseDTO.fromEntity(order, reviewedSet);
-        });
+        // Trang chỉ chứa Order (không JOIN FETCH để phân trang đúng ở DB),
+        // sau đó nạp items + review của cả trang, mỗi loại 1 truy vấn
+        List<UUID> orderIds = orderPage.getContent().stream().map(Order::getId).toList();
+        if (!orderIds.isEmpty()) {
+            orderRepository.findAllWithItemsByIdIn(orderIds);
+        }
+        Map<UUID, Set<Long>> reviewedByOrder = reviewRepository.findReviewedProductIdsByOrderIds(orderIds);
+
+        return orderPage.map(order ->
+                OrderResponseDTO.fromEntity(order, reviewedByOrder.getOrDefault(order.getId(), Set.of())));
     }
 
     @Override
@@ -222,8 +254,10 @@ public class OrderServiceImpl implements OrderService {
         Order order = orderRepository.findById(orderId)
                 .orElseThrow(() -> new EntityNotFoundException("Không tìm thấy Order"));
 
+        OrderStatus oldStatus = order.getStatus();
         order.setStatus(newStatus);
         orderRepository.save(order);
+        orderRevenueRollupService.recordStatusChange(orderId, oldStatus, newStatus);
 
         eventPublisher.publishEvent(new OrderStatusChangedEvent(order, newStatus));
     }
@@ -268,7 +302,10 @@ public class OrderServiceImpl implements OrderService {
             );
         }
         // 6. Cập nhật trạng thái Order
+        OrderStatus oldStatus = order.getStatus();
         order.setStatus(OrderStatus.CANCELLED);
+        orderRepository.save(order);
+        orderRevenueRollupService.recordStatusChange(orderId, oldStatus, OrderStatus.CANCELLED);
 
         // Lưu lý do hủy vào ghi chú
         String oldNote = order.getNote() == null ? "" : order.getNote();
@@ -293,6 +330,7 @@ public class OrderServiceImpl implements OrderService {
             );
         }
 
+        OrderStatus oldStatus = order.getStatus();
         order.setStatus(OrderStatus.CANCELLED);
         order.setNote(order.getNote() + " [" + reason + "]");
 
@@ -302,10 +340,23 @@ public class OrderServiceImpl implements OrderService {
         }
 
         orderRepository.save(order);
+        orderRevenueRollupService.recordStatusChange(orderId, oldStatus, OrderStatus.CANCELLED);
+    }
+    @Override
+    @Transactional
+    public List<UUID> systemCancelExpiredOrders(Collection<UUID> orderIds, OffsetDateTime createdBefore, String reason) {
+        List<UUID> cancelledIds = orderRepository.cancelExpiredOnlineOrders(orderIds, createdBefore, reason);
+        if (cancelledIds.isEmpty()) {
+            return cancelledIds;
+        }
+        inventoryService.restoreStockForOrders(cancelledIds);
+        orderRevenueRollupService.recordStatusChange(cancelledIds, OrderStatus.PENDING, OrderStatus.CANCELLED);
+        return cancelledIds;
     }
+
     @Override
     @Transactional(readOnly = true)
-    public Page<OrderResponseDTO> getAllOrders(OrderFilterDTO filterDTO, Pageable pageable) {
+    public Page<AdminOrderSummaryDTO> getAllOrders(OrderFilterDTO filterDTO, Pageable pageable) {
         // Sử dụng sort từ Pageable, nếu không có thì dùng default
         Sort sort = pageable.getSort();
         if (sort.isUnsorted()) {
@@ -321,8 +372,7 @@ public class OrderServiceImpl implements OrderService {
         );
         
         Specification<Order> spec = OrderSpecification.filterBy(filterDTO);
-        return orderRepository.findAll(spec, pageable)
-                .map(order -> OrderResponseDTO.fromEntity(order, new HashSet<>()));
+        return orderRepository.findAdminOrderSummaries(spec, pageable);
     }
 
     @Override
@@ -333,11 +383,11 @@ public class OrderServiceImpl implements OrderService {
         OffsetDateTime prevStart = start.minusDays(duration);
         OffsetDateTime prevEnd = end.minusDays(duration);
 
-        BigDecimal currentRev = orderRepository.sumRevenueBetween(start, end, OrderStatus.ACTIVE_STATUSES);
-        BigDecimal prevRev = orderRepository.sumRevenueBetween(prevStart, prevEnd, OrderStatus.ACTIVE_STATUSES);
+        BigDecimal currentRev = orderRepository.sumRevenueBetween(bucketFrom(start), bucketTo(end), OrderStatus.ACTIVE_STATUSES_Strings);
+        BigDecimal prevRev = orderRepository.sumRevenueBetween(bucketFrom(prevStart), bucketTo(prevEnd), OrderStatus.ACTIVE_STATUSES_Strings);
 
-        long currentOrd = orderRepository.countOrdersBetween(start, end);
-        long prevOrd = orderRepository.countOrdersBetween(prevStart, prevEnd);
+        long currentOrd = orderRepository.countOrdersBetween(bucketFrom(start), bucketTo(end));
+        long prevOrd = orderRepository.countOrdersBetween(bucketFrom(prevStart), bucketTo(prevEnd));
 
         if (currentRev == null) currentRev = BigDecimal.ZERO;
         if (prevRev == null) prevRev = BigDecimal.ZERO;
@@ -353,38 +403,46 @@ public class OrderServiceImpl implements OrderService {
     }
 
     @Override
-    public List<ChartDataDTO> getComparisonChart(OffsetDateTime start, OffsetDateTime end) {
+    public List<ChartDataDTO> getComparisonChart(OffsetDateTime start, OffsetDateTime end, ChartGranularity granularity) {
         long daysDiff = ChronoUnit.DAYS.between(start, end);
 
-        if (daysDiff == 0) {
-            return getHourlyChartData(start, end);
-        } else {
-            return getDailyChartData(start, end, daysDiff);
+        if (granularity == null) {
+            if (daysDiff == 0) {
+                return getHourlyChartData(start, end);
+            }
+            granularity = ChartGranularity.DAY;
         }
+        return getBucketChartData(start, end, daysDiff, granularity);
     }
 
-    public List<ChartDataDTO> getDailyChartData(OffsetDateTime start, OffsetDateTime end, long daysDiff) {
+    // So sánh kỳ hiện tại với kỳ liền trước cùng độ dài, theo cột ngày / tuần / tháng / quý / năm
+    private List<ChartDataDTO> getBucketChartData(OffsetDateTime start, OffsetDateTime end, long daysDiff,
+                                                  ChartGranularity granularity) {
         long duration = daysDiff + 1;
-
         OffsetDateTime prevStart = start.minusDays(duration);
 
-        List<DailyRevenueStat> currentStats = orderRepository.getDailyRevenueStats(start, end, OrderStatus.ACTIVE_STATUSES_Strings);
-        List<DailyRevenueStat> prevStats = orderRepository.getDailyRevenueStats(prevStart, start.minusNanos(1), OrderStatus.ACTIVE_STATUSES_Strings);
-
-        List<ChartDataDTO> result = new ArrayList<>();
+        List<DailyRevenueStat> currentStats = orderRepository.getRevenueStatsByBucket(
+                granularity.getSqlUnit(), bucketFrom(start), bucketTo(end), OrderStatus.ACTIVE_STATUSES_Strings);
+        List<DailyRevenueStat> prevStats = orderRepository.getRevenueStatsByBucket(
+                granularity.getSqlUnit(), bucketFrom(prevStart), bucketFrom(start), OrderStatus.ACTIVE_STATUSES_Strings);
 
-        for (int i = 0; i < duration; i++) {
-            OffsetDateTime currDateTarget = start.plusDays(i);
-            OffsetDateTime prevDateTarget = prevStart.plusDays(i);
+        LocalDate firstBucket = granularity.truncate(start.toLocalDate());
+        LocalDate prevFirstBucket = granularity.truncate(prevStart.toLocalDate());
+        int bucketCount = granularity.indexOf(firstBucket, granularity.truncate(end.toLocalDate())) + 1;
 
-            BigDecimal currVal = findValueByDate(currentStats, currDateTarget);
-            BigDecimal prevVal = findValueByDate(prevStats, prevDateTarget);
+        // Đánh chỉ số 1 lần (O(n)) thay vì tìm tuyến tính cho từng cột
+        BigDecimal[] currValues = indexByBucket(currentStats, granularity, firstBucket, bucketCount);
+        BigDecimal[] prevValues = indexByBucket(prevStats, granularity, prevFirstBucket, bucketCount);
 
+        List<ChartDataDTO> result = new ArrayList<>(bucketCount);
+        LocalDate bucketStart = firstBucket;
+        for (int i = 0; i < bucketCount; i++) {
             result.add(ChartDataDTO.builder()
-                    .label(currDateTarget.format(DateTimeFormatter.ofPattern("dd/MM")))
-                    .currentRevenue(currVal)
-                    .previousRevenue(prevVal)
+                    .label(granularity.label(bucketStart))
+                    .currentRevenue(currValues[i])
+                    .previousRevenue(prevValues[i])
                     .build());
+            bucketStart = granularity.next(bucketStart);
         }
         return result;
     }
@@ -393,32 +451,24 @@ public class OrderServiceImpl implements OrderService {
         OffsetDateTime prevStart = start.minusDays(1);
         OffsetDateTime prevEnd = end.minusDays(1);
 
-        List<HourlyRevenueStat> currentStats = orderRepository.getHourlyRevenueStats(start, end, OrderStatus.ACTIVE_STATUSES_Strings);
-        List<HourlyRevenueStat> prevStats = orderRepository.getHourlyRevenueStats(prevStart, prevEnd, OrderStatus.ACTIVE_STATUSES_Strings);
+        List<HourlyRevenueStat> currentStats = orderRepository.getHourlyRevenueStats(
+                bucketFrom(start), bucketTo(end), OrderStatus.ACTIVE_STATUSES_Strings);
+        List<HourlyRevenueStat> prevStats = orderRepository.getHourlyRevenueStats(
+                bucketFrom(prevStart), bucketTo(prevEnd), OrderStatus.ACTIVE_STATUSES_Strings);
 
-        List<ChartDataDTO> result = new ArrayList<>();
+        BigDecimal[] currValues = new BigDecimal[24];
+        BigDecimal[] prevValues = new BigDecimal[24];
+        Arrays.fill(currValues, BigDecimal.ZERO);
+        Arrays.fill(prevValues, BigDecimal.ZERO);
+        currentStats.forEach(stat -> currValues[stat.getHour()] = stat.getTotalRevenue());
+        prevStats.forEach(stat -> prevValues[stat.getHour()] = stat.getTotalRevenue());
 
+        List<ChartDataDTO> result = new ArrayList<>(24);
         for (int hour = 0; hour < 24; hour++) {
-            int currentHour = hour;
-
-            BigDecimal currVal = currentStats.stream()
-                    .filter(s -> s.getHour() == currentHour)
-                    .findFirst()
-                    .map(HourlyRevenueStat::getTotalRevenue)
-                    .orElse(BigDecimal.ZERO);
-
-            BigDecimal prevVal = prevStats.stream()
-                    .filter(s -> s.getHour() == currentHour)
-                    .findFirst()
-                    .map(HourlyRevenueStat::getTotalRevenue)
-                    .orElse(BigDecimal.ZERO);
-
-            String label = String.format("%02d:00", currentHour);
-
             result.add(ChartDataDTO.builder()
-                    .label(label)
-                    .currentRevenue(currVal)
-                    .previousRevenue(prevVal)
+                    .label(HOUR_LABELS[hour])
+                    .currentRevenue(currValues[hour])
+                    .previousRevenue(prevValues[hour])
                     .build());
         }
         return result;
@@ -440,10 +490,21 @@ public class OrderServiceImpl implements OrderService {
     @Override
     public List<TopProductResponseDTO> findTopSellingProducts(OffsetDateTime startDate, OffsetDateTime endDate, Pageable pageable) {
         List<TopProductStat> topProductStats = orderRepository.findTopSellingProducts(startDate, endDate, OrderStatus.ACTIVE_STATUSES, pageable);
-        return topProductStats.stream().map(topProductStat -> {
-            String productImageUrl = productRepository.findById(topProductStat.getProductId()).get().getImages().getFirst().getImageUrl();
-            return TopProductResponseDTO.fromProjection(topProductStat, productImageUrl);
-        }).collect(Collectors.toList());
+        Map<Long, String> thumbnailUrlByProductId = findThumbnailUrls(
+                topProductStats.stream().map(TopProductStat::getProductId).toList());
+        return topProductStats.stream()
+                .map(topProductStat -> TopProductResponseDTO.fromProjection(
+                        topProductStat, thumbnailUrlByProductId.get(topProductStat.getProductId())))
+                .collect(Collectors.toList());
+    }
+
+    // Ảnh đại diện theo sản phẩm bằng 1 truy vấn, không nạp danh sách ảnh của từng sản phẩm
+    private Map<Long, String> findThumbnailUrls(Collection<Long> productIds) {
+        if (productIds.isEmpty()) {
+            return Map.of();
+        }
+        return productRepository.findThumbnailsByProductIds(productIds).stream()
+                .collect(Collectors.toMap(ProductThumbnailRow::getProductId, ProductThumbnailRow::getImageUrl));
     }
 
     @Override
@@ -488,13 +549,18 @@ public class OrderServiceImpl implements OrderService {
                 .doubleValue();
     }
 
-    // Helper tìm giá trị trong list DB trả về (convert OffsetDateTime sang LocalDate để so sánh cho dễ)
-    private BigDecimal findValueByDate(List<DailyRevenueStat> stats, OffsetDateTime targetDate) {
-        return stats.stream()
-                .filter(s -> s.getDate().isEqual(targetDate.toLocalDate())) // Giả sử projection trả về LocalDate
-                .findFirst()
-                .map(DailyRevenueStat::getTotalRevenue)
-                .orElse(BigDecimal.ZERO);
+    // Đưa kết quả SQL (đã gom theo cột) vào mảng theo chỉ số cột
+    private BigDecimal[] indexByBucket(List<DailyRevenueStat> stats, ChartGranularity granularity,
+                                       LocalDate firstBucket, int bucketCount) {
+        BigDecimal[] values = new BigDecimal[bucketCount];
+        Arrays.fill(values, BigDecimal.ZERO);
+        for (DailyRevenueStat stat : stats) {
+            int index = granularity.indexOf(firstBucket, granularity.truncate(stat.getDate()));
+            if (index >= 0 && index < bucketCount) {
+                values[index] = values[index].add(stat.getTotalRevenue());
+            }
+        }
+        return values;
     }
 
     @Override
@@ -528,10 +594,10 @@ public class OrderServiceImpl implements OrderService {
         if (start == null) {
             // ALL: Không filter theo ngày
             statusStats = orderRepository.countOrdersByStatus();
-            totalRevenue = orderRepository.sumTotalRevenue(OrderStatus.ACTIVE_STATUSES);
+            totalRevenue = orderRepository.sumTotalRevenue(OrderStatus.ACTIVE_STATUSES_Strings);
         } else {
-            statusStats = orderRepository.countOrdersByStatusBetween(start, end);
-            totalRevenue = orderRepository.sumRevenueBetween(start, end, OrderStatus.ACTIVE_STATUSES);
+            statusStats = orderRepository.countOrdersByStatusBetween(bucketFrom(start), bucketTo(end));
+            totalRevenue = orderRepository.sumRevenueBetween(bucketFrom(start), bucketTo(end), OrderStatus.ACTIVE_STATUSES_Strings);
         }
 
         if (totalRevenue == null) {
@@ -2,7 +2,7 @@
 package com.foodmarket.food_market.product.controller;
 
 import com.foodmarket.food_market.product.dto.HomePageDataDTO;
-import com.foodmarket.food_market.product.service.StorefrontService;
+import com.foodmarket.food_market.product.service.HomePageSnapshotCache;
 import lombok.RequiredArgsConstructor;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.GetMapping;
@@ -14,10 +14,10 @@ import org.springframework.web.bind.annotation.RestController;
 @RequiredArgsConstructor
 public class StorefrontController {
 
-    private final StorefrontService storefrontService;
+    private final HomePageSnapshotCache homePageSnapshotCache;
 
     @GetMapping("/home")
     public ResponseEntity<HomePageDataDTO> getHomePageData() {
-        return ResponseEntity.ok(storefrontService.getHomePageData());
+        return ResponseEntity.ok(homePageSnapshotCache.get());
     }
 }
\ No newline at end of file
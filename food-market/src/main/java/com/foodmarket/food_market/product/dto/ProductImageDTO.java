@@ -1,5 +1,6 @@
 package com.foodmarket.food_market.product.dto; 
 
+import com.foodmarket.food_market.product.dto.projection.ProductThumbnailRow;
 import com.foodmarket.food_market.product.model.ProductImage;
 import lombok.Builder;
 import lombok.Data;
@@ -18,4 +19,12 @@ public class ProductImageDTO {
                 .displayOrder(image.getDisplayOrder())
                 .build();
     }
+
+    public static ProductImageDTO fromThumbnail(ProductThumbnailRow row) {
+        return ProductImageDTO.builder()
+                .id(row.getImageId())
+                .imageUrl(row.getImageUrl())
+                .displayOrder(row.getDisplayOrder())
+                .build();
+    }
 }
\ No newline at end of file
@@ -31,15 +31,26 @@ public class ProductResponseDTO {
     public static ProductResponseDTO fromEntity(
             Product product,
             int stockQuantity
+    ) {
+        return fromEntity(product, stockQuantity, product.getImages().stream()
+                .map(ProductImageDTO::fromEntity)
+                .collect(Collectors.toList()));
+    }
+
+    /**
+     * Dùng cho danh sách: ảnh truyền vào (thường chỉ ảnh đại diện) thay vì nạp product.images.
+     */
+    public static ProductResponseDTO fromEntity(
+            Product product,
+            int stockQuantity,
+            List<ProductImageDTO> images
     ) {
         return ProductResponseDTO.builder()
                 .id(product.getId())
                 .name(product.getName())
                 .description(product.getDescription())
                 .specifications(product.getSpecifications())
-                .images(product.getImages().stream()
-                        .map(ProductImageDTO::fromEntity)
-                        .collect(Collectors.toList()))
+                .images(images)
                 .unit(product.getUnit())
                 .basePrice(product.getBasePrice())
                 .finalPrice(product.getFinalPrice())
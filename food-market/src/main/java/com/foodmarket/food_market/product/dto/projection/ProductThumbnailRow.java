@@ -0,0 +1,8 @@
+package com.foodmarket.food_market.product.dto.projection;
+
+public interface ProductThumbnailRow {
+    Long getProductId();
+    Long getImageId();
+    String getImageUrl();
+    Integer getDisplayOrder();
+}
@@ -0,0 +1,9 @@
+package com.foodmarket.food_market.product.dto.projection;
+
+public interface SearchHintRow {
+    Long getProductId();
+    String getProductName();
+    Integer getSoldCount();
+    String getCategoryName();
+    String getTagName();
+}
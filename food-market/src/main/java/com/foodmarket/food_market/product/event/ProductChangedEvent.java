@@ -0,0 +1,15 @@
+package com.foodmarket.food_market.product.event;
+
+import lombok.Getter;
+
+/**
+ * Phát ra khi thông tin sản phẩm thay đổi (tạo, sửa, giá sale, xoá mềm, khôi phục).
+ */
+@Getter
+public class ProductChangedEvent {
+    private final Long productId;
+
+    public ProductChangedEvent(Long productId) {
+        this.productId = productId;
+    }
+}
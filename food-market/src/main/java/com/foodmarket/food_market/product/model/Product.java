@@ -5,6 +5,7 @@ import jakarta.persistence.*;
 import lombok.Getter;
 import lombok.NoArgsConstructor;
 import lombok.Setter;
+import org.hibernate.annotations.BatchSize;
 import org.hibernate.annotations.JdbcTypeCode;
 import org.hibernate.type.SqlTypes;
 
@@ -39,9 +40,12 @@ public class Product {
             mappedBy = "product",
             cascade = CascadeType.ALL,
             orphanRemoval = true,
-            fetch = FetchType.EAGER
+            fetch = FetchType.LAZY
     )
     @OrderBy("displayOrder ASC")
+    // Trang chi tiết / admin: ảnh của mọi sản phẩm trong persistence context được nạp theo lô, không N+1.
+    // Danh sách storefront chỉ cần ảnh đầu tiên -> dùng ProductRepository.findThumbnailsByProductIds
+    @BatchSize(size = 50)
     private List<ProductImage> images = new ArrayList<>();
 
     @Column(name = "base_price", nullable = false, precision = 10, scale = 2)
@@ -67,6 +71,7 @@ public class Product {
     private Category category;
 
     @ManyToMany(cascade = {CascadeType.PERSIST, CascadeType.MERGE})
+    @BatchSize(size = 50)
     @JoinTable(
             name = "product_tags",
             joinColumns = @JoinColumn(name = "product_id"),
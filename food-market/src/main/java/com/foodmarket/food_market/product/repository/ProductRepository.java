@@ -2,6 +2,8 @@ package com.foodmarket.food_market.product.repository;
 
 import com.foodmarket.food_market.category.model.Category;
 import com.foodmarket.food_market.product.dto.ProductResponseDTO;
+import com.foodmarket.food_market.product.dto.projection.ProductThumbnailRow;
+import com.foodmarket.food_market.product.dto.projection.SearchHintRow;
 import com.foodmarket.food_market.product.model.Product;
 import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
@@ -27,8 +29,11 @@ public interface ProductRepository extends JpaRepository<Product, Long>, JpaSpec
     @Query("UPDATE Product p SET p.soldCount = COALESCE(p.soldCount, 0) + :qty WHERE p.id = :id")
     void incrementSoldCount(@Param("id") Long id, @Param("qty") Integer qty);
 
-    @Query(value = "SELECT DISTINCT p.name FROM products p " +
-            "WHERE unaccent(p.name) ILIKE unaccent(concat('%', :keyword, '%')) " +
+    // Biểu thức lower(immutable_unaccent(name)) khớp với index trigram (V22), xếp theo độ tương đồng
+    @Query(value = "SELECT p.name FROM products p " +
+            "WHERE lower(immutable_unaccent(p.name)) LIKE concat('%', lower(immutable_unaccent(:keyword)), '%') " +
+            "GROUP BY p.name " +
+            "ORDER BY similarity(lower(immutable_unaccent(p.name)), lower(immutable_unaccent(:keyword))) DESC, p.name " +
             "LIMIT 5", nativeQuery = true)
     List<String> searchKeywordSuggestions(@Param("keyword") String keyword);
 
@@ -39,15 +44,6 @@ public interface ProductRepository extends JpaRepository<Product, Long>, JpaSpec
             "WHERE p.id = :productId")
     void addReviewRating(Long productId, double newRating);
 
-    @Query(value = """
-        SELECT p.product_id 
-        FROM products p 
-        LEFT JOIN inventory_batches ib ON p.product_id = ib.product_id 
-        GROUP BY p.product_id 
-        HAVING COALESCE(SUM(ib.current_quantity), 0) <= :threshold
-    """, nativeQuery = true)
-    List<Long> findProductIdsWithLowStock(@Param("threshold") int threshold);
-
     // 1. Lấy sản phẩm đang Sale (Flash Sale)
     @Query("SELECT p FROM Product p WHERE p.isOnSale = true AND p.isDeleted = false ORDER BY p.soldCount DESC")
     List<Product> findOnSaleProducts(Pageable pageable);
@@ -58,4 +54,33 @@ public interface ProductRepository extends JpaRepository<Product, Long>, JpaSpec
             "AND p.isDeleted = false " +
             "ORDER BY p.soldCount DESC")
     List<Product> findTopProductsByRootCategoryId(@Param("rootId") Long rootId, Pageable pageable);
-}
\ No newline at end of file
+
+    // Dữ liệu dựng chỉ mục gợi ý tìm kiếm: mỗi dòng = 1 sản phẩm x 1 tag (tagName null nếu không có tag)
+    @Query("SELECT p.id AS productId, p.name AS productName, p.soldCount AS soldCount, " +
+            "c.name AS categoryName, t.name AS tagName " +
+            "FROM Product p JOIN p.category c LEFT JOIN p.tags t " +
+            "WHERE p.isDeleted = false")
+    List<SearchHintRow> findSearchHintRows();
+
+    @Query("SELECT p.id AS productId, p.name AS productName, p.soldCount AS soldCount, " +
+            "c.name AS categoryName, t.name AS tagName " +
+            "FROM Product p JOIN p.category c LEFT JOIN p.tags t " +
+            "WHERE p.isDeleted = false AND p.id IN :ids")
+    List<SearchHintRow> findSearchHintRowsByProductIds(@Param("ids") Collection<Long> ids);
+
+    // Ảnh đại diện (ảnh đầu tiên theo display_order) của từng sản phẩm, không nạp cả danh sách ảnh
+    @Query(value = """
+        SELECT p.product_id AS productId, img.id AS imageId,
+               img.image_url AS imageUrl, img.display_order AS displayOrder
+        FROM products p
+        CROSS JOIN LATERAL (
+            SELECT pi.id, pi.image_url, pi.display_order
+            FROM product_images pi
+            WHERE pi.product_id = p.product_id
+            ORDER BY pi.display_order, pi.id
+            LIMIT 1
+        ) img
+        WHERE p.product_id IN (:ids)
+    """, nativeQuery = true)
+    List<ProductThumbnailRow> findThumbnailsByProductIds(@Param("ids") Collection<Long> ids);
+}
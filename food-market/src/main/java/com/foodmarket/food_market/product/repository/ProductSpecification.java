@@ -1,8 +1,12 @@
 package com.foodmarket.food_market.product.repository;
 
+import com.foodmarket.food_market.inventory.model.ProductStockSummary;
 import com.foodmarket.food_market.product.model.Product;
+import jakarta.persistence.criteria.CriteriaBuilder;
 import jakarta.persistence.criteria.Expression;
 import jakarta.persistence.criteria.Predicate;
+import jakarta.persistence.criteria.Root;
+import jakarta.persistence.criteria.Subquery;
 import org.springframework.data.jpa.domain.Specification;
 
 import java.util.List;
@@ -10,19 +14,23 @@ import java.util.List;
 public class ProductSpecification {
 
    
+    /**
+     * @param searchCategoryIds id các danh mục có tên khớp searchTerm (CategoryRepository#findIdsByNameContaining)
+     */
     public static Specification<Product> filterBy(
             String searchTerm,
+            List<Long> searchCategoryIds,
             List<Long> categoryIds,
             Boolean includeSoftDeleted,
             Boolean onlySoftDeleted,
-            List<Long> filterIds,
+            Boolean lowStockOnly,
             Boolean isOnSale
     ) {
 
         return Specification.allOf(filterDeleted(includeSoftDeleted, onlySoftDeleted))
-                .and(hasSearchTerm(searchTerm))
+                .and(hasSearchTerm(searchTerm, searchCategoryIds))
                 .and(hasCategoryIdIn(categoryIds))
-                .and(hasIdsIn(filterIds))
+                .and(isLowStock(lowStockOnly))
                 .and(isOnSale(isOnSale));
     }
 
@@ -40,31 +48,60 @@ public class ProductSpecification {
         return (root, query, cb) -> cb.isFalse(root.get("isDeleted"));
     }
 
-    private static Specification<Product> hasSearchTerm(String keyword) {
+    private static Specification<Product> hasSearchTerm(String keyword, List<Long> searchCategoryIds) {
         if (keyword == null || keyword.trim().isEmpty()) return null;
 
         return (root, query, cb) -> {
-            String pattern = "%" + keyword.toLowerCase() + "%";
-            Expression<String> unaccentPattern = cb.function("unaccent", String.class, cb.literal(pattern));
-
-            Expression<String> unaccentProductName = cb.function("unaccent", String.class, root.get("name"));
-            Predicate namePredicate = cb.like(cb.lower(unaccentProductName), cb.lower(unaccentPattern));
+            // lower(immutable_unaccent(...)) khớp với index trigram trên products (V22).
+            // Không JOIN categories trong OR (Postgres không dùng được index cho OR qua JOIN):
+            // so category_id với danh sách id đã tra trước để ghép 2 index bằng BitmapOr.
+            Predicate namePredicate = cb.like(searchable(cb, root.get("name")), searchPattern(cb, keyword));
+            if (searchCategoryIds == null || searchCategoryIds.isEmpty()) {
+                return namePredicate;
+            }
+            return cb.or(namePredicate, root.get("category").get("id").in(searchCategoryIds));
+        };
+    }
 
-            Expression<String> unaccentCategoryName = cb.function("unaccent", String.class, root.get("category").get("name"));
-            Predicate categoryPredicate = cb.like(cb.lower(unaccentCategoryName), cb.lower(unaccentPattern));
+    /**
+     * Xếp theo độ giống tên sản phẩm với từ khoá (pg_trgm similarity), dùng khi tìm kiếm mà không chọn sắp xếp.
+     */
+    public static Specification<Product> orderByRelevance(String keyword) {
+        if (keyword == null || keyword.trim().isEmpty()) return null;
 
-            return cb.or(namePredicate, categoryPredicate);
+        return (root, query, cb) -> {
+            // Truy vấn đếm của phân trang tự bỏ ORDER BY
+            Expression<Double> similarity = cb.function("similarity", Double.class,
+                    searchable(cb, root.get("name")), searchable(cb, cb.literal(keyword.trim())));
+            query.orderBy(cb.desc(similarity), cb.asc(root.get("id")));
+            return null;
         };
     }
+
+    private static Expression<String> searchPattern(CriteriaBuilder cb, String keyword) {
+        return cb.concat(cb.concat("%", searchable(cb, cb.literal(keyword.trim()))), "%");
+    }
+
+    private static Expression<String> searchable(CriteriaBuilder cb, Expression<String> value) {
+        return cb.lower(cb.function("immutable_unaccent", String.class, value));
+    }
+
     private static Specification<Product> hasCategoryIdIn(List<Long> categoryIds) {
         if (categoryIds == null || categoryIds.isEmpty()) return null;
         return (root, query, cb) ->
                 root.get("category").get("id").in(categoryIds);
     }
 
-    private static Specification<Product> hasIdsIn(List<Long> ids) {
-        if (ids == null) return null;
-        return (root, query, cb) -> root.get("id").in(ids);
+    // Dùng cờ low_stock của product_stock_summary (có index) thay vì tính tổng từ các lô
+    private static Specification<Product> isLowStock(Boolean lowStockOnly) {
+        if (!Boolean.TRUE.equals(lowStockOnly)) return null;
+        return (root, query, cb) -> {
+            Subquery<Long> lowStock = query.subquery(Long.class);
+            Root<ProductStockSummary> summary = lowStock.from(ProductStockSummary.class);
+            lowStock.select(summary.get("productId"))
+                    .where(cb.equal(summary.get("productId"), root.get("id")), cb.isTrue(summary.get("lowStock")));
+            return cb.exists(lowStock);
+        };
     }
     private static Specification<Product> isOnSale(Boolean isOnSale) {
         if (isOnSale == null) return null;
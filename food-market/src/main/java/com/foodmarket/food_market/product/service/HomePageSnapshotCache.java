@@ -0,0 +1,100 @@
+package com.foodmarket.food_market.product.service;
+
+import com.foodmarket.food_market.category.event.CategoryChangedEvent;
+import com.foodmarket.food_market.inventory.event.StockChangedEvent;
+import com.foodmarket.food_market.product.dto.HomePageDataDTO;
+import com.foodmarket.food_market.product.event.ProductChangedEvent;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionPhase;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Giữ sẵn dữ liệu trang chủ trong bộ nhớ.
+ * - Request chỉ đọc snapshot hiện tại, không bao giờ chờ rebuild (trừ lần đầu khi chưa có snapshot).
+ * - Khi sản phẩm / danh mục / tồn kho thay đổi, snapshot bị đánh dấu "dirty"; job nền sẽ dựng lại
+ *   (gom nhiều thay đổi liên tiếp thành 1 lần rebuild).
+ * - Dù không có sự kiện nào, snapshot cũng được dựng lại sau tối đa max-stale (ví dụ soldCount thay đổi).
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class HomePageSnapshotCache {
+
+    private final StorefrontService storefrontService;
+
+    private final AtomicReference<Snapshot> current = new AtomicReference<>();
+    private final AtomicBoolean dirty = new AtomicBoolean(false);
+
+    @Value("${storefront.home.max-stale-ms:60000}")
+    private long maxStaleMs;
+
+    private record Snapshot(HomePageDataDTO data, long builtAt) {
+    }
+
+    public HomePageDataDTO get() {
+        Snapshot snapshot = current.get();
+        if (snapshot != null) {
+            return snapshot.data();
+        }
+        return coldBuild();
+    }
+
+    /**
+     * Job nền kiểm tra định kỳ (fixedDelay nên không bao giờ có 2 lần rebuild chạy song song).
+     */
+    @Scheduled(fixedDelayString = "${storefront.home.refresh-check-ms:2000}")
+    public void refreshIfNeeded() {
+        Snapshot snapshot = current.get();
+        boolean expired = snapshot == null || System.currentTimeMillis() - snapshot.builtAt() >= maxStaleMs;
+        if (dirty.getAndSet(false) || expired) {
+            rebuild();
+        }
+    }
+
+    @TransactionalEventListener(phase = TransactionPhase.AFTER_COMMIT, fallbackExecution = true)
+    public void onProductChanged(ProductChangedEvent event) {
+        dirty.set(true);
+    }
+
+    @TransactionalEventListener(phase = TransactionPhase.AFTER_COMMIT, fallbackExecution = true)
+    public void onCategoryChanged(CategoryChangedEvent event) {
+        dirty.set(true);
+    }
+
+    @TransactionalEventListener(phase = TransactionPhase.AFTER_COMMIT, fallbackExecution = true)
+    public void onStockChanged(StockChangedEvent event) {
+        dirty.set(true);
+    }
+
+    private synchronized HomePageDataDTO coldBuild() {
+        Snapshot snapshot = current.get();
+        if (snapshot != null) {
+            return snapshot.data();
+        }
+        return rebuild();
+    }
+
+    private HomePageDataDTO rebuild() {
+        try {
+            HomePageDataDTO data = storefrontService.buildHomePageData();
+            current.set(new Snapshot(data, System.currentTimeMillis()));
+            return data;
+        } catch (RuntimeException e) {
+            // Giữ snapshot cũ, lần kiểm tra sau sẽ thử lại
+            dirty.set(true);
+            log.error("Không thể dựng lại dữ liệu trang chủ", e);
+            Snapshot snapshot = current.get();
+            if (snapshot == null) {
+                throw e;
+            }
+            return snapshot.data();
+        }
+    }
+}
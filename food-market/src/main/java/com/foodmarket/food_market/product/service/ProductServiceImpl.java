@@ -2,11 +2,16 @@ package com.foodmarket.food_market.product.service;
 
 import com.foodmarket.food_market.category.model.Category;
 import com.foodmarket.food_market.category.repository.CategoryRepository;
+import com.foodmarket.food_market.category.service.CategorySnapshotCache;
 import com.foodmarket.food_market.inventory.dto.ProductStockInfoDTO;
 import com.foodmarket.food_market.inventory.service.InventoryService;
+import com.foodmarket.food_market.inventory.service.ProductStockSummaryService;
 import com.foodmarket.food_market.product.dto.AdminProductResponseDTO;
+import com.foodmarket.food_market.product.dto.ProductImageDTO;
 import com.foodmarket.food_market.product.dto.ProductResponseDTO;
 import com.foodmarket.food_market.product.dto.ProductSaveRequestDTO;
+import com.foodmarket.food_market.product.dto.projection.ProductThumbnailRow;
+import com.foodmarket.food_market.product.event.ProductChangedEvent;
 import com.foodmarket.food_market.product.model.Product;
 import com.foodmarket.food_market.product.model.ProductImage;
 import com.foodmarket.food_market.product.model.Tag;
@@ -16,6 +21,7 @@ import com.foodmarket.food_market.shared.service.UploadResult;
 import com.github.slugify.Slugify;
 import jakarta.persistence.EntityNotFoundException;
 import lombok.RequiredArgsConstructor;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Pageable;
@@ -39,8 +45,14 @@ public class ProductServiceImpl implements ProductService {
     private final TagRepository tagRepository;
     private final InventoryService inventoryService;
     private final ImageService imageService;
+    private final ApplicationEventPublisher eventPublisher;
+    private final SearchHintIndex searchHintIndex;
+    private final CategorySnapshotCache categorySnapshotCache;
+    private final ProductStockSummaryService productStockSummaryService;
     private final Slugify slugify = Slugify.builder().transliterator(true).build();
 
+    private static final ProductStockInfoDTO EMPTY_STOCK_INFO = new ProductStockInfoDTO(0, null);
+
     @Override
     @Transactional(readOnly = true)
     public Page<ProductResponseDTO> getProducts(String searchTerm, String categorySlug, String sortParam, Pageable pageable, Boolean isOnSale) {
@@ -48,32 +60,39 @@ public class ProductServiceImpl implements ProductService {
         List<Long> categoryIds = null;
 
         if (categorySlug != null && !categorySlug.isEmpty()) {
-            Category category = categoryRepository.findBySlug(categorySlug)
+            // Danh mục + mọi danh mục con cháu, tra từ cache trong bộ nhớ
+            categoryIds = categorySnapshotCache.findSelfAndDescendantIds(categorySlug)
                     .orElseThrow(() -> new EntityNotFoundException("Category not found"));
-
-            if (category.getParent() == null) {
-                List<Category> children = categoryRepository.getCategoriesByParentId(category.getId());
-                categoryIds = children.stream().map(Category::getId).collect(Collectors.toList());
-            } else {
-                categoryIds = List.of(category.getId());
-            }
         }
 
         Sort sort = resolveSort(sortParam);
         Pageable sortedPageable = PageRequest.of(pageable.getPageNumber(), pageable.getPageSize(), sort);
 
-        Specification<Product> spec = ProductSpecification.filterBy(searchTerm, categoryIds,  false, false, null, isOnSale);
+        Specification<Product> spec = ProductSpecification.filterBy(searchTerm, findSearchCategoryIds(searchTerm), categoryIds,  false, false, null, isOnSale);
+        if (sort.isUnsorted()) {
+            // Tìm kiếm không chọn sắp xếp: kết quả giống từ khoá nhất lên đầu
+            spec = spec.and(ProductSpecification.orderByRelevance(searchTerm));
+        }
 
         Page<Product> productPage = productRepository.findAll(spec, sortedPageable);
 
-        return productPage.map(product -> {
-            int stockQuantity = inventoryService.getStockAvailability(product.getId());
-            return ProductResponseDTO.fromEntity(product, stockQuantity);
-        });
+        // Lấy tồn kho cho cả trang bằng 1 truy vấn thay vì mỗi sản phẩm 1 truy vấn
+        List<Long> productIds = productPage.getContent().stream().map(Product::getId).toList();
+        Map<Long, Integer> stockByProductId = inventoryService.getStockAvailability(productIds);
+        Map<Long, ProductImageDTO> thumbnailByProductId = findThumbnails(productIds);
+
+        return productPage.map(product -> ProductResponseDTO.fromEntity(
+                product,
+                stockByProductId.getOrDefault(product.getId(), 0),
+                thumbnailList(thumbnailByProductId.get(product.getId()))));
     }
 
     @Override
     public List<String> getSearchHints(String keyword) {
+        // Gợi ý lấy từ chỉ mục trong bộ nhớ; chỉ dùng DB khi chỉ mục chưa nạp xong lúc khởi động
+        if (searchHintIndex.isReady()) {
+            return searchHintIndex.suggest(keyword);
+        }
         return productRepository.searchKeywordSuggestions(keyword);
     }
 
@@ -104,24 +123,22 @@ public class ProductServiceImpl implements ProductService {
         } else if ("DELETED_ONLY".equalsIgnoreCase(deletedMode)) {
             onlySoftDeleted = true;
         }
-        List<Long> filterIds = null;
-        if (Boolean.TRUE.equals(isLowStock)) {
-            filterIds = productRepository.findProductIdsWithLowStock(10);
-
-            if (filterIds.isEmpty()) {
-                return Page.empty(pageable);
-            }
-        }
         List<Long> categoryIds = new ArrayList<>();
         if (categoryId != null) {
             categoryIds.add(categoryId);
         }
-        Specification<Product> spec = ProductSpecification.filterBy(searchTerm,categoryIds, includeSoftDeleted, onlySoftDeleted, filterIds, isOnSale);
+        Specification<Product> spec = ProductSpecification.filterBy(searchTerm, findSearchCategoryIds(searchTerm), categoryIds, includeSoftDeleted, onlySoftDeleted, isLowStock, isOnSale);
+        if (sort.isUnsorted()) {
+            spec = spec.and(ProductSpecification.orderByRelevance(searchTerm));
+        }
 
         Page<Product> productPage = productRepository.findAll(spec, sortedPageable);
 
+        List<Long> productIds = productPage.getContent().stream().map(Product::getId).toList();
+        Map<Long, ProductStockInfoDTO> stockInfoByProductId = inventoryService.getProductStockInfo(productIds);
+
         return productPage.map(product -> {
-            ProductStockInfoDTO stockInfo = inventoryService.getProductStockInfo(product.getId());
+            ProductStockInfoDTO stockInfo = stockInfoByProductId.getOrDefault(product.getId(), EMPTY_STOCK_INFO);
             return AdminProductResponseDTO.fromEntity(
                     product,
                     stockInfo.totalAvailableStock(),
@@ -132,8 +149,7 @@ public class ProductServiceImpl implements ProductService {
 
     @Override
     public long countLowStockProducts() {
-        List<Long> lowStockIds = productRepository.findProductIdsWithLowStock(10);
-        return lowStockIds.size();
+        return productStockSummaryService.countLowStockProducts();
     }
 
     @Override
@@ -164,6 +180,9 @@ public class ProductServiceImpl implements ProductService {
             productRepository.save(savedProduct);
         }
 
+        // Tạo sẵn dòng tồn kho tổng hợp (0, sắp hết hàng) cho bộ lọc low stock
+        productStockSummaryService.markChanged(savedProduct.getId());
+        eventPublisher.publishEvent(new ProductChangedEvent(savedProduct.getId()));
         return AdminProductResponseDTO.fromEntity(savedProduct, 0, null);
     }
 
@@ -199,6 +218,7 @@ public class ProductServiceImpl implements ProductService {
         }
 
         updatedProduct = productRepository.save(updatedProduct);
+        eventPublisher.publishEvent(new ProductChangedEvent(updatedProduct.getId()));
 
         ProductStockInfoDTO stockInfo = inventoryService.getProductStockInfo(updatedProduct.getId());
         return AdminProductResponseDTO.fromEntity(updatedProduct, stockInfo.totalAvailableStock(), stockInfo.soonestExpirationDate());
@@ -214,6 +234,7 @@ public class ProductServiceImpl implements ProductService {
             p.setDeleted(true);
             p.setDeletedAt(LocalDateTime.now());
             productRepository.save(p);
+            eventPublisher.publishEvent(new ProductChangedEvent(productId));
         }
     }
 
@@ -226,6 +247,7 @@ public class ProductServiceImpl implements ProductService {
             p.setDeleted(false);
             p.setDeletedAt(null);
             productRepository.save(p);
+            eventPublisher.publishEvent(new ProductChangedEvent(productId));
         }
     }
 
@@ -298,6 +320,25 @@ public class ProductServiceImpl implements ProductService {
                 .collect(Collectors.toSet());
     }
 
+    private List<Long> findSearchCategoryIds(String searchTerm) {
+        if (searchTerm == null || searchTerm.isBlank()) {
+            return List.of();
+        }
+        return categoryRepository.findIdsByNameContaining(searchTerm.trim());
+    }
+
+    private Map<Long, ProductImageDTO> findThumbnails(Collection<Long> productIds) {
+        if (productIds.isEmpty()) {
+            return Map.of();
+        }
+        return productRepository.findThumbnailsByProductIds(productIds).stream()
+                .collect(Collectors.toMap(ProductThumbnailRow::getProductId, ProductImageDTO::fromThumbnail));
+    }
+
+    private static List<ProductImageDTO> thumbnailList(ProductImageDTO thumbnail) {
+        return thumbnail != null ? List.of(thumbnail) : List.of();
+    }
+
     private Category findCategoryById(Long id) {
         return categoryRepository.findById(id)
                 .orElseThrow(() -> new EntityNotFoundException("Category not found ID: " + id));
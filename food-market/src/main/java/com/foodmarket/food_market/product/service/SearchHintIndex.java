@@ -0,0 +1,281 @@
+package com.foodmarket.food_market.product.service;
+
+import com.foodmarket.food_market.category.event.CategoryChangedEvent;
+import com.foodmarket.food_market.product.dto.projection.SearchHintRow;
+import com.foodmarket.food_market.product.event.ProductChangedEvent;
+import com.foodmarket.food_market.product.repository.ProductRepository;
+import com.ibm.icu.lang.UCharacter;
+import com.ibm.icu.lang.UCharacterCategory;
+import com.ibm.icu.text.Normalizer2;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionPhase;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Chỉ mục gợi ý tìm kiếm trong bộ nhớ cho /api/v1/products/search/hints.
+ * - Gồm tên sản phẩm, tên danh mục và tên tag; so khớp không dấu (ICU NFD + bỏ dấu, "đ" -> "d").
+ * - Tra cứu trên mảng hậu tố (bắt đầu tại mỗi từ) đã sắp xếp: khớp đầu tên lẫn giữa tên, không truy vấn DB.
+ * - Xếp hạng theo soldCount (danh mục / tag: tổng soldCount các sản phẩm thuộc về nó).
+ * - Sản phẩm thay đổi chỉ nạp lại đúng sản phẩm đó; job nền gom thay đổi rồi dựng lại mảng.
+ *   Định kỳ nạp lại toàn bộ để cập nhật soldCount, tên tag.
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class SearchHintIndex {
+
+    private static final Normalizer2 NFD = Normalizer2.getNFDInstance();
+
+    private final ProductRepository productRepository;
+
+    // productId -> dữ liệu của sản phẩm đang bán, chỉ sửa trong khối synchronized
+    private final Map<Long, ProductTerms> products = new HashMap<>();
+    private final Set<Long> changedProductIds = ConcurrentHashMap.newKeySet();
+    private final AtomicBoolean fullReloadRequested = new AtomicBoolean(false);
+
+    // null = chưa nạp xong lần đầu
+    private volatile Snapshot snapshot;
+
+    @Value("${search.hints.limit:5}")
+    private int limit;
+
+    private record ProductTerms(String name, int soldCount, String categoryName, Set<String> tagNames) {
+    }
+
+    /**
+     * terms: sắp theo thứ hạng (soldCount giảm dần).
+     * suffixes: hậu tố đã chuẩn hoá, sắp xếp tăng dần; suffixTerms[i] là chỉ số term của suffixes[i].
+     */
+    private record Snapshot(String[] terms, String[] suffixes, int[] suffixTerms) {
+    }
+
+    private record Suffix(String text, int term) {
+    }
+
+    private static final class TermStat {
+        private final String display;
+        private long weight;
+
+        private TermStat(String display) {
+            this.display = display;
+        }
+    }
+
+    public boolean isReady() {
+        return snapshot != null;
+    }
+
+    public List<String> suggest(String keyword) {
+        Snapshot current = snapshot;
+        String key = normalize(keyword);
+        if (current == null || key.isEmpty()) {
+            return List.of();
+        }
+
+        // Chỉ số term càng nhỏ thứ hạng càng cao -> giữ limit chỉ số nhỏ nhất bằng max-heap
+        PriorityQueue<Integer> best = new PriorityQueue<>(Comparator.reverseOrder());
+        String[] suffixes = current.suffixes();
+        for (int i = lowerBound(suffixes, key); i < suffixes.length && suffixes[i].startsWith(key); i++) {
+            int term = current.suffixTerms()[i];
+            if (best.contains(term)) {
+                continue;
+            }
+            if (best.size() < limit) {
+                best.add(term);
+            } else if (term < best.peek()) {
+                best.poll();
+                best.add(term);
+            }
+        }
+
+        return best.stream()
+                .sorted()
+                .map(term -> current.terms()[term])
+                .toList();
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void loadOnStartup() {
+        try {
+            reloadAll();
+        } catch (RuntimeException e) {
+            // Job định kỳ sẽ thử lại, trong lúc chờ ProductService dùng truy vấn DB
+            log.error("Không thể nạp chỉ mục gợi ý tìm kiếm", e);
+        }
+    }
+
+    @TransactionalEventListener(phase = TransactionPhase.AFTER_COMMIT, fallbackExecution = true)
+    public void onProductChanged(ProductChangedEvent event) {
+        changedProductIds.add(event.getProductId());
+    }
+
+    @TransactionalEventListener(phase = TransactionPhase.AFTER_COMMIT, fallbackExecution = true)
+    public void onCategoryChanged(CategoryChangedEvent event) {
+        // Đổi tên danh mục ảnh hưởng nhiều sản phẩm -> nạp lại toàn bộ
+        fullReloadRequested.set(true);
+    }
+
+    @Scheduled(fixedDelayString = "${search.hints.full-reload-ms:600000}",
+            initialDelayString = "${search.hints.full-reload-ms:600000}")
+    public void requestFullReload() {
+        fullReloadRequested.set(true);
+    }
+
+    /**
+     * Job nền áp dụng các thay đổi đang chờ (fixedDelay nên không chạy chồng lên nhau).
+     */
+    @Scheduled(fixedDelayString = "${search.hints.refresh-check-ms:1000}")
+    public void applyPendingChanges() {
+        if (snapshot == null || fullReloadRequested.getAndSet(false)) {
+            try {
+                reloadAll();
+            } catch (RuntimeException e) {
+                fullReloadRequested.set(true);
+                log.error("Không thể nạp lại chỉ mục gợi ý tìm kiếm", e);
+            }
+            return;
+        }
+        if (changedProductIds.isEmpty()) {
+            return;
+        }
+
+        List<Long> ids = new ArrayList<>(changedProductIds);
+        changedProductIds.removeAll(ids);
+        try {
+            Map<Long, ProductTerms> reloaded = group(productRepository.findSearchHintRowsByProductIds(ids));
+            synchronized (this) {
+                // Sản phẩm bị xoá mềm không còn trong kết quả -> bị loại khỏi chỉ mục
+                ids.forEach(products::remove);
+                products.putAll(reloaded);
+                snapshot = buildSnapshot();
+            }
+        } catch (RuntimeException e) {
+            changedProductIds.addAll(ids);
+            log.error("Không thể cập nhật chỉ mục gợi ý tìm kiếm", e);
+        }
+    }
+
+    private void reloadAll() {
+        // Xoá trước khi truy vấn: thay đổi đến sau thời điểm này sẽ được áp dụng lại ở lần chạy sau
+        changedProductIds.clear();
+        Map<Long, ProductTerms> reloaded = group(productRepository.findSearchHintRows());
+        synchronized (this) {
+            products.clear();
+            products.putAll(reloaded);
+            snapshot = buildSnapshot();
+        }
+        log.info("Đã nạp chỉ mục gợi ý tìm kiếm: {} sản phẩm, {} từ khoá", reloaded.size(), snapshot.terms().length);
+    }
+
+    private static Map<Long, ProductTerms> group(List<SearchHintRow> rows) {
+        Map<Long, ProductTerms> result = new HashMap<>();
+        for (SearchHintRow row : rows) {
+            ProductTerms terms = result.computeIfAbsent(row.getProductId(), id -> new ProductTerms(
+                    row.getProductName(),
+                    row.getSoldCount() == null ? 0 : row.getSoldCount(),
+                    row.getCategoryName(),
+                    new HashSet<>()));
+            if (row.getTagName() != null) {
+                terms.tagNames().add(row.getTagName());
+            }
+        }
+        return result;
+    }
+
+    private Snapshot buildSnapshot() {
+        // Gộp các từ khoá trùng nhau sau chuẩn hoá, trọng số = tổng soldCount
+        Map<String, TermStat> stats = new HashMap<>();
+        for (ProductTerms product : products.values()) {
+            addTerm(stats, product.name(), product.soldCount());
+            addTerm(stats, product.categoryName(), product.soldCount());
+            product.tagNames().forEach(tag -> addTerm(stats, tag, product.soldCount()));
+        }
+
+        List<Map.Entry<String, TermStat>> ranked = new ArrayList<>(stats.entrySet());
+        ranked.sort(Comparator.<Map.Entry<String, TermStat>>comparingLong(e -> e.getValue().weight).reversed()
+                .thenComparing(Map.Entry::getKey));
+
+        String[] terms = new String[ranked.size()];
+        List<Suffix> suffixes = new ArrayList<>();
+        for (int i = 0; i < ranked.size(); i++) {
+            terms[i] = ranked.get(i).getValue().display;
+            String normalized = ranked.get(i).getKey();
+            for (int p = 0; p < normalized.length(); p++) {
+                boolean wordStart = p == 0 || !Character.isLetterOrDigit(normalized.charAt(p - 1));
+                if (wordStart && Character.isLetterOrDigit(normalized.charAt(p))) {
+                    suffixes.add(new Suffix(normalized.substring(p), i));
+                }
+            }
+        }
+        suffixes.sort(Comparator.comparing(Suffix::text));
+
+        String[] suffixTexts = new String[suffixes.size()];
+        int[] suffixTerms = new int[suffixes.size()];
+        for (int i = 0; i < suffixes.size(); i++) {
+            suffixTexts[i] = suffixes.get(i).text();
+            suffixTerms[i] = suffixes.get(i).term();
+        }
+        return new Snapshot(terms, suffixTexts, suffixTerms);
+    }
+
+    private static void addTerm(Map<String, TermStat> stats, String display, int weight) {
+        String normalized = normalize(display);
+        if (normalized.isEmpty()) {
+            return;
+        }
+        stats.computeIfAbsent(normalized, key -> new TermStat(display.trim())).weight += weight;
+    }
+
+    private static int lowerBound(String[] sorted, String key) {
+        int low = 0;
+        int high = sorted.length;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (sorted[mid].compareTo(key) < 0) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return low;
+    }
+
+    /**
+     * Chữ thường, bỏ dấu tiếng Việt, gộp khoảng trắng: "  Cà  Chua Đà Lạt " -> "ca chua da lat".
+     */
+    static String normalize(String text) {
+        if (text == null) {
+            return "";
+        }
+        String decomposed = NFD.normalize(text.toLowerCase(Locale.ROOT));
+        StringBuilder sb = new StringBuilder(decomposed.length());
+        boolean pendingSpace = false;
+        for (int i = 0; i < decomposed.length(); ) {
+            int cp = decomposed.codePointAt(i);
+            i += Character.charCount(cp);
+            if (UCharacter.getType(cp) == UCharacterCategory.NON_SPACING_MARK) {
+                continue;
+            }
+            if (UCharacter.isUWhiteSpace(cp)) {
+                pendingSpace = !sb.isEmpty();
+                continue;
+            }
+            if (pendingSpace) {
+                sb.append(' ');
+                pendingSpace = false;
+            }
+            sb.appendCodePoint(cp == 'đ' ? 'd' : cp);
+        }
+        return sb.toString();
+    }
+}
@@ -4,10 +4,12 @@ package com.foodmarket.food_market.product.service;
 
 import com.foodmarket.food_market.category.model.Category;
 import com.foodmarket.food_market.category.repository.CategoryRepository;
-import com.foodmarket.food_market.inventory.repository.InventoryBatchRepository;
+import com.foodmarket.food_market.inventory.service.InventoryService;
 import com.foodmarket.food_market.product.dto.HomePageDataDTO;
 import com.foodmarket.food_market.product.dto.HomeSectionDTO;
+import com.foodmarket.food_market.product.dto.ProductImageDTO;
 import com.foodmarket.food_market.product.dto.ProductResponseDTO;
+import com.foodmarket.food_market.product.dto.projection.ProductThumbnailRow;
 import com.foodmarket.food_market.product.model.Product;
 import com.foodmarket.food_market.product.repository.ProductRepository;
 import lombok.RequiredArgsConstructor;
@@ -17,7 +19,11 @@ import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
 import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
 import java.util.stream.Collectors;
 
 @Service
@@ -26,39 +32,62 @@ public class StorefrontService {
 
     private final ProductRepository productRepository;
     private final CategoryRepository categoryRepository;
-    private  final InventoryBatchRepository  inventoryBatchRepository;
+    private final InventoryService inventoryService;
+
+    /**
+     * Dựng dữ liệu trang chủ trực tiếp từ DB.
+     * Không gọi hàm này từ controller, hãy đọc qua {@link HomePageSnapshotCache}.
+     */
     @Transactional(readOnly = true)
-    public HomePageDataDTO getHomePageData() {
+    public HomePageDataDTO buildHomePageData() {
         Pageable saleLimit = PageRequest.of(0, 10);
         List<Product> saleProducts = productRepository.findOnSaleProducts(saleLimit);
-        List<ProductResponseDTO> saleDTOs = saleProducts.stream()
-                .map(product -> {
-                    int stock = inventoryBatchRepository.findCurrentProductQuantity(product.getId());
-                    return ProductResponseDTO.fromEntity(product, stock);
-                })
-                .collect(Collectors.toList());
 
-        List<HomeSectionDTO> sections = new ArrayList<>();
-        List<Category> rootCategories = categoryRepository.findByParentIdIsNull();
         Pageable sectionLimit = PageRequest.of(0, 10);
-
-        for (Category rootCat : rootCategories) {
+        Map<Category, List<Product>> productsByRoot = new LinkedHashMap<>();
+        for (Category rootCat : categoryRepository.findByParentIdIsNull()) {
             List<Product> products = productRepository.findTopProductsByRootCategoryId(rootCat.getId(), sectionLimit);
             if (!products.isEmpty()) {
-                sections.add(HomeSectionDTO.builder()
-                        .categoryId(rootCat.getId())
-                        .categoryName(rootCat.getName())
-                        .categorySlug(rootCat.getSlug())
-                        .products(products.stream().map(product -> {
-                            int stock = inventoryBatchRepository.findCurrentProductQuantity(product.getId());
-                            return ProductResponseDTO.fromEntity(product, stock);
-                        }).collect(Collectors.toList()))
-                        .build());
+                productsByRoot.put(rootCat, products);
             }
         }
+
+        // Gom id của mọi sản phẩm trên trang để lấy tồn kho bằng 1 truy vấn
+        Set<Long> productIds = new HashSet<>();
+        saleProducts.forEach(p -> productIds.add(p.getId()));
+        productsByRoot.values().forEach(list -> list.forEach(p -> productIds.add(p.getId())));
+        Map<Long, Integer> stockByProductId = inventoryService.getStockAvailability(productIds);
+        // Trang chủ chỉ hiển thị ảnh đầu tiên: lấy bằng 1 truy vấn thay vì nạp toàn bộ ảnh của từng sản phẩm
+        Map<Long, ProductImageDTO> thumbnailByProductId = productIds.isEmpty()
+                ? Map.of()
+                : productRepository.findThumbnailsByProductIds(productIds).stream()
+                        .collect(Collectors.toMap(ProductThumbnailRow::getProductId, ProductImageDTO::fromThumbnail));
+
+        List<HomeSectionDTO> sections = new ArrayList<>();
+        productsByRoot.forEach((rootCat, products) -> sections.add(HomeSectionDTO.builder()
+                .categoryId(rootCat.getId())
+                .categoryName(rootCat.getName())
+                .categorySlug(rootCat.getSlug())
+                .products(toDTOs(products, stockByProductId, thumbnailByProductId))
+                .build()));
+
         return HomePageDataDTO.builder()
-                .flashSaleProducts(saleDTOs)
-                .categorySections(sections)
+                .flashSaleProducts(toDTOs(saleProducts, stockByProductId, thumbnailByProductId))
+                .categorySections(List.copyOf(sections))
                 .build();
     }
-}
\ No newline at end of file
+
+    private List<ProductResponseDTO> toDTOs(List<Product> products,
+                                            Map<Long, Integer> stockByProductId,
+                                            Map<Long, ProductImageDTO> thumbnailByProductId) {
+        return products.stream()
+                .map(product -> {
+                    ProductImageDTO thumbnail = thumbnailByProductId.get(product.getId());
+                    return ProductResponseDTO.fromEntity(
+                            product,
+                            stockByProductId.getOrDefault(product.getId(), 0),
+                            thumbnail != null ? List.of(thumbnail) : List.of());
+                })
+                .toList();
+    }
+}
@@ -0,0 +1,8 @@
+package com.foodmarket.food_market.review.dto.projection;
+
+import java.util.UUID;
+
+public interface ReviewedProductView {
+    UUID getOrderId();
+    Long getProductId();
+}
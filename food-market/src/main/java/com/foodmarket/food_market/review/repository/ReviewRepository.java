@@ -1,5 +1,6 @@
 package com.foodmarket.food_market.review.repository;
 
+import com.foodmarket.food_market.review.dto.projection.ReviewedProductView;
 import com.foodmarket.food_market.review.model.Review;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
@@ -8,8 +9,13 @@ import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import java.util.Collection;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
 import java.util.UUID;
+import java.util.stream.Collectors;
 
 @Repository
 public interface ReviewRepository extends JpaRepository<Review, Long> {
@@ -17,5 +23,20 @@ public interface ReviewRepository extends JpaRepository<Review, Long> {
     boolean existsByUserIdAndOrderIdAndProductId(UUID userId, UUID orderId, Long productId);
     @Query("SELECT r.product.id FROM Review r WHERE r.orderId = :orderId")
     List<Long> findReviewedProductIdsByOrderId(@Param("orderId") UUID orderId);
+
+    @Query("SELECT r.orderId AS orderId, r.product.id AS productId FROM Review r WHERE r.orderId IN :orderIds")
+    List<ReviewedProductView> findReviewedProductsByOrderIds(@Param("orderIds") Collection<UUID> orderIds);
+
+    // Bản nhiều đơn của findReviewedProductIdsByOrderId: orderId -> các productId đã review (1 truy vấn)
+    default Map<UUID, Set<Long>> findReviewedProductIdsByOrderIds(Collection<UUID> orderIds) {
+        if (orderIds.isEmpty()) {
+            return Map.of();
+        }
+        return findReviewedProductsByOrderIds(orderIds).stream()
+                .collect(Collectors.groupingBy(
+                        ReviewedProductView::getOrderId,
+                        Collectors.mapping(ReviewedProductView::getProductId, Collectors.toCollection(HashSet::new))
+                ));
+    }
     Page<Review> findByProductId(Long productId, Pageable pageable);
 }
\ No newline at end of file
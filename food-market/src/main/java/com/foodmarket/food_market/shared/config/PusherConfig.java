@@ -2,10 +2,12 @@ package com.foodmarket.food_market.shared.config;
 
 import com.pusher.rest.Pusher;
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 
 @Configuration
+@ConditionalOnProperty(name = "realtime.provider", havingValue = "pusher", matchIfMissing = true)
 public class PusherConfig {
 
     @Value("${pusher.app-id}")
@@ -0,0 +1,23 @@
+package com.foodmarket.food_market.shared.config;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.task.ThreadPoolTaskSchedulerCustomizer;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+/**
+ * Mặc định Spring chỉ có 1 luồng cho mọi @Scheduled: các job ngắn, chạy dày (ghi sổ kho, gửi mail outbox,
+ * quét hết hạn đơn...) sẽ phải chờ job dài (đối soát tồn kho, dựng lại rollup, nạp lại chỉ mục gợi ý).
+ * Áp kích thước pool ngay cả khi file cấu hình không khai báo spring.task.scheduling.pool.size.
+ */
+@Configuration
+public class SchedulingConfig {
+
+    @Value("${spring.task.scheduling.pool.size:8}")
+    private int poolSize;
+
+    @Bean
+    public ThreadPoolTaskSchedulerCustomizer schedulerPoolSizeCustomizer() {
+        return scheduler -> scheduler.setPoolSize(poolSize);
+    }
+}
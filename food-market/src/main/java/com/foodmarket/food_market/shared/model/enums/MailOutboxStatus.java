@@ -0,0 +1,8 @@
+package com.foodmarket.food_market.shared.model.enums;
+
+public enum MailOutboxStatus {
+    PENDING,  // Chờ gửi (hoặc chờ thử lại)
+    SENDING,  // Đã được worker nhận, đang gửi
+    SENT,
+    FAILED    // Hết số lần thử
+}
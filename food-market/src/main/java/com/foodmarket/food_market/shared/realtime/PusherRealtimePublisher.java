@@ -0,0 +1,42 @@
+package com.foodmarket.food_market.shared.realtime;
+
+import com.pusher.rest.Pusher;
+import com.pusher.rest.data.Event;
+import com.pusher.rest.data.Result;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import java.util.List;
+
+/**
+ * Gửi sự kiện qua Pusher, mỗi lần gọi batch trigger API tối đa 10 sự kiện.
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+@ConditionalOnProperty(name = "realtime.provider", havingValue = "pusher", matchIfMissing = true)
+public class PusherRealtimePublisher extends QueuedRealtimePublisher {
+
+    // Giới hạn của Pusher batch trigger API
+    private static final int MAX_BATCH_SIZE = 10;
+
+    private final Pusher pusher;
+
+    @Override
+    protected int maxBatchSize() {
+        return MAX_BATCH_SIZE;
+    }
+
+    @Override
+    protected void deliver(List<RealtimeEvent> batch) {
+        List<Event> events = batch.stream()
+                .map(event -> new Event(event.channel(), event.eventName(), event.payload()))
+                .toList();
+        Result result = pusher.trigger(events);
+        if (result.getStatus() != Result.Status.SUCCESS) {
+            log.error("Pusher trả về lỗi {} khi gửi {} sự kiện: {}", result.getHttpStatus(), events.size(), result.getMessage());
+        }
+    }
+}
@@ -0,0 +1,129 @@
+package com.foodmarket.food_market.shared.realtime;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Supplier;
+
+/**
+ * Phần chung của các RealtimePublisher: gửi bất đồng bộ, không để I/O nằm trên luồng request / trong transaction.
+ * - Trong transaction: chỉ đưa vào hàng đợi sau khi commit (rollback thì không bắn).
+ * - Hàng đợi có giới hạn; đầy thì bỏ sự kiện (realtime chỉ là best-effort, client vẫn tải lại qua API).
+ * - 1 luồng gửi duy nhất để giữ thứ tự sự kiện, mỗi lần deliver tối đa maxBatchSize() sự kiện.
+ * - Sự kiện có coalesceKey: nhiều lần publish liên tiếp chỉ gửi bản mới nhất, payload được tính lúc gửi.
+ */
+@Slf4j
+public abstract class QueuedRealtimePublisher implements RealtimePublisher {
+
+    @Value("${realtime.queue-capacity:10000}")
+    private int queueCapacity;
+
+    private BlockingQueue<PendingEvent> queue;
+    // coalesceKey -> sự kiện mới nhất chưa gửi; trong queue chỉ có 1 "chỗ" cho mỗi key
+    private final Map<String, PendingEvent> latestByKey = new ConcurrentHashMap<>();
+    private Thread worker;
+    private volatile boolean running = true;
+
+    private record PendingEvent(String channel, String eventName, Supplier<Object> payload, String coalesceKey) {
+    }
+
+    protected abstract int maxBatchSize();
+
+    protected abstract void deliver(List<RealtimeEvent> batch) throws Exception;
+
+    @PostConstruct
+    void start() {
+        queue = new ArrayBlockingQueue<>(queueCapacity);
+        worker = Thread.ofPlatform().name("realtime-publisher").daemon(true).start(this::runLoop);
+    }
+
+    @PreDestroy
+    void stop() {
+        running = false;
+        worker.interrupt();
+    }
+
+    @Override
+    public void publish(String channel, String eventName, Object payload) {
+        afterCommit(() -> enqueue(new PendingEvent(channel, eventName, () -> payload, null)));
+    }
+
+    @Override
+    public void publishCoalesced(String channel, String eventName, String coalesceKey, Supplier<Object> payloadSupplier) {
+        afterCommit(() -> {
+            PendingEvent event = new PendingEvent(channel, eventName, payloadSupplier, coalesceKey);
+            if (latestByKey.put(coalesceKey, event) == null) {
+                enqueue(event);
+            }
+        });
+    }
+
+    private void afterCommit(Runnable action) {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    action.run();
+                }
+            });
+        } else {
+            action.run();
+        }
+    }
+
+    private void enqueue(PendingEvent event) {
+        if (!queue.offer(event)) {
+            if (event.coalesceKey() != null) {
+                latestByKey.remove(event.coalesceKey());
+            }
+            log.warn("Hàng đợi realtime đầy, bỏ sự kiện {} trên kênh {}", event.eventName(), event.channel());
+        }
+    }
+
+    private void runLoop() {
+        List<PendingEvent> drained = new ArrayList<>(maxBatchSize());
+        while (running) {
+            try {
+                drained.add(queue.take());
+                queue.drainTo(drained, maxBatchSize() - 1);
+                send(drained);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            } catch (Exception e) {
+                log.error("Realtime publish error: ", e);
+            } finally {
+                drained.clear();
+            }
+        }
+    }
+
+    private void send(List<PendingEvent> drained) throws Exception {
+        List<RealtimeEvent> batch = new ArrayList<>(drained.size());
+        for (PendingEvent pending : drained) {
+            // Sự kiện gộp: lấy bản mới nhất tại thời điểm gửi
+            PendingEvent event = pending.coalesceKey() != null ? latestByKey.remove(pending.coalesceKey()) : pending;
+            if (event == null) {
+                continue;
+            }
+            try {
+                batch.add(new RealtimeEvent(event.channel(), event.eventName(), event.payload().get()));
+            } catch (Exception e) {
+                log.error("Không thể tạo payload cho sự kiện {} trên kênh {}", event.eventName(), event.channel(), e);
+            }
+        }
+        if (!batch.isEmpty()) {
+            deliver(batch);
+        }
+    }
+}
@@ -0,0 +1,72 @@
+package com.foodmarket.food_market.shared.realtime;
+
+import com.foodmarket.food_market.auth.security.JwtService;
+import com.foodmarket.food_market.user.model.entity.User;
+import com.foodmarket.food_market.user.model.enums.Role;
+import io.jsonwebtoken.Claims;
+import lombok.RequiredArgsConstructor;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.security.access.prepost.PreAuthorize;
+import org.springframework.security.core.Authentication;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestHeader;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.util.Date;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Endpoint SSE thay cho Pusher khi realtime.provider=sse.
+ * Cần gửi header Authorization nên client dùng fetch-event-source (EventSource gốc không gửi được header).
+ * Kết nối bị đóng khi access token hết hạn, client kết nối lại bằng token mới và được kiểm tra quyền lại.
+ */
+@RestController
+@RequestMapping("/api/v1/realtime")
+@RequiredArgsConstructor
+@ConditionalOnProperty(name = "realtime.provider", havingValue = "sse")
+public class RealtimeController {
+
+    private static final String CHANNEL_ADMIN_FEED = "admin-chat-feed";
+
+    private final SseChannelHub hub;
+    private final JwtService jwtService;
+
+    @GetMapping(value = "/stream", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    @PreAuthorize("isAuthenticated()")
+    public ResponseEntity<SseEmitter> stream(Authentication authentication,
+                                             @RequestHeader(HttpHeaders.AUTHORIZATION) String authorization,
+                                             @RequestParam List<String> channels) {
+        User user = (User) authentication.getPrincipal();
+        Set<String> allowed = new LinkedHashSet<>();
+        for (String channel : channels) {
+            if (!canSubscribe(user, channel)) {
+                return ResponseEntity.status(403).build();
+            }
+            allowed.add(channel);
+        }
+        // Header đã được JwtAuthenticationFilter xác thực; claims lấy lại từ cache token đã verify
+        Date expiration = jwtService.extractClaim(authorization.substring("Bearer ".length()), Claims::getExpiration);
+        long remainingMs = expiration.getTime() - System.currentTimeMillis();
+        if (remainingMs <= 0) {
+            return ResponseEntity.status(401).build();
+        }
+        return ResponseEntity.ok(hub.subscribe(allowed, remainingMs));
+    }
+
+    // Khách chỉ nghe kênh của chính mình; nhân viên / admin nghe thêm kênh chat và feed hội thoại
+    private boolean canSubscribe(User user, String channel) {
+        if (channel.equals("user-" + user.getUserId())) {
+            return true;
+        }
+        boolean staff = user.getRole() == Role.ADMIN || user.getRole() == Role.STAFF;
+        return staff && (channel.equals(CHANNEL_ADMIN_FEED) || channel.startsWith("chat-"));
+    }
+}
@@ -0,0 +1,4 @@
+package com.foodmarket.food_market.shared.realtime;
+
+public record RealtimeEvent(String channel, String eventName, Object payload) {
+}
@@ -0,0 +1,19 @@
+package com.foodmarket.food_market.shared.realtime;
+
+import java.util.function.Supplier;
+
+/**
+ * Kênh đẩy sự kiện realtime tới client (chat, thông báo).
+ * Triển khai chọn bằng realtime.provider: pusher (mặc định) hoặc sse (chạy trong ứng dụng).
+ * Gọi trong transaction thì sự kiện chỉ được gửi sau khi commit.
+ */
+public interface RealtimePublisher {
+
+    void publish(String channel, String eventName, Object payload);
+
+    /**
+     * Chỉ gửi sự kiện mới nhất của mỗi coalesceKey; payloadSupplier chạy trên luồng gửi duy nhất (sau commit)
+     * nên phải rẻ và không làm I/O (truy vấn DB...), nếu không sẽ làm chậm mọi sự kiện khác.
+     */
+    void publishCoalesced(String channel, String eventName, String coalesceKey, Supplier<Object> payloadSupplier);
+}
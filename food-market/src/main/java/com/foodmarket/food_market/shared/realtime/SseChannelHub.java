@@ -0,0 +1,130 @@
+package com.foodmarket.food_market.shared.realtime;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.http.MediaType;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Quản lý các kết nối SSE của node hiện tại theo kênh (user-{id}, chat-{id}, admin-chat-feed).
+ * Mỗi kết nối có hàng đợi riêng và 1 virtual thread ghi ra socket: client chậm không chặn client khác,
+ * hàng đợi đầy thì đóng kết nối (client tự kết nối lại và tải lại dữ liệu qua API).
+ * Kết nối không sống quá thời hạn còn lại của access token: quyền nghe kênh được kiểm tra lại khi client kết nối lại
+ * bằng token mới (vd. nhân viên bị hạ quyền không còn nhận admin-chat-feed).
+ */
+@Slf4j
+@Component
+@ConditionalOnProperty(name = "realtime.provider", havingValue = "sse")
+public class SseChannelHub {
+
+    private static final Message HEARTBEAT = new Message(null, null);
+
+    @Value("${realtime.sse.timeout-ms:1800000}")
+    private long timeoutMs;
+
+    @Value("${realtime.sse.subscriber-buffer:256}")
+    private int subscriberBuffer;
+
+    private final Map<String, Set<Subscriber>> subscribersByChannel = new ConcurrentHashMap<>();
+    private final Set<Subscriber> subscribers = ConcurrentHashMap.newKeySet();
+
+    // eventName == null: heartbeat (comment SSE để giữ kết nối qua proxy)
+    private record Message(String eventName, String json) {
+    }
+
+    private final class Subscriber {
+        private final SseEmitter emitter;
+        private final Set<String> channels;
+        private final BlockingQueue<Message> queue = new ArrayBlockingQueue<>(subscriberBuffer);
+        private volatile Thread thread;
+
+        private Subscriber(SseEmitter emitter, Set<String> channels) {
+            this.emitter = emitter;
+            this.channels = channels;
+        }
+
+        private void offer(Message message) {
+            if (!queue.offer(message)) {
+                log.warn("Kết nối SSE không theo kịp, đóng kết nối (kênh {})", channels);
+                close();
+                emitter.complete();
+            }
+        }
+
+        private void run() {
+            try {
+                while (!Thread.currentThread().isInterrupted()) {
+                    Message message = queue.take();
+                    if (message.eventName() == null) {
+                        emitter.send(SseEmitter.event().comment("ping"));
+                    } else {
+                        emitter.send(SseEmitter.event().name(message.eventName()).data(message.json(), MediaType.APPLICATION_JSON));
+                    }
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            } catch (Exception e) {
+                // Client đã ngắt kết nối
+                close();
+                emitter.completeWithError(e);
+            }
+        }
+
+        private void close() {
+            if (subscribers.remove(this)) {
+                channels.forEach(channel -> subscribersByChannel.computeIfPresent(channel, (key, set) -> {
+                    set.remove(this);
+                    return set.isEmpty() ? null : set;
+                }));
+                Thread current = thread;
+                if (current != null && current != Thread.currentThread()) {
+                    current.interrupt();
+                }
+            }
+        }
+    }
+
+    /**
+     * @param maxLifetimeMs thời hạn còn lại của access token, kết nối bị đóng sau min(realtime.sse.timeout-ms, giá trị này)
+     */
+    public SseEmitter subscribe(Set<String> channels, long maxLifetimeMs) {
+        SseEmitter emitter = new SseEmitter(Math.min(timeoutMs, maxLifetimeMs));
+        Subscriber subscriber = new Subscriber(emitter, channels);
+        emitter.onCompletion(subscriber::close);
+        emitter.onTimeout(subscriber::close);
+        emitter.onError(error -> subscriber.close());
+
+        subscribers.add(subscriber);
+        channels.forEach(channel -> subscribersByChannel
+                .computeIfAbsent(channel, key -> ConcurrentHashMap.newKeySet())
+                .add(subscriber));
+        subscriber.thread = Thread.ofVirtual().name("sse-subscriber").start(subscriber::run);
+        return emitter;
+    }
+
+    /**
+     * Đẩy sự kiện (payload đã là JSON) tới mọi kết nối đang nghe kênh trên node này.
+     */
+    public void dispatch(String channel, String eventName, String json) {
+        Set<Subscriber> channelSubscribers = subscribersByChannel.get(channel);
+        if (channelSubscribers == null) {
+            return;
+        }
+        Message message = new Message(eventName, json);
+        channelSubscribers.forEach(subscriber -> subscriber.offer(message));
+    }
+
+    @Scheduled(fixedDelayString = "${realtime.sse.heartbeat-ms:25000}")
+    public void heartbeat() {
+        subscribers.forEach(subscriber -> subscriber.offer(HEARTBEAT));
+    }
+}
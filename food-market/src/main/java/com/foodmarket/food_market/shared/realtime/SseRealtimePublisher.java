@@ -0,0 +1,177 @@
+package com.foodmarket.food_market.shared.realtime;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.postgresql.PGConnection;
+import org.postgresql.PGNotification;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.autoconfigure.jdbc.DataSourceProperties;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.nio.charset.StandardCharsets;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Realtime chạy trong ứng dụng: client nhận sự kiện qua SSE (/api/v1/realtime/stream).
+ * - realtime.sse.cluster-fanout=true: mỗi sự kiện được NOTIFY lên Postgres, mọi node (kể cả node gửi)
+ *   LISTEN và đẩy tới kết nối SSE của mình -> chạy được nhiều node sau load balancer.
+ * - false: chỉ đẩy tới kết nối trên node hiện tại (chạy 1 node / benchmark cục bộ).
+ * Sự kiện quá giới hạn payload của NOTIFY được lưu vào bảng realtime_events và chỉ NOTIFY id; node LISTEN đọc lại
+ * theo id trên chính kết nối LISTEN. Dòng cũ hơn realtime.sse.event-retention-ms được xoá định kỳ.
+ * Kết nối LISTEN là 1 connection riêng mở bằng DriverManager (cùng URL / tài khoản với datasource), không lấy từ pool
+ * Hikari để không chiếm vĩnh viễn 1 chỗ của pool; chạy trên virtual thread, mất kết nối thì tự mở lại.
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+@ConditionalOnProperty(name = "realtime.provider", havingValue = "sse")
+public class SseRealtimePublisher extends QueuedRealtimePublisher {
+
+    private static final String NOTIFY_CHANNEL = "realtime_events";
+    // Giới hạn payload của NOTIFY là 8000 byte
+    private static final int MAX_NOTIFY_BYTES = 7900;
+    private static final int MAX_BATCH_SIZE = 100;
+
+    private final SseChannelHub hub;
+    private final ObjectMapper objectMapper;
+    private final JdbcTemplate jdbcTemplate;
+    private final DataSourceProperties dataSourceProperties;
+
+    @Value("${realtime.sse.cluster-fanout:true}")
+    private boolean clusterFanout;
+
+    @Value("${realtime.sse.event-retention-ms:300000}")
+    private long eventRetentionMs;
+
+    private volatile boolean listening = true;
+    private Thread listener;
+
+    @PostConstruct
+    void startListener() {
+        if (clusterFanout) {
+            listener = Thread.ofVirtual().name("realtime-listen").start(this::listenLoop);
+        }
+    }
+
+    @PreDestroy
+    void stopListener() {
+        listening = false;
+        if (listener != null) {
+            listener.interrupt();
+        }
+    }
+
+    @Override
+    protected int maxBatchSize() {
+        return MAX_BATCH_SIZE;
+    }
+
+    @Override
+    protected void deliver(List<RealtimeEvent> batch) throws Exception {
+        for (RealtimeEvent event : batch) {
+            String data = objectMapper.writeValueAsString(event.payload());
+            if (!clusterFanout) {
+                hub.dispatch(event.channel(), event.eventName(), data);
+                continue;
+            }
+
+            String message = objectMapper.writeValueAsString(Map.of(
+                    "channel", event.channel(),
+                    "event", event.eventName(),
+                    "data", objectMapper.readTree(data)));
+            if (message.getBytes(StandardCharsets.UTF_8).length > MAX_NOTIFY_BYTES) {
+                // Quá giới hạn NOTIFY: lưu sự kiện và NOTIFY id trong cùng 1 câu lệnh (cùng commit)
+                jdbcTemplate.queryForList("WITH e AS (INSERT INTO realtime_events (channel, event_name, data) " +
+                                "VALUES (?, ?, ?) RETURNING id) " +
+                                "SELECT pg_notify(?, json_build_object('id', e.id)::text) FROM e",
+                        event.channel(), event.eventName(), data, NOTIFY_CHANNEL);
+                continue;
+            }
+            jdbcTemplate.queryForList("SELECT pg_notify(?, ?)", NOTIFY_CHANNEL, message);
+        }
+    }
+
+    private void listenLoop() {
+        while (listening) {
+            try (Connection connection = DriverManager.getConnection(dataSourceProperties.determineUrl(),
+                    dataSourceProperties.determineUsername(), dataSourceProperties.determinePassword())) {
+                connection.setAutoCommit(true);
+                try (Statement statement = connection.createStatement()) {
+                    statement.execute("LISTEN " + NOTIFY_CHANNEL);
+                }
+                PGConnection pgConnection = connection.unwrap(PGConnection.class);
+                log.info("Đang LISTEN kênh {} cho realtime SSE", NOTIFY_CHANNEL);
+                while (listening) {
+                    PGNotification[] notifications = pgConnection.getNotifications(5000);
+                    if (notifications == null) {
+                        continue;
+                    }
+                    for (PGNotification notification : notifications) {
+                        handleNotification(connection, notification.getParameter());
+                    }
+                }
+            } catch (SQLException e) {
+                if (!listening) {
+                    return;
+                }
+                log.error("Mất kết nối LISTEN realtime, thử lại sau 2 giây", e);
+                try {
+                    Thread.sleep(2000);
+                } catch (InterruptedException interrupted) {
+                    return;
+                }
+            }
+        }
+    }
+
+    private void handleNotification(Connection connection, String message) throws SQLException {
+        JsonNode node;
+        try {
+            node = objectMapper.readTree(message);
+        } catch (Exception e) {
+            log.error("Không đọc được sự kiện realtime từ NOTIFY: {}", message, e);
+            return;
+        }
+        if (node.has("id")) {
+            dispatchStored(connection, node.get("id").asLong());
+            return;
+        }
+        hub.dispatch(node.get("channel").asText(), node.get("event").asText(), node.get("data").toString());
+    }
+
+    private void dispatchStored(Connection connection, long id) throws SQLException {
+        try (PreparedStatement statement = connection.prepareStatement(
+                "SELECT channel, event_name, data FROM realtime_events WHERE id = ?")) {
+            statement.setLong(1, id);
+            try (ResultSet resultSet = statement.executeQuery()) {
+                if (resultSet.next()) {
+                    hub.dispatch(resultSet.getString("channel"), resultSet.getString("event_name"), resultSet.getString("data"));
+                } else {
+                    log.warn("Không tìm thấy sự kiện realtime {} (đã bị xoá?)", id);
+                }
+            }
+        }
+    }
+
+    @Scheduled(fixedDelayString = "${realtime.sse.event-cleanup-ms:60000}")
+    public void deleteOldEvents() {
+        if (clusterFanout) {
+            jdbcTemplate.update("DELETE FROM realtime_events WHERE created_at < NOW() - make_interval(secs => ?)",
+                    eventRetentionMs / 1000.0);
+        }
+    }
+}
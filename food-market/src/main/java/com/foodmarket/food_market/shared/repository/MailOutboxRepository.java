@@ -0,0 +1,57 @@
+package com.foodmarket.food_market.shared.repository;
+
+import com.foodmarket.food_market.shared.model.MailOutbox;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.OffsetDateTime;
+import java.util.Collection;
+import java.util.List;
+
+public interface MailOutboxRepository extends JpaRepository<MailOutbox, Long> {
+
+    /**
+     * Nhận 1 lô thư đến hạn gửi (kể cả thư SENDING mà worker trước bỏ dở quá thời gian giữ).
+     * SKIP LOCKED để nhiều worker / nhiều node không nhận trùng thư.
+     */
+    @Transactional
+    @Query(value = """
+                UPDATE mail_outbox
+                SET status = 'SENDING',
+                    attempts = attempts + 1,
+                    locked_until = now() + make_interval(secs => :leaseSeconds)
+                WHERE mail_id IN (SELECT mail_id
+                                  FROM mail_outbox
+                                  WHERE (status = 'PENDING' AND next_attempt_at <= now())
+                                     OR (status = 'SENDING' AND locked_until < now())
+                                  ORDER BY next_attempt_at
+                                  LIMIT :limit
+                                  FOR UPDATE SKIP LOCKED)
+                RETURNING *
+            """, nativeQuery = true)
+    List<MailOutbox> claimDueMails(@Param("limit") int limit, @Param("leaseSeconds") int leaseSeconds);
+
+    @Transactional
+    @Modifying
+    @Query(value = "UPDATE mail_outbox SET status = 'SENT', sent_at = now(), locked_until = NULL, last_error = NULL " +
+            "WHERE mail_id IN (:ids)", nativeQuery = true)
+    int markSent(@Param("ids") Collection<Long> ids);
+
+    @Transactional
+    @Modifying
+    @Query(value = "UPDATE mail_outbox SET status = 'PENDING', next_attempt_at = :nextAttemptAt, " +
+            "locked_until = NULL, last_error = :error WHERE mail_id = :id", nativeQuery = true)
+    int scheduleRetry(@Param("id") Long id, @Param("nextAttemptAt") OffsetDateTime nextAttemptAt, @Param("error") String error);
+
+    @Transactional
+    @Modifying
+    @Query(value = "UPDATE mail_outbox SET status = 'FAILED', locked_until = NULL, last_error = :error " +
+            "WHERE mail_id = :id", nativeQuery = true)
+    int markFailed(@Param("id") Long id, @Param("error") String error);
+
+    @Query(value = "SELECT count(*) FROM mail_outbox WHERE status IN ('PENDING', 'SENDING')", nativeQuery = true)
+    long countUnsent();
+}
@@ -1,30 +1,26 @@
 package com.foodmarket.food_market.shared.service;
 
+import com.foodmarket.food_market.shared.model.MailOutbox;
+import com.foodmarket.food_market.shared.repository.MailOutboxRepository;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
-import org.springframework.mail.SimpleMailMessage;
-import org.springframework.mail.javamail.JavaMailSender;
-import org.springframework.scheduling.annotation.Async; 
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
 
+/**
+ * Không gửi trực tiếp: email được ghi vào mail_outbox trong cùng transaction của nghiệp vụ
+ * (rollback thì không gửi), MailOutboxDispatcher sẽ gửi theo lô và thử lại khi lỗi.
+ */
 @Service
 @RequiredArgsConstructor
 @Slf4j 
 public class EmailService {
 
-    private final JavaMailSender mailSender;
+    private final MailOutboxRepository mailOutboxRepository;
 
-    @Async
+    @Transactional
     public void sendEmail(String to, String subject, String text) {
-        try {
-            SimpleMailMessage message = new SimpleMailMessage();
-            message.setTo(to);
-            message.setSubject(subject);
-            message.setText(text);
-            mailSender.send(message);
-            log.info("Đã gửi email thành công tới {}", to);
-        } catch (Exception e) {
-            log.error("Lỗi khi gửi email tới {}: {}", to, e.getMessage());
-        }
+        mailOutboxRepository.save(new MailOutbox(to, subject, text));
+        log.debug("Đã đưa email tới {} vào hàng đợi", to);
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,176 @@
+package com.foodmarket.food_market.shared.service;
+
+import com.foodmarket.food_market.shared.model.MailOutbox;
+import com.foodmarket.food_market.shared.repository.MailOutboxRepository;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.mail.MailException;
+import org.springframework.mail.MailSendException;
+import org.springframework.mail.SimpleMailMessage;
+import org.springframework.mail.javamail.JavaMailSender;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.time.OffsetDateTime;
+import java.util.*;
+import java.util.concurrent.Semaphore;
+
+/**
+ * Gửi email từ mail_outbox.
+ * - Pool worker riêng, giới hạn số luồng (mail.outbox.workers); chỉ nhận lô mới khi còn worker rảnh
+ *   nên đợt đăng ký / quên mật khẩu dồn dập chỉ làm hàng đợi dài ra, không tốn thêm thread.
+ * - Mỗi lô gửi qua 1 kết nối SMTP (JavaMailSender.send(...) nhiều thư).
+ * - Lỗi thì thử lại với backoff luỹ thừa, quá mail.outbox.max-attempts thì đánh dấu FAILED.
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class MailOutboxDispatcher {
+
+    private final MailOutboxRepository mailOutboxRepository;
+    private final JavaMailSender mailSender;
+    private final MeterRegistry meterRegistry;
+
+    @Value("${mail.outbox.workers:2}")
+    private int workers;
+
+    @Value("${mail.outbox.batch-size:20}")
+    private int batchSize;
+
+    @Value("${mail.outbox.lease-seconds:120}")
+    private int leaseSeconds;
+
+    @Value("${mail.outbox.max-attempts:8}")
+    private int maxAttempts;
+
+    @Value("${mail.outbox.retry-base-ms:30000}")
+    private long retryBaseMs;
+
+    @Value("${mail.outbox.retry-max-ms:3600000}")
+    private long retryMaxMs;
+
+    private ThreadPoolTaskExecutor executor;
+    private Semaphore freeWorkers;
+    private Counter sentCounter;
+    private Counter retryCounter;
+    private Counter failedCounter;
+
+    @PostConstruct
+    void init() {
+        // Không khai báo thành bean để không thay thế executor mặc định của @Async
+        executor = new ThreadPoolTaskExecutor();
+        executor.setCorePoolSize(workers);
+        executor.setMaxPoolSize(workers);
+        executor.setQueueCapacity(workers);
+        executor.setThreadNamePrefix("mail-outbox-");
+        executor.setWaitForTasksToCompleteOnShutdown(true);
+        executor.setAwaitTerminationSeconds(30);
+        executor.initialize();
+        freeWorkers = new Semaphore(workers);
+
+        sentCounter = meterRegistry.counter("mail.outbox.sent");
+        retryCounter = meterRegistry.counter("mail.outbox.retried");
+        failedCounter = meterRegistry.counter("mail.outbox.failed");
+        Gauge.builder("mail.outbox.unsent", mailOutboxRepository, MailOutboxRepository::countUnsent)
+                .register(meterRegistry);
+    }
+
+    @PreDestroy
+    void shutdown() {
+        executor.shutdown();
+    }
+
+    @Scheduled(fixedDelayString = "${mail.outbox.poll-interval-ms:1000}")
+    public void dispatch() {
+        while (freeWorkers.tryAcquire()) {
+            List<MailOutbox> batch;
+            try {
+                batch = mailOutboxRepository.claimDueMails(batchSize, leaseSeconds);
+            } catch (RuntimeException e) {
+                freeWorkers.release();
+                log.error("Không thể lấy email từ outbox", e);
+                return;
+            }
+            if (batch.isEmpty()) {
+                freeWorkers.release();
+                return;
+            }
+            executor.execute(() -> {
+                try {
+                    sendBatch(batch);
+                } finally {
+                    freeWorkers.release();
+                }
+            });
+        }
+    }
+
+    private void sendBatch(List<MailOutbox> batch) {
+        // IdentityHashMap: 2 thư giống hệt nội dung vẫn là 2 dòng outbox riêng
+        Map<SimpleMailMessage, MailOutbox> messages = new IdentityHashMap<>();
+        for (MailOutbox mail : batch) {
+            messages.put(toMessage(mail), mail);
+        }
+
+        Map<Object, Exception> failures = Map.of();
+        try {
+            mailSender.send(messages.keySet().toArray(SimpleMailMessage[]::new));
+        } catch (MailSendException e) {
+            // Lỗi từng thư (hoặc lỗi kết nối -> tất cả thư đều nằm trong danh sách lỗi)
+            failures = e.getFailedMessages().isEmpty() ? allFailed(messages.keySet(), e) : e.getFailedMessages();
+        } catch (MailException e) {
+            failures = allFailed(messages.keySet(), e);
+        }
+
+        List<Long> sentIds = new ArrayList<>();
+        for (Map.Entry<SimpleMailMessage, MailOutbox> entry : messages.entrySet()) {
+            Exception error = failures.get(entry.getKey());
+            if (error == null) {
+                sentIds.add(entry.getValue().getId());
+            } else {
+                handleFailure(entry.getValue(), error);
+            }
+        }
+        if (!sentIds.isEmpty()) {
+            mailOutboxRepository.markSent(sentIds);
+            sentCounter.increment(sentIds.size());
+        }
+    }
+
+    private void handleFailure(MailOutbox mail, Exception error) {
+        String message = error.getMessage();
+        if (mail.getAttempts() >= maxAttempts) {
+            mailOutboxRepository.markFailed(mail.getId(), message);
+            failedCounter.increment();
+            log.error("Bỏ gửi email #{} tới {} sau {} lần thử: {}", mail.getId(), mail.getRecipient(), mail.getAttempts(), message);
+            return;
+        }
+        long delayMs = Math.min(retryMaxMs, retryBaseMs << Math.min(mail.getAttempts() - 1, 20));
+        mailOutboxRepository.scheduleRetry(mail.getId(), OffsetDateTime.now().plus(Duration.ofMillis(delayMs)), message);
+        retryCounter.increment();
+        log.warn("Gửi email #{} tới {} lỗi (lần {}), thử lại sau {} ms: {}",
+                mail.getId(), mail.getRecipient(), mail.getAttempts(), delayMs, message);
+    }
+
+    private SimpleMailMessage toMessage(MailOutbox mail) {
+        SimpleMailMessage message = new SimpleMailMessage();
+        message.setTo(mail.getRecipient());
+        message.setSubject(mail.getSubject());
+        message.setText(mail.getBody());
+        return message;
+    }
+
+    private static Map<Object, Exception> allFailed(Collection<SimpleMailMessage> messages, Exception error) {
+        Map<Object, Exception> failures = new HashMap<>();
+        messages.forEach(message -> failures.put(message, error));
+        return failures;
+    }
+}
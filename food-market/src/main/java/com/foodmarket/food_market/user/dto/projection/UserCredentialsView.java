@@ -0,0 +1,10 @@
+package com.foodmarket.food_market.user.dto.projection;
+
+import java.time.OffsetDateTime;
+import java.util.UUID;
+
+public interface UserCredentialsView {
+    UUID getUserId();
+    // null nếu user chưa từng đổi quyền / mật khẩu / thông tin
+    OffsetDateTime getCredentialsChangedAt();
+}
@@ -0,0 +1,17 @@
+package com.foodmarket.food_market.user.event;
+
+import lombok.Getter;
+
+import java.util.UUID;
+
+/**
+ * Phát ra khi thông tin hiển thị hoặc quyền của user thay đổi (họ tên, role).
+ */
+@Getter
+public class UserChangedEvent {
+    private final UUID userId;
+
+    public UserChangedEvent(UUID userId) {
+        this.userId = userId;
+    }
+}
@@ -50,6 +50,10 @@ public class User implements UserDetails {
     @Column(name = "avatar_url", length = 255)
     private String avatarUrl;
 
+    // Chỉ ghi qua UserRepository.markCredentialsChanged, entity không ghi đè cột này
+    @Column(name = "credentials_changed_at", insertable = false, updatable = false)
+    private OffsetDateTime credentialsChangedAt;
+
 
     @Override
     public Collection<? extends GrantedAuthority> getAuthorities() {
@@ -1,13 +1,16 @@
 package com.foodmarket.food_market.user.repository;
 
+import com.foodmarket.food_market.user.dto.projection.UserCredentialsView;
 import com.foodmarket.food_market.user.model.entity.User;
 import com.foodmarket.food_market.user.model.enums.Role;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.JpaSpecificationExecutor;
+import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 
 import java.time.OffsetDateTime;
+import java.util.List;
 import java.util.Optional;
 import java.util.UUID;
 
@@ -28,4 +31,13 @@ public interface UserRepository extends JpaRepository<User,UUID>, JpaSpecificati
     long countByRole(Role role);
 
     long countByCreatedAtAfter(OffsetDateTime date);
+
+    @Modifying(flushAutomatically = true)
+    @Query(value = "UPDATE users SET credentials_changed_at = :changedAt WHERE user_id = :userId", nativeQuery = true)
+    void markCredentialsChanged(@Param("userId") UUID userId, @Param("changedAt") OffsetDateTime changedAt);
+
+    // Các user đổi quyền / mật khẩu / thông tin sau mốc since (mỗi node hỏi định kỳ, dùng index V32)
+    @Query("SELECT u.userId AS userId, u.credentialsChangedAt AS credentialsChangedAt FROM User u " +
+            "WHERE u.credentialsChangedAt > :since")
+    List<UserCredentialsView> findCredentialsChangedSince(@Param("since") OffsetDateTime since);
 }
\ No newline at end of file
@@ -1,11 +1,14 @@
 package com.foodmarket.food_market.user.service;
 
+import com.foodmarket.food_market.auth.security.ClaimsPrincipalResolver;
 import com.foodmarket.food_market.user.dto.UserResponseDTO;
+import com.foodmarket.food_market.user.event.UserChangedEvent;
 import com.foodmarket.food_market.user.model.entity.User;
 import com.foodmarket.food_market.user.model.enums.Role;
 import com.foodmarket.food_market.user.repository.UserRepository;
 import jakarta.persistence.EntityNotFoundException;
 import lombok.RequiredArgsConstructor;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.domain.Specification;
@@ -20,6 +23,8 @@ import java.util.UUID;
 public class AdminUserServiceImpl implements AdminUserService {
 
     private final UserRepository userRepository;
+    private final ClaimsPrincipalResolver claimsPrincipalResolver;
+    private final ApplicationEventPublisher eventPublisher;
 
    
     @Override
@@ -55,6 +60,9 @@ public class AdminUserServiceImpl implements AdminUserService {
 
         user.setRole(role);
         userRepository.save(user);
+        // Token đang dùng mang role cũ -> buộc đi đường DB đến khi user nhận token mới
+        claimsPrincipalResolver.invalidateUser(userId);
+        eventPublisher.publishEvent(new UserChangedEvent(userId));
     }
 
     private UserResponseDTO convertToDTO(User user) {
@@ -0,0 +1,78 @@
+package com.foodmarket.food_market.user.service;
+
+import com.foodmarket.food_market.user.event.UserChangedEvent;
+import com.foodmarket.food_market.user.model.entity.User;
+import com.foodmarket.food_market.user.repository.UserRepository;
+import lombok.RequiredArgsConstructor;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionPhase;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Cache họ tên nhân viên (staffId -> fullName) cho inbox chat.
+ * - Id chưa có trong cache được nạp bằng 1 truy vấn findAllById cho cả trang; bị xoá khi user đổi tên / role.
+ * - Sự kiện chỉ có trên node thực hiện thay đổi: mỗi mục chỉ dùng trong staff.directory.max-stale-ms kể từ lúc nạp.
+ * - Lượt nạp chạy song song với một lần xoá (có thể đã đọc tên cũ) không được ghi vào cache.
+ */
+@Component
+@RequiredArgsConstructor
+public class StaffDirectory {
+
+    private final UserRepository userRepository;
+
+    @Value("${staff.directory.max-stale-ms:60000}")
+    private long maxStaleMs;
+
+    private final Map<UUID, Entry> fullNames = new ConcurrentHashMap<>();
+    private final AtomicLong invalidations = new AtomicLong();
+
+    private record Entry(String fullName, long loadedAt) {
+    }
+
+    public Map<UUID, String> getFullNames(Collection<UUID> staffIds) {
+        long now = System.currentTimeMillis();
+        Map<UUID, String> result = new HashMap<>();
+        Set<UUID> missing = new HashSet<>();
+        for (UUID staffId : staffIds) {
+            Entry entry = fullNames.get(staffId);
+            if (entry != null && now - entry.loadedAt() < maxStaleMs) {
+                result.put(staffId, entry.fullName());
+            } else {
+                missing.add(staffId);
+            }
+        }
+
+        if (!missing.isEmpty()) {
+            long invalidationsBeforeLoad = invalidations.get();
+            List<User> users = userRepository.findAllById(missing);
+            boolean cacheable = invalidations.get() == invalidationsBeforeLoad;
+            for (User user : users) {
+                if (user.getFullName() != null) {
+                    if (cacheable) {
+                        fullNames.put(user.getUserId(), new Entry(user.getFullName(), now));
+                    }
+                    result.put(user.getUserId(), user.getFullName());
+                }
+            }
+        }
+        return result;
+    }
+
+    @TransactionalEventListener(phase = TransactionPhase.AFTER_COMMIT, fallbackExecution = true)
+    public void onUserChanged(UserChangedEvent event) {
+        invalidations.incrementAndGet();
+        fullNames.remove(event.getUserId());
+    }
+
+    @Scheduled(fixedDelayString = "${staff.directory.evict-interval-ms:60000}")
+    public void evictStale() {
+        long cutoff = System.currentTimeMillis() - maxStaleMs;
+        fullNames.values().removeIf(entry -> entry.loadedAt() <= cutoff);
+    }
+}
@@ -1,14 +1,17 @@
 package com.foodmarket.food_market.user.service;
 
 import com.foodmarket.food_market.admin.dashboard.dto.response.UserStatsDTO;
+import com.foodmarket.food_market.auth.security.ClaimsPrincipalResolver;
 import com.foodmarket.food_market.shared.service.EmailService;
 import com.foodmarket.food_market.user.dto.ChangePasswordRequestDTO;
 import com.foodmarket.food_market.user.dto.UserInfoUpdateDTO;
 import com.foodmarket.food_market.user.dto.UserResponseDTO;
+import com.foodmarket.food_market.user.event.UserChangedEvent;
 import com.foodmarket.food_market.user.model.entity.User;
 import com.foodmarket.food_market.user.model.enums.Role;
 import com.foodmarket.food_market.user.repository.UserRepository;
 import lombok.RequiredArgsConstructor;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.security.crypto.password.PasswordEncoder;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
@@ -23,6 +26,8 @@ public class UserServiceImpl implements UserService {
     private final UserRepository userRepository;
     private final PasswordEncoder passwordEncoder; 
     private final EmailService emailService; 
+    private final ClaimsPrincipalResolver claimsPrincipalResolver;
+    private final ApplicationEventPublisher eventPublisher;
     
 
     @Override
@@ -58,6 +63,7 @@ public class UserServiceImpl implements UserService {
         // 2. Cập nhật mật khẩu mới (đã băm)
         user.setPasswordHash(passwordEncoder.encode(request.getNewPassword()));
         userRepository.save(user);
+        claimsPrincipalResolver.invalidateUser(user.getUserId());
 
         // 3. Gửi email thông báo
         String subject = "Thông báo: Mật khẩu của bạn đã được thay đổi";
@@ -74,6 +80,8 @@ public class UserServiceImpl implements UserService {
         user.setFullName(userRequest.getFullName());
         user.setPhone(userRequest.getPhone());
         userRepository.save(user);
+        claimsPrincipalResolver.invalidateUser(user.getUserId());
+        eventPublisher.publishEvent(new UserChangedEvent(user.getUserId()));
         return UserResponseDTO.builder()
                 .userId(user.getUserId())
                 .fullName(user.getFullName())
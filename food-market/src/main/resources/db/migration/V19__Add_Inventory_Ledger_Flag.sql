@@ -0,0 +1,7 @@
+-- Chế độ trừ kho LEDGER: điều chỉnh được ghi ngay, còn current_quantity của lô được cộng dồn sau (write-behind)
+ALTER TABLE inventory_adjustments
+    ADD COLUMN batch_applied BOOLEAN NOT NULL DEFAULT TRUE;
+
+CREATE INDEX idx_inventory_adjustments_pending
+    ON inventory_adjustments (batch_id)
+    WHERE batch_applied = FALSE;
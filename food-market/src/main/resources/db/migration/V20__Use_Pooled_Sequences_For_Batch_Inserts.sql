@@ -0,0 +1,16 @@
+-- Chuyển các bảng ghi nhiều (order_items, inventory_*, chat_messages) sang sinh ID bằng sequence pooled
+-- để Hibernate gom INSERT thành JDBC batch (IDENTITY tắt batch insert).
+-- Dùng lại sequence của BIGSERIAL, mỗi lần nextval cấp 1 khối 50 ID (khớp allocationSize = 50).
+-- Giá trị đầu tiên = MAX(id) + 50 => khối đầu tiên là (MAX(id) + 1 .. MAX(id) + 50), không trùng ID cũ.
+
+ALTER SEQUENCE order_items_order_item_id_seq INCREMENT BY 50;
+SELECT setval('order_items_order_item_id_seq', COALESCE((SELECT MAX(order_item_id) FROM order_items), 0) + 50, false);
+
+ALTER SEQUENCE inventory_batches_batch_id_seq INCREMENT BY 50;
+SELECT setval('inventory_batches_batch_id_seq', COALESCE((SELECT MAX(batch_id) FROM inventory_batches), 0) + 50, false);
+
+ALTER SEQUENCE inventory_adjustments_adjustment_id_seq INCREMENT BY 50;
+SELECT setval('inventory_adjustments_adjustment_id_seq', COALESCE((SELECT MAX(adjustment_id) FROM inventory_adjustments), 0) + 50, false);
+
+ALTER SEQUENCE chat_messages_id_seq INCREMENT BY 50;
+SELECT setval('chat_messages_id_seq', COALESCE((SELECT MAX(id) FROM chat_messages), 0) + 50, false);
@@ -0,0 +1,15 @@
+-- Bảng tổng hợp doanh thu theo giờ tạo đơn + trạng thái, phục vụ dashboard admin
+-- (được cập nhật tăng dần khi đặt hàng / đổi trạng thái, và dựng lại định kỳ từ bảng orders)
+CREATE TABLE order_revenue_rollup
+(
+    bucket_start TIMESTAMP WITH TIME ZONE NOT NULL,
+    status       VARCHAR(50)              NOT NULL,
+    order_count  BIGINT                   NOT NULL DEFAULT 0,
+    revenue      DECIMAL(14, 2)           NOT NULL DEFAULT 0,
+    PRIMARY KEY (bucket_start, status)
+);
+
+INSERT INTO order_revenue_rollup (bucket_start, status, order_count, revenue)
+SELECT date_trunc('hour', o.created_at), o.status, COUNT(*), COALESCE(SUM(o.total_amount), 0)
+FROM orders o
+GROUP BY date_trunc('hour', o.created_at), o.status;
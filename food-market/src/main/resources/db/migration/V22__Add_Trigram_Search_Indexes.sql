@@ -0,0 +1,22 @@
+-- Tìm kiếm sản phẩm / danh mục không dấu dùng index trigram thay vì quét tuần tự
+CREATE EXTENSION IF NOT EXISTS unaccent;
+CREATE EXTENSION IF NOT EXISTS pg_trgm;
+
+-- unaccent() mặc định là STABLE nên không dùng được trong index biểu thức;
+-- bọc lại với dictionary cố định để khai báo IMMUTABLE
+CREATE OR REPLACE FUNCTION immutable_unaccent(text)
+    RETURNS text
+    LANGUAGE sql
+    IMMUTABLE
+    PARALLEL SAFE
+    STRICT
+AS
+$$
+SELECT public.unaccent('public.unaccent'::regdictionary, $1)
+$$;
+
+CREATE INDEX idx_products_name_search_trgm
+    ON products USING gin (lower(immutable_unaccent(name)) gin_trgm_ops);
+
+CREATE INDEX idx_categories_name_search_trgm
+    ON categories USING gin (lower(immutable_unaccent(name)) gin_trgm_ops);
@@ -0,0 +1,18 @@
+-- Hàng đợi email (outbox): ghi cùng transaction nghiệp vụ, worker nền gửi theo lô và thử lại khi lỗi
+CREATE TABLE mail_outbox
+(
+    mail_id         BIGSERIAL PRIMARY KEY,
+    recipient       VARCHAR(255)             NOT NULL,
+    subject         VARCHAR(500)             NOT NULL,
+    body            TEXT                     NOT NULL,
+    status          VARCHAR(20)              NOT NULL DEFAULT 'PENDING',
+    attempts        INTEGER                  NOT NULL DEFAULT 0,
+    next_attempt_at TIMESTAMP WITH TIME ZONE NOT NULL DEFAULT now(),
+    locked_until    TIMESTAMP WITH TIME ZONE,
+    last_error      TEXT,
+    created_at      TIMESTAMP WITH TIME ZONE NOT NULL DEFAULT now(),
+    sent_at         TIMESTAMP WITH TIME ZONE
+);
+
+-- Worker chỉ quét thư chưa gửi xong (PENDING / SENDING hết hạn giữ)
+CREATE INDEX idx_mail_outbox_due ON mail_outbox (next_attempt_at) WHERE status IN ('PENDING', 'SENDING');
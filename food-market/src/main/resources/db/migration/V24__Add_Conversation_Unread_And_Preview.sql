@@ -0,0 +1,21 @@
+-- Lưu sẵn số tin chưa đọc của khách và nội dung tin cuối trên conversations
+-- (cập nhật nguyên tử khi gửi / đánh dấu đã đọc, inbox admin không phải đếm lại từ chat_messages)
+ALTER TABLE conversations
+    ADD COLUMN unread_customer_count INTEGER NOT NULL DEFAULT 0,
+    ADD COLUMN last_message_preview  TEXT;
+
+UPDATE conversations c
+SET unread_customer_count = u.unread_count
+FROM (SELECT conversation_id, COUNT(*) AS unread_count
+      FROM chat_messages
+      WHERE is_read = FALSE
+        AND sender_type = 'CUSTOMER'
+      GROUP BY conversation_id) u
+WHERE u.conversation_id = c.id;
+
+UPDATE conversations c
+SET last_message_preview = m.content
+FROM (SELECT DISTINCT ON (conversation_id) conversation_id, content
+      FROM chat_messages
+      ORDER BY conversation_id, sent_at DESC) m
+WHERE m.conversation_id = c.id;
@@ -0,0 +1,8 @@
+-- Index cho truy vấn phân trang lịch sử chat (WHERE conversation_id = ? ORDER BY sent_at)
+CREATE INDEX idx_chat_messages_conversation_sent_at ON chat_messages (conversation_id, sent_at);
+
+-- Index cũ chỉ theo conversation_id trở nên thừa (là tiền tố của index trên)
+DROP INDEX IF EXISTS idx_chat_messages_session;
+
+-- Phục vụ đánh dấu đã đọc hàng loạt: chỉ quét các tin chưa đọc
+CREATE INDEX idx_chat_messages_unread ON chat_messages (conversation_id, sender_type) WHERE is_read = FALSE;
@@ -0,0 +1,39 @@
+-- Tồn kho tổng hợp theo sản phẩm, cập nhật trong cùng transaction với mọi thay đổi lô hàng
+-- (ProductStockSummaryService) và đối soát lại mỗi đêm. Số lượng = current_quantity của lô
+-- + các điều chỉnh chưa ghi xuống lô (chế độ LEDGER).
+CREATE TABLE product_stock_summary
+(
+    product_id              BIGINT PRIMARY KEY,
+    -- Tồn còn hạn (bán được)
+    available_quantity      INT                      NOT NULL DEFAULT 0,
+    -- Tồn của mọi lô còn hàng, kể cả đã hết hạn (trang admin)
+    total_quantity          INT                      NOT NULL DEFAULT 0,
+    soonest_expiration_date DATE,
+    low_stock               BOOLEAN                  NOT NULL DEFAULT TRUE,
+    updated_at              TIMESTAMP WITH TIME ZONE NOT NULL DEFAULT NOW(),
+    CONSTRAINT fk_product_stock_summary_products FOREIGN KEY (product_id) REFERENCES products (product_id) ON DELETE CASCADE
+);
+
+CREATE INDEX idx_product_stock_summary_low_stock ON product_stock_summary (product_id) WHERE low_stock = TRUE;
+
+-- Tính lại tổng hợp của 1 sản phẩm chỉ quét các lô của sản phẩm đó
+CREATE INDEX idx_inventory_batches_product_expiration ON inventory_batches (product_id, expiration_date);
+
+-- Ngưỡng 10 khớp giá trị mặc định của inventory.low-stock-threshold
+INSERT INTO product_stock_summary (product_id, available_quantity, total_quantity, soonest_expiration_date, low_stock)
+SELECT p.product_id,
+       COALESCE(SUM(b.qty) FILTER (WHERE b.qty > 0 AND b.expiration_date > CURRENT_DATE), 0),
+       COALESCE(SUM(b.qty) FILTER (WHERE b.qty > 0), 0),
+       MIN(b.expiration_date) FILTER (WHERE b.qty > 0),
+       COALESCE(SUM(b.qty) FILTER (WHERE b.qty > 0), 0) <= 10
+FROM products p
+LEFT JOIN LATERAL (
+    SELECT ib.expiration_date,
+           ib.current_quantity + COALESCE((SELECT SUM(a.adjustment_quantity)
+                                           FROM inventory_adjustments a
+                                           WHERE a.batch_id = ib.batch_id
+                                           AND a.batch_applied = FALSE), 0) AS qty
+    FROM inventory_batches ib
+    WHERE ib.product_id = p.product_id
+) b ON TRUE
+GROUP BY p.product_id;
@@ -0,0 +1,2 @@
+-- Đọc giỏ hàng theo cart_id (GET /cart chạy trên mọi trang để hiện badge)
+CREATE INDEX idx_cart_items_cart ON cart_items (cart_id);
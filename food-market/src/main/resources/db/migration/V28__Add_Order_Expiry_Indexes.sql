@@ -0,0 +1,5 @@
+-- Dựng lại hàng đợi hết hạn thanh toán (khởi động / quét dự phòng) chỉ đọc các đơn VNPAY đang chờ
+CREATE INDEX idx_orders_pending_vnpay_created_at ON orders (created_at) WHERE status = 'PENDING' AND payment_method = 'VNPAY';
+
+-- Trả kho / đọc dòng hàng theo nhóm đơn
+CREATE INDEX idx_order_items_order ON order_items (order_id);
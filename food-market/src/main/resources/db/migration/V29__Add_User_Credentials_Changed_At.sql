@@ -0,0 +1,3 @@
+-- Thời điểm đổi quyền / mật khẩu / thông tin gần nhất: access token phát hành trước mốc này
+-- không được dựng principal từ claims (dùng chung cho mọi node, không mất khi khởi động lại)
+ALTER TABLE users ADD COLUMN credentials_changed_at TIMESTAMP WITH TIME ZONE;
@@ -0,0 +1,3 @@
+-- Tìm kiếm theo tên danh mục lọc products.category_id IN (...): cần index để Postgres ghép (BitmapOr)
+-- với index trigram trên tên sản phẩm thay vì quét cả bảng
+CREATE INDEX idx_products_category_id ON products (category_id);
@@ -0,0 +1,2 @@
+-- Dựng lại order_revenue_rollup theo từng khoảng created_at (OrderRevenueRollupRebuilder)
+CREATE INDEX idx_orders_created_at ON orders (created_at);
@@ -0,0 +1,2 @@
+-- Mỗi node hỏi định kỳ các user vừa đổi quyền / mật khẩu / thông tin (ClaimsPrincipalResolver)
+CREATE INDEX idx_users_credentials_changed_at ON users (credentials_changed_at) WHERE credentials_changed_at IS NOT NULL;
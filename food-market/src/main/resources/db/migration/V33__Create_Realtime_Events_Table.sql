@@ -0,0 +1,12 @@
+-- Sự kiện realtime quá giới hạn payload của NOTIFY (8000 byte): lưu vào bảng và chỉ NOTIFY id,
+-- node LISTEN đọc lại theo id (SseRealtimePublisher). Dòng cũ được xoá định kỳ.
+CREATE TABLE realtime_events
+(
+    id         BIGSERIAL PRIMARY KEY,
+    channel    VARCHAR(255)             NOT NULL,
+    event_name VARCHAR(255)             NOT NULL,
+    data       TEXT                     NOT NULL,
+    created_at TIMESTAMP WITH TIME ZONE NOT NULL DEFAULT NOW()
+);
+
+CREATE INDEX idx_realtime_events_created_at ON realtime_events (created_at);
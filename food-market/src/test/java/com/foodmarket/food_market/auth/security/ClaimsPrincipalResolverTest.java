@@ -0,0 +1,142 @@
+package com.foodmarket.food_market.auth.security;
+
+import com.foodmarket.food_market.user.dto.projection.UserCredentialsView;
+import com.foodmarket.food_market.user.model.entity.User;
+import com.foodmarket.food_market.user.model.enums.Role;
+import com.foodmarket.food_market.user.repository.UserRepository;
+import io.jsonwebtoken.Claims;
+import io.jsonwebtoken.Jwts;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.time.Instant;
+import java.time.OffsetDateTime;
+import java.time.ZoneOffset;
+import java.util.Date;
+import java.util.List;
+import java.util.Optional;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+
+class ClaimsPrincipalResolverTest {
+
+    private static final long TOKEN_LIFETIME_MS = 900_000;
+    private static final long OVERLAP_MS = 60_000;
+
+    private UserRepository userRepository;
+    private ClaimsPrincipalResolver resolver;
+
+    @BeforeEach
+    void setUp() {
+        userRepository = mock(UserRepository.class);
+        resolver = new ClaimsPrincipalResolver(userRepository);
+        ReflectionTestUtils.setField(resolver, "enabled", true);
+        ReflectionTestUtils.setField(resolver, "pollOverlapMs", OVERLAP_MS);
+        ReflectionTestUtils.setField(resolver, "accessTokenLifetimeMs", TOKEN_LIFETIME_MS);
+    }
+
+    private static Claims claims(UUID userId, Instant issuedAt) {
+        return Jwts.claims()
+                .subject("user@test.local")
+                .issuedAt(Date.from(issuedAt))
+                .add(ClaimsPrincipalResolver.CLAIM_USER_ID, userId.toString())
+                .add(ClaimsPrincipalResolver.CLAIM_FULL_NAME, "Nguyễn Văn A")
+                .add(ClaimsPrincipalResolver.CLAIM_ROLE, Role.STAFF.name())
+                .build();
+    }
+
+    private static UserCredentialsView change(UUID userId, Instant changedAt) {
+        return new UserCredentialsView() {
+            @Override
+            public UUID getUserId() {
+                return userId;
+            }
+
+            @Override
+            public OffsetDateTime getCredentialsChangedAt() {
+                return changedAt.atOffset(ZoneOffset.UTC);
+            }
+        };
+    }
+
+    @Test
+    void claimsAreNotTrustedBeforeFirstPoll() {
+        assertThat(resolver.resolve(claims(UUID.randomUUID(), Instant.now()))).isEmpty();
+    }
+
+    @Test
+    void claimsAreTrustedBetweenPollsWithoutReadingUsers() {
+        when(userRepository.findCredentialsChangedSince(any())).thenReturn(List.of());
+        resolver.pollRevocations();
+        UUID userId = UUID.randomUUID();
+
+        for (int i = 0; i < 3; i++) {
+            Optional<User> user = resolver.resolve(claims(userId, Instant.now()));
+            assertThat(user).hasValueSatisfying(u -> {
+                assertThat(u.getUserId()).isEqualTo(userId);
+                assertThat(u.getRole()).isEqualTo(Role.STAFF);
+            });
+        }
+        verify(userRepository, times(1)).findCredentialsChangedSince(any());
+        verifyNoMoreInteractions(userRepository);
+    }
+
+    @Test
+    void changeOnAnotherNodeRevokesOlderTokensAfterPoll() {
+        UUID userId = UUID.randomUUID();
+        Instant changedAt = Instant.now().minusSeconds(10);
+        when(userRepository.findCredentialsChangedSince(any())).thenReturn(List.of(change(userId, changedAt)));
+
+        resolver.pollRevocations();
+
+        assertThat(resolver.resolve(claims(userId, changedAt.minusSeconds(60)))).isEmpty();
+        assertThat(resolver.resolve(claims(userId, changedAt.plusSeconds(1)))).isPresent();
+        assertThat(resolver.resolve(claims(UUID.randomUUID(), changedAt.minusSeconds(60)))).isPresent();
+    }
+
+    @Test
+    void localInvalidationTakesEffectImmediately() {
+        when(userRepository.findCredentialsChangedSince(any())).thenReturn(List.of());
+        resolver.pollRevocations();
+        UUID userId = UUID.randomUUID();
+        Claims issuedEarlier = claims(userId, Instant.now().minusSeconds(30));
+
+        resolver.invalidateUser(userId);
+
+        verify(userRepository).markCredentialsChanged(eq(userId), any());
+        assertThat(resolver.resolve(issuedEarlier)).isEmpty();
+    }
+
+    @Test
+    void nextPollLooksBackByOverlapFromLastSeenChange() {
+        Instant changedAt = Instant.now().minusSeconds(5);
+        when(userRepository.findCredentialsChangedSince(any())).thenReturn(List.of(change(UUID.randomUUID(), changedAt)));
+        resolver.pollRevocations();
+
+        resolver.pollRevocations();
+
+        ArgumentCaptor<OffsetDateTime> since = ArgumentCaptor.forClass(OffsetDateTime.class);
+        verify(userRepository, times(2)).findCredentialsChangedSince(since.capture());
+        assertThat(since.getAllValues().get(0).toInstant()).isBefore(Instant.now().minusMillis(TOKEN_LIFETIME_MS - 1000));
+        assertThat(since.getAllValues().get(1).toInstant()).isEqualTo(changedAt.minusMillis(OVERLAP_MS));
+    }
+
+    @Test
+    void failedPollFallsBackToDatabase() {
+        when(userRepository.findCredentialsChangedSince(any()))
+                .thenReturn(List.of())
+                .thenThrow(new IllegalStateException("connection refused"));
+        resolver.pollRevocations();
+        UUID userId = UUID.randomUUID();
+        assertThat(resolver.resolve(claims(userId, Instant.now()))).isPresent();
+
+        resolver.pollRevocations();
+
+        assertThat(resolver.resolve(claims(userId, Instant.now()))).isEmpty();
+    }
+}
@@ -0,0 +1,75 @@
+package com.foodmarket.food_market.auth.security;
+
+import com.foodmarket.food_market.user.model.entity.User;
+import com.foodmarket.food_market.user.model.enums.Role;
+import io.jsonwebtoken.Claims;
+import io.jsonwebtoken.Jwts;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.Date;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class JwtServiceTest {
+
+    private static final String SECRET_KEY = "dGVzdC1zZWNyZXQta2V5LWZvci1pbnRlZ3JhdGlvbi10ZXN0cy0xMjM0NTY3ODk=";
+
+    private static JwtService jwtService(int cacheSize) {
+        JwtService service = new JwtService();
+        ReflectionTestUtils.setField(service, "SECRET_KEY", SECRET_KEY);
+        ReflectionTestUtils.setField(service, "JWT_EXPIRATION_MS", 900000L);
+        ReflectionTestUtils.setField(service, "verifiedCacheSize", cacheSize);
+        service.init();
+        return service;
+    }
+
+    private static String tokenFor(JwtService service, String email) {
+        return service.generateToken(User.builder().email(email).role(Role.CUSTOMER).build());
+    }
+
+    @SuppressWarnings("unchecked")
+    private static Map<String, Claims> verifiedTokens(JwtService service) {
+        return (Map<String, Claims>) ReflectionTestUtils.getField(service, "verifiedTokens");
+    }
+
+    @Test
+    void verifiedTokenIsServedFromCache() {
+        JwtService service = jwtService(10);
+        String token = tokenFor(service, "a@test.local");
+
+        Claims first = service.extractAllClaims(token);
+
+        assertThat(service.extractAllClaims(token)).isSameAs(first);
+        assertThat(first.getSubject()).isEqualTo("a@test.local");
+    }
+
+    @Test
+    void fullCacheDoesNotGrow() {
+        JwtService service = jwtService(1);
+        service.extractAllClaims(tokenFor(service, "a@test.local"));
+        String uncached = tokenFor(service, "b@test.local");
+
+        Claims first = service.extractAllClaims(uncached);
+
+        Claims second = service.extractAllClaims(uncached);
+        assertThat(second).isNotSameAs(first);
+        assertThat(second.getSubject()).isEqualTo(first.getSubject());
+        assertThat(verifiedTokens(service)).hasSize(1);
+    }
+
+    @Test
+    void evictionRemovesOnlyExpiredTokens() {
+        JwtService service = jwtService(10);
+        service.extractAllClaims(tokenFor(service, "a@test.local"));
+        verifiedTokens(service).put("expired", Jwts.claims()
+                .subject("b@test.local")
+                .expiration(new Date(System.currentTimeMillis() - 1000))
+                .build());
+
+        service.evictExpiredTokens();
+
+        assertThat(verifiedTokens(service)).hasSize(1).doesNotContainKey("expired");
+    }
+}
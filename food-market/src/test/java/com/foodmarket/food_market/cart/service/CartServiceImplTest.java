@@ -0,0 +1,225 @@
+package com.foodmarket.food_market.cart.service;
+
+import com.foodmarket.food_market.cart.dto.CartChangeResponseDTO;
+import com.foodmarket.food_market.cart.dto.CartItemUpdateDTO;
+import com.foodmarket.food_market.cart.dto.CartResponseDTO;
+import com.foodmarket.food_market.cart.dto.projection.CartLineView;
+import com.foodmarket.food_market.cart.dto.projection.CartTotalsView;
+import com.foodmarket.food_market.cart.model.Cart;
+import com.foodmarket.food_market.cart.model.CartItem;
+import com.foodmarket.food_market.cart.repository.CartItemRepository;
+import com.foodmarket.food_market.cart.repository.CartRepository;
+import com.foodmarket.food_market.inventory.service.InventoryService;
+import com.foodmarket.food_market.product.model.Product;
+import com.foodmarket.food_market.product.repository.ProductRepository;
+import com.foodmarket.food_market.user.repository.UserRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+import java.util.List;
+import java.util.Optional;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+
+class CartServiceImplTest {
+
+    private static final UUID USER_ID = UUID.randomUUID();
+    private static final UUID CART_ID = UUID.randomUUID();
+
+    private record Line(Long cartItemId, Integer quantity, BigDecimal price, BigDecimal livePrice,
+                        Integer availableQuantity) implements CartLineView {
+        @Override
+        public Long getCartItemId() {
+            return cartItemId;
+        }
+
+        @Override
+        public Integer getQuantity() {
+            return quantity;
+        }
+
+        @Override
+        public BigDecimal getPrice() {
+            return price;
+        }
+
+        @Override
+        public Long getProductId() {
+            return cartItemId * 10;
+        }
+
+        @Override
+        public String getProductName() {
+            return "Sản phẩm " + cartItemId;
+        }
+
+        @Override
+        public String getUnit() {
+            return "kg";
+        }
+
+        @Override
+        public String getSlug() {
+            return "san-pham-" + cartItemId;
+        }
+
+        @Override
+        public String getCategorySlug() {
+            return "danh-muc";
+        }
+
+        @Override
+        public String getImageUrl() {
+            return null;
+        }
+
+        @Override
+        public BigDecimal getBasePrice() {
+            return livePrice;
+        }
+
+        @Override
+        public BigDecimal getLivePrice() {
+            return livePrice;
+        }
+
+        @Override
+        public Integer getAvailableQuantity() {
+            return availableQuantity;
+        }
+    }
+
+    private record Totals(BigDecimal getGrandTotal, BigDecimal getBaseGrandTotal) implements CartTotalsView {
+    }
+
+    private CartRepository cartRepository;
+    private CartItemRepository cartItemRepository;
+    private InventoryService inventoryService;
+    private CartRevalidator cartRevalidator;
+    private CartServiceImpl cartService;
+
+    @BeforeEach
+    void setUp() {
+        cartRepository = mock(CartRepository.class);
+        cartItemRepository = mock(CartItemRepository.class);
+        inventoryService = mock(InventoryService.class);
+        cartRevalidator = mock(CartRevalidator.class);
+        cartService = new CartServiceImpl(cartRepository, cartItemRepository, mock(ProductRepository.class),
+                mock(UserRepository.class), inventoryService, cartRevalidator);
+    }
+
+    private static BigDecimal vnd(long amount) {
+        return BigDecimal.valueOf(amount);
+    }
+
+    private void cartWithLines(CartLineView... lines) {
+        when(cartRepository.findIdByUserId(USER_ID)).thenReturn(Optional.of(CART_ID));
+        when(cartItemRepository.findLinesByCartId(CART_ID)).thenReturn(List.of(lines));
+    }
+
+    @Test
+    void userWithoutCartGetsEmptyCartWithoutWrites() {
+        when(cartRepository.findIdByUserId(USER_ID)).thenReturn(Optional.empty());
+
+        CartResponseDTO cart = cartService.getCart(USER_ID);
+
+        assertThat(cart.getItems()).isEmpty();
+        assertThat(cart.getGrandTotal()).isEqualByComparingTo(BigDecimal.ZERO);
+        verify(cartRepository, never()).save(any());
+        verifyNoInteractions(cartRevalidator);
+    }
+
+    @Test
+    void unchangedCartIsServedWithoutWrites() {
+        cartWithLines(new Line(1L, 2, vnd(10000), vnd(10000), 5));
+
+        CartResponseDTO cart = cartService.getCart(USER_ID);
+
+        assertThat(cart.getItems()).singleElement().satisfies(item -> {
+            assertThat(item.getQuantity()).isEqualTo(2);
+            assertThat(item.getNote()).isNull();
+        });
+        assertThat(cart.getGrandTotal()).isEqualByComparingTo(vnd(20000));
+        verifyNoInteractions(cartRevalidator);
+    }
+
+    @Test
+    void priceDriftIsRepricedAndWrittenBack() {
+        cartWithLines(new Line(1L, 2, vnd(10000), vnd(8000), 5), new Line(2L, 1, vnd(5000), vnd(5000), 5));
+
+        CartResponseDTO cart = cartService.getCart(USER_ID);
+
+        assertThat(cart.getItems().get(0).getItemPrice()).isEqualByComparingTo(vnd(8000));
+        assertThat(cart.getItems().get(0).getNote()).contains("giảm giá");
+        assertThat(cart.getGrandTotal()).isEqualByComparingTo(vnd(21000));
+        // Chỉ dòng lệch được ghi lại
+        verify(cartRevalidator).apply(List.of(new CartRevalidator.LineFix(1L, vnd(8000), 5)));
+    }
+
+    @Test
+    void quantityIsClampedToStock() {
+        cartWithLines(new Line(1L, 4, vnd(10000), vnd(10000), 3), new Line(2L, 2, vnd(5000), vnd(5000), 0));
+
+        CartResponseDTO cart = cartService.getCart(USER_ID);
+
+        assertThat(cart.getItems().get(0).getQuantity()).isEqualTo(3);
+        assertThat(cart.getItems().get(1).getQuantity()).isZero();
+        assertThat(cart.getItems().get(1).getNote()).isEqualTo("Sản phẩm đã hết hàng");
+        assertThat(cart.getGrandTotal()).isEqualByComparingTo(vnd(30000));
+        verify(cartRevalidator).apply(List.of(
+                new CartRevalidator.LineFix(1L, vnd(10000), 3),
+                new CartRevalidator.LineFix(2L, vnd(5000), 0)));
+    }
+
+    @Test
+    void updateReturnsChangedLineWithLivePriceAndTotals() {
+        Cart cart = new Cart();
+        cart.setId(CART_ID);
+        Product product = new Product();
+        product.setId(10L);
+        product.setBasePrice(vnd(10000));
+        product.setSalePrice(vnd(7000));
+        product.setOnSale(true);
+        CartItem item = new CartItem(cart, product, 1);
+        item.setId(1L);
+        item.setPrice(vnd(10000));
+        when(cartRepository.findByUser_UserId(USER_ID)).thenReturn(Optional.of(cart));
+        when(cartItemRepository.findByIdAndCart_Id(1L, CART_ID)).thenReturn(Optional.of(item));
+        when(inventoryService.getStockAvailability(10L)).thenReturn(5);
+        when(cartItemRepository.findLineById(1L)).thenReturn(Optional.of(new Line(1L, 3, vnd(7000), vnd(7000), 5)));
+        when(cartItemRepository.sumTotalsByCartId(CART_ID)).thenReturn(new Totals(vnd(21000), vnd(30000)));
+        CartItemUpdateDTO request = new CartItemUpdateDTO();
+        request.setQuantity(3);
+
+        CartChangeResponseDTO change = cartService.updateCartItem(USER_ID, 1L, request);
+
+        assertThat(item.getQuantity()).isEqualTo(3);
+        assertThat(item.getPrice()).isEqualByComparingTo(vnd(7000));
+        assertThat(change.getItem().getCartItemId()).isEqualTo(1L);
+        assertThat(change.getRemovedCartItemId()).isNull();
+        assertThat(change.getGrandTotal()).isEqualByComparingTo(vnd(21000));
+        verify(cartItemRepository, never()).findLinesByCartId(any());
+    }
+
+    @Test
+    void removeReturnsRemovedIdAndTotals() {
+        Cart cart = new Cart();
+        cart.setId(CART_ID);
+        CartItem item = new CartItem();
+        item.setId(1L);
+        when(cartRepository.findByUser_UserId(USER_ID)).thenReturn(Optional.of(cart));
+        when(cartItemRepository.findByIdAndCart_Id(1L, CART_ID)).thenReturn(Optional.of(item));
+        when(cartItemRepository.sumTotalsByCartId(CART_ID)).thenReturn(new Totals(BigDecimal.ZERO, BigDecimal.ZERO));
+
+        CartChangeResponseDTO change = cartService.removeCartItem(USER_ID, 1L);
+
+        verify(cartItemRepository).delete(item);
+        assertThat(change.getItem()).isNull();
+        assertThat(change.getRemovedCartItemId()).isEqualTo(1L);
+        assertThat(change.getGrandTotal()).isEqualByComparingTo(BigDecimal.ZERO);
+    }
+}
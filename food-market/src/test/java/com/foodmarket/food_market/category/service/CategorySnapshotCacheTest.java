@@ -0,0 +1,36 @@
+package com.foodmarket.food_market.category.service;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class CategorySnapshotCacheTest {
+
+    @Test
+    void collectSubtreeIncludesEveryDescendantLevel() {
+        Map<Long, List<Long>> childIds = Map.of(
+                1L, List.of(2L, 3L),
+                2L, List.of(4L),
+                4L, List.of(5L));
+
+        assertThat(CategorySnapshotCache.collectSubtree(1L, childIds)).containsExactly(1L, 2L, 3L, 4L, 5L);
+        assertThat(CategorySnapshotCache.collectSubtree(2L, childIds)).containsExactly(2L, 4L, 5L);
+    }
+
+    @Test
+    void collectSubtreeOfLeafIsItself() {
+        assertThat(CategorySnapshotCache.collectSubtree(7L, Map.of())).containsExactly(7L);
+    }
+
+    @Test
+    void collectSubtreeStopsOnParentChildCycle() {
+        Map<Long, List<Long>> childIds = Map.of(
+                1L, List.of(2L),
+                2L, List.of(1L, 3L));
+
+        assertThat(CategorySnapshotCache.collectSubtree(1L, childIds)).containsExactly(1L, 2L, 3L);
+    }
+}
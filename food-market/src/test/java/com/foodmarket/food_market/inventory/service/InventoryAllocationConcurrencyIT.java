@@ -0,0 +1,157 @@
+package com.foodmarket.food_market.inventory.service;
+
+import com.foodmarket.food_market.inventory.exception.InsufficientStockException;
+import com.foodmarket.food_market.inventory.model.enums.InventoryAllocationMode;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.EnumSource;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.testcontainers.service.connection.ServiceConnection;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.util.AopTestUtils;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.testcontainers.containers.PostgreSQLContainer;
+import org.testcontainers.junit.jupiter.Container;
+import org.testcontainers.junit.jupiter.Testcontainers;
+
+import java.time.LocalDate;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Nhiều đơn đặt cùng lúc trên cùng 2 sản phẩm, với từng chế độ trừ kho:
+ * không bán quá tồn, không deadlock / lỗi khoá, và số đã trừ + số còn lại luôn bằng tồn ban đầu.
+ */
+@SpringBootTest
+@ActiveProfiles("it")
+@Testcontainers(disabledWithoutDocker = true)
+class InventoryAllocationConcurrencyIT {
+
+    private static final int BATCHES_PER_PRODUCT = 3;
+    private static final int QUANTITY_PER_BATCH = 10;
+    private static final int STOCK_PER_PRODUCT = BATCHES_PER_PRODUCT * QUANTITY_PER_BATCH;
+    private static final int CHECKOUTS = 40;
+    private static final int QUANTITY_PER_CHECKOUT = 2;
+
+    @Container
+    @ServiceConnection
+    static PostgreSQLContainer<?> postgres = new PostgreSQLContainer<>("postgres:16-alpine");
+
+    @Autowired
+    private InventoryService inventoryService;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @ParameterizedTest
+    @EnumSource(InventoryAllocationMode.class)
+    void concurrentCheckoutsNeverOversellOrDeadlock(InventoryAllocationMode mode) throws Exception {
+        Object target = AopTestUtils.getUltimateTargetObject(inventoryService);
+        ReflectionTestUtils.setField(target, "allocationMode", mode);
+        UUID userId = createUser();
+        long categoryId = createCategory();
+        long firstProductId = createProductWithStock(categoryId);
+        long secondProductId = createProductWithStock(categoryId);
+
+        AtomicInteger succeeded = new AtomicInteger();
+        List<Throwable> unexpected = new CopyOnWriteArrayList<>();
+        CountDownLatch start = new CountDownLatch(1);
+        ExecutorService executor = Executors.newFixedThreadPool(16);
+        try {
+            for (int i = 0; i < CHECKOUTS; i++) {
+                executor.submit(() -> {
+                    try {
+                        start.await();
+                        inventoryService.allocateForOrder(
+                                Map.of(firstProductId, QUANTITY_PER_CHECKOUT, secondProductId, QUANTITY_PER_CHECKOUT),
+                                userId, UUID.randomUUID());
+                        succeeded.incrementAndGet();
+                    } catch (InsufficientStockException e) {
+                        // Hết hàng / quá nhiều đơn tranh chấp: kết quả hợp lệ
+                    } catch (Throwable e) {
+                        unexpected.add(e);
+                    }
+                    return null;
+                });
+            }
+            start.countDown();
+            executor.shutdown();
+            assertThat(executor.awaitTermination(60, TimeUnit.SECONDS)).isTrue();
+        } finally {
+            executor.shutdownNow();
+        }
+
+        assertThat(unexpected).isEmpty();
+        int allocatedPerProduct = succeeded.get() * QUANTITY_PER_CHECKOUT;
+        assertThat(allocatedPerProduct).isLessThanOrEqualTo(STOCK_PER_PRODUCT);
+        if (mode != InventoryAllocationMode.SKIP_LOCKED) {
+            // DATABASE / LEDGER không từ chối đơn khi còn hàng
+            assertThat(allocatedPerProduct).isEqualTo(STOCK_PER_PRODUCT);
+        }
+        for (long productId : List.of(firstProductId, secondProductId)) {
+            assertThat(minEffectiveBatchQuantity(productId)).isGreaterThanOrEqualTo(0);
+            assertThat(effectiveStock(productId)).isEqualTo(STOCK_PER_PRODUCT - allocatedPerProduct);
+            // Tổng hợp cập nhật theo delta phải khớp với các lô
+            assertThat(summaryAvailableQuantity(productId)).isEqualTo(STOCK_PER_PRODUCT - allocatedPerProduct);
+        }
+    }
+
+    // Số lượng thực của lô = current_quantity + điều chỉnh chưa ghi xuống lô (LEDGER)
+    private static final String EFFECTIVE_BATCH_QUANTITY = """
+            SELECT b.current_quantity + COALESCE((SELECT SUM(a.adjustment_quantity)
+                                                  FROM inventory_adjustments a
+                                                  WHERE a.batch_id = b.batch_id
+                                                  AND a.batch_applied = FALSE), 0)
+            FROM inventory_batches b
+            WHERE b.product_id = ?
+            """;
+
+    private int effectiveStock(long productId) {
+        return jdbcTemplate.queryForList(EFFECTIVE_BATCH_QUANTITY, Integer.class, productId).stream()
+                .mapToInt(Integer::intValue).sum();
+    }
+
+    private int minEffectiveBatchQuantity(long productId) {
+        return jdbcTemplate.queryForList(EFFECTIVE_BATCH_QUANTITY, Integer.class, productId).stream()
+                .mapToInt(Integer::intValue).min().orElse(0);
+    }
+
+    private int summaryAvailableQuantity(long productId) {
+        return jdbcTemplate.queryForObject(
+                "SELECT available_quantity FROM product_stock_summary WHERE product_id = ?", Integer.class, productId);
+    }
+
+    private UUID createUser() {
+        UUID userId = UUID.randomUUID();
+        jdbcTemplate.update("INSERT INTO users (user_id, email, phone, password_hash, role) VALUES (?, ?, ?, ?, 'CUSTOMER')",
+                userId, userId + "@test.local", userId.toString().substring(0, 20), "x");
+        return userId;
+    }
+
+    private long createCategory() {
+        String slug = "cat-" + UUID.randomUUID();
+        return jdbcTemplate.queryForObject(
+                "INSERT INTO categories (name, slug) VALUES (?, ?) RETURNING category_id", Long.class, slug, slug);
+    }
+
+    private long createProductWithStock(long categoryId) {
+        String slug = "product-" + UUID.randomUUID();
+        long productId = jdbcTemplate.queryForObject(
+                "INSERT INTO products (name, slug, base_price, unit, category_id) VALUES (?, ?, 10000, 'kg', ?) RETURNING product_id",
+                Long.class, slug, slug, categoryId);
+        for (int i = 0; i < BATCHES_PER_PRODUCT; i++) {
+            jdbcTemplate.update("""
+                            INSERT INTO inventory_batches (product_id, batch_code, expiration_date, quantity_received, current_quantity)
+                            VALUES (?, ?, ?, ?, ?)
+                            """,
+                    productId, slug + "-" + i, LocalDate.now().plusDays(10 + i), QUANTITY_PER_BATCH, QUANTITY_PER_BATCH);
+        }
+        return productId;
+    }
+}
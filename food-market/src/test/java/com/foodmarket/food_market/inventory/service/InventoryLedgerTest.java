@@ -0,0 +1,139 @@
+package com.foodmarket.food_market.inventory.service;
+
+import com.foodmarket.food_market.inventory.dto.projection.LedgerBatchView;
+import com.foodmarket.food_market.inventory.repository.InventoryBatchRepository;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.time.LocalDate;
+import java.util.List;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class InventoryLedgerTest {
+
+    private static final long PRODUCT_ID = 1L;
+
+    private record Batch(Long batchId, LocalDate expirationDate, Integer availableQuantity) implements LedgerBatchView {
+        @Override
+        public Long getBatchId() {
+            return batchId;
+        }
+
+        @Override
+        public LocalDate getExpirationDate() {
+            return expirationDate;
+        }
+
+        @Override
+        public Integer getAvailableQuantity() {
+            return availableQuantity;
+        }
+    }
+
+    private InventoryLedger ledger;
+
+    @BeforeEach
+    void setUp() {
+        InventoryBatchRepository repository = mock(InventoryBatchRepository.class);
+        // Repository trả về theo FEFO như truy vấn thật
+        when(repository.findLedgerBatchesByProductId(PRODUCT_ID)).thenReturn(List.of(
+                new Batch(11L, LocalDate.now().plusDays(1), 3),
+                new Batch(12L, LocalDate.now().plusDays(5), 5)));
+        ledger = new InventoryLedger(repository);
+    }
+
+    @AfterEach
+    void clearSynchronization() {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.clearSynchronization();
+        }
+    }
+
+    @Test
+    void reserveTakesSoonestExpiringBatchesFirst() {
+        List<InventoryLedger.BatchReservation> reservations = ledger.reserve(PRODUCT_ID, 4);
+
+        assertThat(reservations).containsExactly(
+                new InventoryLedger.BatchReservation(11L, 3),
+                new InventoryLedger.BatchReservation(12L, 1));
+        assertThat(ledger.available(PRODUCT_ID)).isEqualTo(4);
+    }
+
+    @Test
+    void reserveMoreThanAvailableTakesNothing() {
+        assertThat(ledger.reserve(PRODUCT_ID, 9)).isEmpty();
+        assertThat(ledger.available(PRODUCT_ID)).isEqualTo(8);
+    }
+
+    @Test
+    void reservationIsReleasedOnRollback() {
+        TransactionSynchronizationManager.initSynchronization();
+        ledger.reserve(PRODUCT_ID, 5);
+        assertThat(ledger.available(PRODUCT_ID)).isEqualTo(3);
+
+        completeTransaction(TransactionSynchronization.STATUS_ROLLED_BACK);
+
+        assertThat(ledger.available(PRODUCT_ID)).isEqualTo(8);
+    }
+
+    @Test
+    void reservationIsKeptOnCommit() {
+        TransactionSynchronizationManager.initSynchronization();
+        ledger.reserve(PRODUCT_ID, 5);
+
+        completeTransaction(TransactionSynchronization.STATUS_COMMITTED);
+
+        assertThat(ledger.available(PRODUCT_ID)).isEqualTo(3);
+    }
+
+    @Test
+    void addAfterCommitIsAppliedOnlyAfterCommit() {
+        ledger.ensureLoaded(PRODUCT_ID);
+        TransactionSynchronizationManager.initSynchronization();
+        ledger.addAfterCommit(PRODUCT_ID, 11L, 2);
+        assertThat(ledger.available(PRODUCT_ID)).isEqualTo(8);
+
+        completeTransaction(TransactionSynchronization.STATUS_COMMITTED);
+
+        assertThat(ledger.available(PRODUCT_ID)).isEqualTo(10);
+    }
+
+    @Test
+    void concurrentReservationsNeverOversell() throws Exception {
+        ledger.ensureLoaded(PRODUCT_ID);
+        AtomicInteger reserved = new AtomicInteger();
+        CountDownLatch start = new CountDownLatch(1);
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        for (int i = 0; i < 50; i++) {
+            executor.submit(() -> {
+                start.await();
+                List<InventoryLedger.BatchReservation> reservations = ledger.reserve(PRODUCT_ID, 1);
+                reservations.forEach(r -> reserved.addAndGet(r.quantity()));
+                return null;
+            });
+        }
+        start.countDown();
+        executor.shutdown();
+        assertThat(executor.awaitTermination(10, TimeUnit.SECONDS)).isTrue();
+
+        assertThat(reserved.get()).isEqualTo(8);
+        assertThat(ledger.available(PRODUCT_ID)).isZero();
+    }
+
+    private static void completeTransaction(int status) {
+        List<TransactionSynchronization> synchronizations = TransactionSynchronizationManager.getSynchronizations();
+        TransactionSynchronizationManager.clearSynchronization();
+        if (status == TransactionSynchronization.STATUS_COMMITTED) {
+            synchronizations.forEach(TransactionSynchronization::afterCommit);
+        }
+        synchronizations.forEach(synchronization -> synchronization.afterCompletion(status));
+    }
+}
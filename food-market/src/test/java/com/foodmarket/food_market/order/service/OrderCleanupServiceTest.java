@@ -0,0 +1,170 @@
+package com.foodmarket.food_market.order.service;
+
+import com.foodmarket.food_market.order.dto.projection.OrderDeadlineView;
+import com.foodmarket.food_market.order.event.OrderPlacedEvent;
+import com.foodmarket.food_market.order.model.enums.OrderStatus;
+import com.foodmarket.food_market.order.model.enums.PaymentMethod;
+import com.foodmarket.food_market.order.model.enums.PaymentStatus;
+import com.foodmarket.food_market.order.repository.OrderRepository;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.time.OffsetDateTime;
+import java.util.Collection;
+import java.util.List;
+import java.util.UUID;
+
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+class OrderCleanupServiceTest {
+
+    private static final long TIMEOUT_MINUTES = 15;
+
+    private OrderRepository orderRepository;
+    private OrderService orderService;
+    private OrderCleanupService cleanupService;
+
+    @BeforeEach
+    void setUp() {
+        orderRepository = mock(OrderRepository.class);
+        orderService = mock(OrderService.class);
+        when(orderService.systemCancelExpiredOrders(any(), any(), anyString()))
+                .thenAnswer(invocation -> List.copyOf(invocation.<Collection<UUID>>getArgument(0)));
+        cleanupService = new OrderCleanupService(orderRepository, orderService);
+        ReflectionTestUtils.setField(cleanupService, "paymentTimeoutMinutes", TIMEOUT_MINUTES);
+        ReflectionTestUtils.setField(cleanupService, "chunkSize", 100);
+        ReflectionTestUtils.setField(cleanupService, "retryDelayMs", 50L);
+    }
+
+    @AfterEach
+    void tearDown() {
+        cleanupService.stop();
+    }
+
+    private static OrderDeadlineView deadline(UUID orderId, OffsetDateTime createdAt) {
+        return new OrderDeadlineView() {
+            @Override
+            public UUID getOrderId() {
+                return orderId;
+            }
+
+            @Override
+            public OffsetDateTime getCreatedAt() {
+                return createdAt;
+            }
+        };
+    }
+
+    private void awaiting(OrderDeadlineView... views) {
+        when(orderRepository.findAwaitingPaymentDeadlines(OrderStatus.PENDING, PaymentMethod.VNPAY, PaymentStatus.PAID))
+                .thenReturn(List.of(views));
+    }
+
+    @Test
+    void overdueOrdersFromStartupAreCancelledInOneChunk() {
+        UUID first = UUID.randomUUID();
+        UUID second = UUID.randomUUID();
+        OffsetDateTime overdue = OffsetDateTime.now().minusMinutes(TIMEOUT_MINUTES + 1);
+        awaiting(deadline(first, overdue), deadline(second, overdue));
+
+        cleanupService.start();
+
+        verify(orderService, timeout(2000)).systemCancelExpiredOrders(
+                argThat(ids -> ids.containsAll(List.of(first, second))), any(), anyString());
+    }
+
+    @Test
+    void orderIsNotCancelledBeforeItsDeadline() {
+        awaiting();
+        cleanupService.start();
+
+        cleanupService.onOrderPlaced(new OrderPlacedEvent(UUID.randomUUID(), PaymentMethod.VNPAY, OffsetDateTime.now()));
+
+        verify(orderService, after(300).never()).systemCancelExpiredOrders(any(), any(), anyString());
+    }
+
+    @Test
+    void sameOrderIsScheduledOnlyOnce() {
+        UUID orderId = UUID.randomUUID();
+        OffsetDateTime overdue = OffsetDateTime.now().minusMinutes(TIMEOUT_MINUTES + 1);
+        awaiting(deadline(orderId, overdue));
+        // Quét dự phòng + sự kiện đặt hàng trước khi luồng huỷ chạy: vẫn chỉ 1 mục trong hàng đợi
+        cleanupService.sweep();
+        cleanupService.onOrderPlaced(new OrderPlacedEvent(orderId, PaymentMethod.VNPAY, overdue));
+
+        cleanupService.start();
+
+        verify(orderService, timeout(2000)).systemCancelExpiredOrders(eq(List.of(orderId)), any(), anyString());
+        verify(orderService, after(300).times(1)).systemCancelExpiredOrders(any(), any(), anyString());
+    }
+
+    @Test
+    void failedChunkIsRetried() {
+        UUID orderId = UUID.randomUUID();
+        awaiting(deadline(orderId, OffsetDateTime.now().minusMinutes(TIMEOUT_MINUTES + 1)));
+        doThrow(new IllegalStateException("deadlock"))
+                .doReturn(List.of(orderId))
+                .when(orderService).systemCancelExpiredOrders(any(), any(), anyString());
+
+        cleanupService.start();
+
+        verify(orderService, timeout(2000).times(2)).systemCancelExpiredOrders(eq(List.of(orderId)), any(), anyString());
+    }
+
+    @Test
+    void errorInChunkDoesNotStopWorker() {
+        UUID orderId = UUID.randomUUID();
+        awaiting(deadline(orderId, OffsetDateTime.now().minusMinutes(TIMEOUT_MINUTES + 1)));
+        doThrow(new StackOverflowError())
+                .doReturn(List.of(orderId))
+                .when(orderService).systemCancelExpiredOrders(any(), any(), anyString());
+
+        cleanupService.start();
+
+        verify(orderService, timeout(2000).times(2)).systemCancelExpiredOrders(eq(List.of(orderId)), any(), anyString());
+    }
+
+    @Test
+    void orderSkippedForClockSkewIsRequeued() {
+        UUID orderId = UUID.randomUUID();
+        OffsetDateTime overdue = OffsetDateTime.now().minusMinutes(TIMEOUT_MINUTES + 1);
+        awaiting(deadline(orderId, overdue));
+        // Lần đầu node này chưa coi đơn là quá hạn (created_at do node lệch đồng hồ ghi), đơn vẫn chờ thanh toán
+        doReturn(List.of())
+                .doReturn(List.of(orderId))
+                .when(orderService).systemCancelExpiredOrders(any(), any(), anyString());
+        when(orderRepository.findAwaitingPaymentDeadlinesByIdIn(any(), eq(OrderStatus.PENDING), eq(PaymentMethod.VNPAY), eq(PaymentStatus.PAID)))
+                .thenReturn(List.of(deadline(orderId, overdue)));
+
+        cleanupService.start();
+
+        verify(orderService, timeout(2000).times(2)).systemCancelExpiredOrders(eq(List.of(orderId)), any(), anyString());
+    }
+
+    @Test
+    void paidOrderIsDroppedFromQueue() {
+        UUID orderId = UUID.randomUUID();
+        awaiting(deadline(orderId, OffsetDateTime.now().minusMinutes(TIMEOUT_MINUTES + 1)));
+        doReturn(List.of()).when(orderService).systemCancelExpiredOrders(any(), any(), anyString());
+
+        cleanupService.start();
+
+        verify(orderService, after(300).times(1)).systemCancelExpiredOrders(any(), any(), anyString());
+    }
+
+    @Test
+    void codOrdersAreIgnored() {
+        awaiting();
+        cleanupService.start();
+
+        cleanupService.onOrderPlaced(new OrderPlacedEvent(UUID.randomUUID(), PaymentMethod.COD,
+                OffsetDateTime.now().minusMinutes(TIMEOUT_MINUTES + 1)));
+
+        verify(orderService, after(300).never()).systemCancelExpiredOrders(any(), any(), anyString());
+    }
+}
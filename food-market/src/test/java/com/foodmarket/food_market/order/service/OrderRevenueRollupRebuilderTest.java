@@ -0,0 +1,66 @@
+package com.foodmarket.food_market.order.service;
+
+import com.foodmarket.food_market.order.repository.OrderRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.time.OffsetDateTime;
+import java.util.List;
+import java.util.Optional;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+
+class OrderRevenueRollupRebuilderTest {
+
+    private OrderRepository orderRepository;
+    private OrderRevenueRollupService rollupService;
+    private OrderRevenueRollupRebuilder rebuilder;
+
+    @BeforeEach
+    void setUp() {
+        orderRepository = mock(OrderRepository.class);
+        rollupService = mock(OrderRevenueRollupService.class);
+        rebuilder = new OrderRevenueRollupRebuilder(orderRepository, rollupService);
+        ReflectionTestUtils.setField(rebuilder, "chunkHours", 24);
+    }
+
+    @Test
+    void rebuildCoversEveryHourInContiguousChunks() {
+        OffsetDateTime earliest = OffsetDateTime.now().minusDays(3).minusMinutes(17);
+        when(orderRepository.findEarliestCreatedAt()).thenReturn(Optional.of(earliest));
+
+        rebuilder.rebuild();
+
+        ArgumentCaptor<OffsetDateTime> from = ArgumentCaptor.forClass(OffsetDateTime.class);
+        ArgumentCaptor<OffsetDateTime> to = ArgumentCaptor.forClass(OffsetDateTime.class);
+        verify(rollupService, atLeastOnce()).rebuildRange(from.capture(), to.capture());
+        List<OffsetDateTime> starts = from.getAllValues();
+        List<OffsetDateTime> ends = to.getAllValues();
+
+        assertThat(starts.getFirst()).isEqualTo(OrderRevenueRollupService.bucketFrom(earliest));
+        for (int i = 0; i < starts.size(); i++) {
+            assertThat(ends.get(i)).isAfter(starts.get(i));
+            assertThat(ends.get(i)).isBeforeOrEqualTo(starts.get(i).plusHours(24));
+            if (i > 0) {
+                assertThat(starts.get(i)).isEqualTo(ends.get(i - 1));
+            }
+        }
+        // Khoảng cuối bao cả giờ hiện tại
+        assertThat(ends.getLast()).isAfter(OffsetDateTime.now());
+        verify(rollupService).clearBefore(starts.getFirst());
+    }
+
+    @Test
+    void rebuildWithoutOrdersOnlyClearsTable() {
+        when(orderRepository.findEarliestCreatedAt()).thenReturn(Optional.empty());
+
+        rebuilder.rebuild();
+
+        verify(rollupService, never()).rebuildRange(any(), any());
+        verify(rollupService).clearBefore(any());
+    }
+}
@@ -0,0 +1,38 @@
+package com.foodmarket.food_market.order.service;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.OffsetDateTime;
+import java.time.ZoneOffset;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class OrderRevenueRollupServiceTest {
+
+    private static final ZoneOffset VN = ZoneOffset.ofHours(7);
+
+    @Test
+    void midHourRangeIsWidenedToWholeHours() {
+        OffsetDateTime start = OffsetDateTime.of(2026, 3, 1, 9, 40, 0, 0, VN);
+        OffsetDateTime end = OffsetDateTime.of(2026, 3, 1, 14, 5, 0, 0, VN);
+
+        assertThat(OrderRevenueRollupService.bucketFrom(start)).isEqualTo(OffsetDateTime.of(2026, 3, 1, 9, 0, 0, 0, VN));
+        assertThat(OrderRevenueRollupService.bucketTo(end)).isEqualTo(OffsetDateTime.of(2026, 3, 1, 15, 0, 0, 0, VN));
+    }
+
+    @Test
+    void dayRangeMapsToHalfOpenDay() {
+        OffsetDateTime start = OffsetDateTime.of(2026, 3, 1, 0, 0, 0, 0, VN);
+        OffsetDateTime end = OffsetDateTime.of(2026, 3, 1, 23, 59, 59, 999_000_000, VN);
+
+        assertThat(OrderRevenueRollupService.bucketFrom(start)).isEqualTo(start);
+        assertThat(OrderRevenueRollupService.bucketTo(end)).isEqualTo(OffsetDateTime.of(2026, 3, 2, 0, 0, 0, 0, VN));
+    }
+
+    @Test
+    void endOnTheHourIsExclusive() {
+        OffsetDateTime end = OffsetDateTime.of(2026, 3, 1, 10, 0, 0, 0, VN);
+
+        assertThat(OrderRevenueRollupService.bucketTo(end)).isEqualTo(end);
+    }
+}
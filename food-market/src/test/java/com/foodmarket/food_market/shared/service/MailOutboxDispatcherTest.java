@@ -0,0 +1,139 @@
+package com.foodmarket.food_market.shared.service;
+
+import com.foodmarket.food_market.shared.model.MailOutbox;
+import com.foodmarket.food_market.shared.repository.MailOutboxRepository;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.mail.MailSendException;
+import org.springframework.mail.SimpleMailMessage;
+import org.springframework.mail.javamail.JavaMailSender;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.time.Duration;
+import java.time.OffsetDateTime;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.within;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+class MailOutboxDispatcherTest {
+
+    private static final int MAX_ATTEMPTS = 3;
+    private static final long RETRY_BASE_MS = 1000;
+    private static final long RETRY_MAX_MS = 3000;
+
+    private MailOutboxRepository repository;
+    private JavaMailSender mailSender;
+    private SimpleMeterRegistry meterRegistry;
+    private MailOutboxDispatcher dispatcher;
+
+    @BeforeEach
+    void setUp() {
+        repository = mock(MailOutboxRepository.class);
+        mailSender = mock(JavaMailSender.class);
+        meterRegistry = new SimpleMeterRegistry();
+        dispatcher = new MailOutboxDispatcher(repository, mailSender, meterRegistry);
+        ReflectionTestUtils.setField(dispatcher, "workers", 1);
+        ReflectionTestUtils.setField(dispatcher, "batchSize", 20);
+        ReflectionTestUtils.setField(dispatcher, "leaseSeconds", 120);
+        ReflectionTestUtils.setField(dispatcher, "maxAttempts", MAX_ATTEMPTS);
+        ReflectionTestUtils.setField(dispatcher, "retryBaseMs", RETRY_BASE_MS);
+        ReflectionTestUtils.setField(dispatcher, "retryMaxMs", RETRY_MAX_MS);
+        dispatcher.init();
+    }
+
+    @AfterEach
+    void tearDown() {
+        dispatcher.shutdown();
+    }
+
+    private static MailOutbox mail(long id, String recipient, int attempts) {
+        MailOutbox mail = new MailOutbox(recipient, "subject", "body");
+        mail.setId(id);
+        // claimDueMails đã tăng attempts khi nhận thư
+        mail.setAttempts(attempts);
+        return mail;
+    }
+
+    private void claimOnce(MailOutbox... batch) {
+        when(repository.claimDueMails(anyInt(), anyInt())).thenReturn(List.of(batch), List.of());
+    }
+
+    @Test
+    void sentBatchIsMarkedSent() {
+        claimOnce(mail(1, "a@test.local", 1), mail(2, "b@test.local", 1));
+
+        dispatcher.dispatch();
+
+        verify(repository, timeout(2000)).markSent(argThat(ids -> ids.containsAll(List.of(1L, 2L)) && ids.size() == 2));
+        verify(mailSender).send(any(SimpleMailMessage[].class));
+        verify(repository, never()).scheduleRetry(anyLong(), any(), any());
+        assertThat(meterRegistry.counter("mail.outbox.sent").count()).isEqualTo(2);
+    }
+
+    @Test
+    void onlyFailedMessageIsRetriedWithBackoff() {
+        claimOnce(mail(1, "ok@test.local", 1), mail(2, "bad@test.local", 2));
+        doAnswer(invocation -> {
+            SimpleMailMessage bad = Arrays.stream(invocation.getArguments())
+                    .map(SimpleMailMessage.class::cast)
+                    .filter(message -> message.getTo()[0].startsWith("bad"))
+                    .findFirst().orElseThrow();
+            throw new MailSendException(Map.of(bad, new IllegalStateException("mailbox unavailable")));
+        }).when(mailSender).send(any(SimpleMailMessage[].class));
+        OffsetDateTime before = OffsetDateTime.now();
+
+        dispatcher.dispatch();
+
+        verify(repository, timeout(2000)).markSent(List.of(1L));
+        ArgumentCaptor<OffsetDateTime> nextAttempt = ArgumentCaptor.forClass(OffsetDateTime.class);
+        verify(repository, timeout(2000)).scheduleRetry(eq(2L), nextAttempt.capture(), eq("mailbox unavailable"));
+        // Lần thử thứ 2 lỗi: chờ base * 2
+        assertThat(Duration.between(before, nextAttempt.getValue()).toMillis()).isCloseTo(2 * RETRY_BASE_MS, within(500L));
+    }
+
+    @Test
+    void backoffIsCappedAtRetryMax() {
+        ReflectionTestUtils.setField(dispatcher, "maxAttempts", 50);
+        claimOnce(mail(1, "a@test.local", 10));
+        doThrow(new MailSendException("connection refused")).when(mailSender).send(any(SimpleMailMessage[].class));
+        OffsetDateTime before = OffsetDateTime.now();
+
+        dispatcher.dispatch();
+
+        ArgumentCaptor<OffsetDateTime> nextAttempt = ArgumentCaptor.forClass(OffsetDateTime.class);
+        verify(repository, timeout(2000)).scheduleRetry(eq(1L), nextAttempt.capture(), anyString());
+        assertThat(Duration.between(before, nextAttempt.getValue()).toMillis()).isCloseTo(RETRY_MAX_MS, within(500L));
+    }
+
+    @Test
+    void connectionFailureRetriesWholeBatch() {
+        claimOnce(mail(1, "a@test.local", 1), mail(2, "b@test.local", 1));
+        doThrow(new MailSendException("connection refused")).when(mailSender).send(any(SimpleMailMessage[].class));
+
+        dispatcher.dispatch();
+
+        verify(repository, timeout(2000)).scheduleRetry(eq(1L), any(), anyString());
+        verify(repository, timeout(2000)).scheduleRetry(eq(2L), any(), anyString());
+        verify(repository, never()).markSent(any());
+    }
+
+    @Test
+    void mailIsMarkedFailedAfterMaxAttempts() {
+        claimOnce(mail(1, "a@test.local", MAX_ATTEMPTS));
+        doThrow(new MailSendException("connection refused")).when(mailSender).send(any(SimpleMailMessage[].class));
+
+        dispatcher.dispatch();
+
+        verify(repository, timeout(2000)).markFailed(1L, "connection refused");
+        verify(repository, never()).scheduleRetry(anyLong(), any(), any());
+        assertThat(meterRegistry.counter("mail.outbox.failed").count()).isEqualTo(1);
+    }
+}
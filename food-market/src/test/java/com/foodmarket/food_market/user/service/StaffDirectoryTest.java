@@ -0,0 +1,85 @@
+package com.foodmarket.food_market.user.service;
+
+import com.foodmarket.food_market.user.event.UserChangedEvent;
+import com.foodmarket.food_market.user.model.entity.User;
+import com.foodmarket.food_market.user.repository.UserRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.List;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+
+class StaffDirectoryTest {
+
+    private final UUID staffId = UUID.randomUUID();
+    private UserRepository userRepository;
+    private StaffDirectory directory;
+
+    @BeforeEach
+    void setUp() {
+        userRepository = mock(UserRepository.class);
+        directory = new StaffDirectory(userRepository);
+        ReflectionTestUtils.setField(directory, "maxStaleMs", 60_000L);
+    }
+
+    private User staff(String fullName) {
+        User user = new User();
+        user.setUserId(staffId);
+        user.setFullName(fullName);
+        return user;
+    }
+
+    @Test
+    void cachedNameIsServedWithoutQuery() {
+        when(userRepository.findAllById(any())).thenReturn(List.of(staff("Trần Thị B")));
+
+        assertThat(directory.getFullNames(List.of(staffId))).containsEntry(staffId, "Trần Thị B");
+        assertThat(directory.getFullNames(List.of(staffId))).containsEntry(staffId, "Trần Thị B");
+
+        verify(userRepository, times(1)).findAllById(any());
+    }
+
+    @Test
+    void entryOlderThanMaxAgeIsReloaded() {
+        when(userRepository.findAllById(any()))
+                .thenReturn(List.of(staff("Tên cũ")))
+                .thenReturn(List.of(staff("Tên mới")));
+        directory.getFullNames(List.of(staffId));
+
+        ReflectionTestUtils.setField(directory, "maxStaleMs", 0L);
+
+        assertThat(directory.getFullNames(List.of(staffId))).containsEntry(staffId, "Tên mới");
+    }
+
+    @Test
+    void loadRacingInvalidationIsNotCached() {
+        when(userRepository.findAllById(any()))
+                .thenAnswer(invocation -> {
+                    // Đổi tên commit sau khi lượt nạp này đã đọc tên cũ
+                    directory.onUserChanged(new UserChangedEvent(staffId));
+                    return List.of(staff("Tên cũ"));
+                })
+                .thenReturn(List.of(staff("Tên mới")));
+
+        assertThat(directory.getFullNames(List.of(staffId))).containsEntry(staffId, "Tên cũ");
+        assertThat(directory.getFullNames(List.of(staffId))).containsEntry(staffId, "Tên mới");
+    }
+
+    @Test
+    void evictStaleDropsExpiredEntries() {
+        when(userRepository.findAllById(any())).thenReturn(List.of(staff("Trần Thị B")));
+        directory.getFullNames(List.of(staffId));
+
+        ReflectionTestUtils.setField(directory, "maxStaleMs", 0L);
+        directory.evictStale();
+        ReflectionTestUtils.setField(directory, "maxStaleMs", 60_000L);
+        directory.getFullNames(List.of(staffId));
+
+        verify(userRepository, times(2)).findAllById(any());
+    }
+}